@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2021. Center for Open Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cos.cas.benchmarks;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * Reflection helpers which let the benchmarks reach the private hot paths of the OSF authentication handler and
+ * build model instances that are normally only loaded by Hibernate.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+final class BenchmarkSupport {
+
+    /** A private constructor for the utility class. */
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * @param type the declaring class
+     * @param name the method name
+     * @param parameterTypes the parameter types
+     * @return the accessible method
+     * @throws NoSuchMethodException if the method does not exist
+     */
+    static Method privateMethod(final Class<?> type, final String name, final Class<?>... parameterTypes)
+            throws NoSuchMethodException {
+        final Method method = type.getDeclaredMethod(name, parameterTypes);
+        method.setAccessible(true);
+        return method;
+    }
+
+    /**
+     * @param target the instance
+     * @param name the field name
+     * @param value the value to set
+     * @throws ReflectiveOperationException if the field does not exist
+     */
+    static void setField(final Object target, final String name, final Object value)
+            throws ReflectiveOperationException {
+        final Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
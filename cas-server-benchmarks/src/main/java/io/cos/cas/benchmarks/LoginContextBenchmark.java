@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2021. Center for Open Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cos.cas.benchmarks;
+
+import com.google.gson.Gson;
+
+import io.cos.cas.web.flow.OpenScienceFrameworkLoginHandler.OpenScienceFrameworkLoginContext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark the serialization of {@link OpenScienceFrameworkLoginContext} into the flow state, against the Gson round
+ * trip the login flow used to do on every login page and on every login submission.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoginContextBenchmark {
+
+    private static final String SERVICE_URL = "https://osf.io/login/?next=https%3A%2F%2Fosf.io%2Fdashboard%2F";
+
+    private OpenScienceFrameworkLoginContext loginContext;
+
+    private byte[] serialized;
+
+    private String json;
+
+    /**
+     * Build the login context of a login page with a service and a failed attempt.
+     *
+     * @throws Exception if the login context cannot be built
+     */
+    @Setup
+    public void setUp() throws Exception {
+        loginContext = new OpenScienceFrameworkLoginContext();
+        BenchmarkSupport.setField(loginContext, "serviceUrl", SERVICE_URL);
+        loginContext.setHandleErrorName("FailedLoginException");
+        serialized = serialize();
+        json = gsonToJson();
+    }
+
+    /**
+     * @return the login context in its serialized form
+     * @throws IOException if the serialization fails
+     */
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(loginContext);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return the login context read from its serialized form
+     * @throws Exception if the deserialization fails
+     */
+    @Benchmark
+    public Object deserialize() throws Exception {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+            return in.readObject();
+        }
+    }
+
+    /**
+     * @return the JSON of the login context, as the login flow used to write it
+     */
+    @Benchmark
+    public String gsonToJson() {
+        return new Gson().toJson(loginContext);
+    }
+
+    /**
+     * @return the login context read from its JSON, as the login flow used to read it
+     */
+    @Benchmark
+    public OpenScienceFrameworkLoginContext gsonFromJson() {
+        return new Gson().fromJson(json, OpenScienceFrameworkLoginContext.class);
+    }
+}
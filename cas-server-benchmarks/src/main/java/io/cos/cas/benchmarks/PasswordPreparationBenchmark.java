@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2021. Center for Open Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cos.cas.benchmarks;
+
+import io.cos.cas.adaptors.postgres.handlers.OpenScienceFrameworkAuthenticationHandler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark the work {@link OpenScienceFrameworkAuthenticationHandler} does around the bcrypt check, which
+ * {@link PasswordVerificationBenchmark} cannot tell apart from the hash itself: stripping the scheme prefix with
+ * {@link String#split(String)}, hex encoding the SHA-256 pre-hash of {@code bcrypt_sha256} and rewriting the hash
+ * identifier.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PasswordPreparationBenchmark {
+
+    private static final String PASSWORD = "correct horse battery staple";
+
+    private static final String PASSWORD_HASH
+            = "bcrypt_sha256$$2b$12$LhdmM0Bk1v7b2g4ZiRfN0eSE7F1lwYlKZpDjd8GdN3n5iJ0OF2p3a";
+
+    private OpenScienceFrameworkAuthenticationHandler handler;
+
+    private Method sha256HashPassword;
+
+    private Method updateBCryptHashIdentifier;
+
+    /**
+     * @throws Exception if the handler methods cannot be reached
+     */
+    @Setup
+    public void setUp() throws Exception {
+        handler = new OpenScienceFrameworkAuthenticationHandler();
+        sha256HashPassword = BenchmarkSupport.privateMethod(
+                OpenScienceFrameworkAuthenticationHandler.class, "sha256HashPassword", String.class);
+        updateBCryptHashIdentifier = BenchmarkSupport.privateMethod(
+                OpenScienceFrameworkAuthenticationHandler.class, "updateBCryptHashIdentifier", String.class);
+    }
+
+    /**
+     * @return the hash without its scheme prefix, as {@code verifyPassword} extracts it
+     */
+    @Benchmark
+    public String splitSchemePrefix() {
+        return PASSWORD_HASH.split("bcrypt_sha256\\$")[1];
+    }
+
+    /**
+     * @return the SHA-256 pre-hash of the password in hexadecimal
+     * @throws Exception if the call fails
+     */
+    @Benchmark
+    public Object sha256HashPassword() throws Exception {
+        return sha256HashPassword.invoke(handler, PASSWORD);
+    }
+
+    /**
+     * @return the hash with the identifier Spring's BCrypt accepts
+     * @throws Exception if the call fails
+     */
+    @Benchmark
+    public Object updateBCryptHashIdentifier() throws Exception {
+        return updateBCryptHashIdentifier.invoke(handler, PASSWORD_HASH.substring("bcrypt_sha256$".length()));
+    }
+}
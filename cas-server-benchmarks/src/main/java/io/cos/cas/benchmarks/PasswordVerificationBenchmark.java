@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2021. Center for Open Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cos.cas.benchmarks;
+
+import io.cos.cas.adaptors.postgres.handlers.OpenScienceFrameworkAuthenticationHandler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.security.crypto.bcrypt.BCrypt;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark the password check of {@link OpenScienceFrameworkAuthenticationHandler} for both hash schemes OSF uses,
+ * with the hash identifier Django writes ({@code $2b$}) so that the identifier rewrite is part of the measurement.
+ *
+ * The check runs inline, i.e. without a password verification executor.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PasswordVerificationBenchmark {
+
+    private static final String PASSWORD = "correct horse battery staple";
+
+    @Param({"bcrypt", "bcrypt_sha256"})
+    public String scheme;
+
+    @Param({"12"})
+    public int logRounds;
+
+    private OpenScienceFrameworkAuthenticationHandler handler;
+
+    private Method verifyPassword;
+
+    private String passwordHash;
+
+    /**
+     * Hash the password with the scheme the way OSF stores it.
+     *
+     * @throws Exception if the handler methods cannot be reached
+     */
+    @Setup
+    public void setUp() throws Exception {
+        handler = new OpenScienceFrameworkAuthenticationHandler();
+        verifyPassword = BenchmarkSupport.privateMethod(
+                OpenScienceFrameworkAuthenticationHandler.class, "verifyPassword", String.class, String.class);
+        final String password;
+        if ("bcrypt_sha256".equals(scheme)) {
+            password = (String) BenchmarkSupport.privateMethod(
+                    OpenScienceFrameworkAuthenticationHandler.class, "sha256HashPassword", String.class
+            ).invoke(handler, PASSWORD);
+        } else {
+            password = PASSWORD;
+        }
+        final String hash = BCrypt.hashpw(password, BCrypt.gensalt(logRounds)).replaceFirst("^\\$2a\\$", "\\$2b\\$");
+        passwordHash = scheme + '$' + hash;
+        if (!verifyPassword()) {
+            throw new IllegalStateException("The password does not match its hash");
+        }
+    }
+
+    /**
+     * @return true if the password matches
+     * @throws Exception if the check fails
+     */
+    @Benchmark
+    public boolean verifyPassword() throws Exception {
+        return (Boolean) verifyPassword.invoke(handler, PASSWORD, passwordHash);
+    }
+}
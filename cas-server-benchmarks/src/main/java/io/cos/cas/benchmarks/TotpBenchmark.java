@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2021. Center for Open Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cos.cas.benchmarks;
+
+import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkTimeBasedOneTimePassword;
+import io.cos.cas.authentication.oath.Totp;
+import io.cos.cas.authentication.oath.TotpUtils;
+import io.cos.cas.authentication.oath.TotpVerifier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.xml.bind.DatatypeConverter;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark the time-based one time password check of the login, {@link TotpUtils} against {@link TotpVerifier}.
+ *
+ * Both start from the hexadecimal secret OSF stores. The code is never valid, so both check the whole window, which
+ * is also what a failed attempt costs. Run with {@code -prof gc} to compare the allocation rates.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TotpBenchmark {
+
+    private static final int INTERVAL = 30;
+
+    private static final int WINDOW = 1;
+
+    private String hexSecret;
+
+    private long code;
+
+    private TotpVerifier totpVerifier;
+
+    /**
+     * Generate a secret and a code of a time step far outside the window.
+     */
+    @Setup
+    public void setUp() {
+        final byte[] secret = new byte[20];
+        new Random(42).nextBytes(secret);
+        hexSecret = DatatypeConverter.printHexBinary(secret).toLowerCase();
+        code = Totp.generateTotp(secret, 0, 6, "HmacSHA1");
+        totpVerifier = new TotpVerifier(INTERVAL, WINDOW);
+    }
+
+    /**
+     * @return the result of the check as the handler used to do it
+     * @throws Exception if the check fails
+     */
+    @Benchmark
+    public boolean totpUtils() throws Exception {
+        final String base32Secret = OpenScienceFrameworkTimeBasedOneTimePassword.encodeTotpSecretBase32(hexSecret);
+        return TotpUtils.checkCode(base32Secret, code, INTERVAL, WINDOW);
+    }
+
+    /**
+     * @return the result of the check as the handler does it
+     */
+    @Benchmark
+    public boolean totpVerifier() {
+        return totpVerifier.verifyHex("user", hexSecret, code);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2021. Center for Open Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cos.cas.benchmarks;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import io.cos.cas.adaptors.postgres.handlers.OpenScienceFrameworkAuthenticationHandler;
+import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkUser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Method;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark the user status check of {@link OpenScienceFrameworkAuthenticationHandler}, including the walk over the
+ * external identities of the user which decides whether an unconfirmed user was created by an external IdP.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserStatusBenchmark {
+
+    /** The external identities of a user who has verified ORCiD and is pending the confirmation of another IdP. */
+    private static final String EXTERNAL_IDENTITY = "{"
+            + "\"ORCID\": {\"0000-0001-2345-6789\": \"VERIFIED\"},"
+            + "\"IDP\": {\"user@idp.example.edu\": \"LINK\", \"another@idp.example.edu\": \"CREATE\"}"
+            + "}";
+
+    /** ACTIVE or NOT_CONFIRMED_IDP, the status of the user. */
+    @Param({"ACTIVE", "NOT_CONFIRMED_IDP"})
+    public String status;
+
+    private OpenScienceFrameworkAuthenticationHandler handler;
+
+    private Method verifyUserStatus;
+
+    private Method isCreatedByExternalIdp;
+
+    private OpenScienceFrameworkUser user;
+
+    /**
+     * Build the user with the status.
+     *
+     * @throws Exception if the handler methods or the user fields cannot be reached
+     */
+    @Setup
+    public void setUp() throws Exception {
+        handler = new OpenScienceFrameworkAuthenticationHandler();
+        verifyUserStatus = BenchmarkSupport.privateMethod(
+                OpenScienceFrameworkAuthenticationHandler.class, "verifyUserStatus", OpenScienceFrameworkUser.class);
+        isCreatedByExternalIdp = BenchmarkSupport.privateMethod(
+                OpenScienceFrameworkAuthenticationHandler.class, "isCreatedByExternalIdp", JsonObject.class);
+
+        final JsonObject externalIdentity = new JsonParser().parse(EXTERNAL_IDENTITY).getAsJsonObject();
+        user = new OpenScienceFrameworkUser();
+        BenchmarkSupport.setField(user, "username", "user@example.com");
+        BenchmarkSupport.setField(user, "externalIdentity", externalIdentity);
+        if ("ACTIVE".equals(status)) {
+            BenchmarkSupport.setField(user, "password", "bcrypt$$2b$12$hash");
+            BenchmarkSupport.setField(user, "registered", Boolean.TRUE);
+            BenchmarkSupport.setField(user, "dateConfirmed", new Date());
+        } else {
+            BenchmarkSupport.setField(user, "password", "!unusable");
+            BenchmarkSupport.setField(user, "registered", Boolean.FALSE);
+        }
+        if (!status.equals(verifyUserStatus())) {
+            throw new IllegalStateException("The user is not " + status);
+        }
+    }
+
+    /**
+     * @return the status of the user
+     * @throws Exception if the check fails
+     */
+    @Benchmark
+    public Object verifyUserStatus() throws Exception {
+        return verifyUserStatus.invoke(handler, user);
+    }
+
+    /**
+     * @return whether the user was created by an external IdP
+     * @throws Exception if the check fails
+     */
+    @Benchmark
+    public Object isCreatedByExternalIdp() throws Exception {
+        return isCreatedByExternalIdp.invoke(handler, user.getExternalIdentity());
+    }
+}
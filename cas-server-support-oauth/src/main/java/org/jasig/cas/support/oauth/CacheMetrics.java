@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2015. Center for Open Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jasig.cas.support.oauth;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+import com.google.common.cache.Cache;
+
+/**
+ * Publish the statistics of the Guava caches of the OAuth implementation to the metric registry.
+ *
+ * Every cache is published under the same metric names, prefixed by the name of the class which owns it. The cache
+ * must be built with {@link com.google.common.cache.CacheBuilder#recordStats()}, otherwise only its size is tracked.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public final class CacheMetrics {
+
+    /**
+     * Instantiate a new {@link CacheMetrics}, which is not allowed.
+     */
+    private CacheMetrics() {}
+
+    /**
+     * Register the hits, misses, evictions and size gauges of a cache.
+     *
+     * @param metricRegistry the metric registry
+     * @param owner the class which owns the cache, whose name prefixes the metric names
+     * @param cache the cache
+     */
+    public static void registerCacheGauges(
+            final MetricRegistry metricRegistry,
+            final Class<?> owner,
+            final Cache<?, ?> cache
+    ) {
+        metricRegistry.register(MetricRegistry.name(owner, "hits"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return cache.stats().hitCount();
+            }
+        });
+        metricRegistry.register(MetricRegistry.name(owner, "misses"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return cache.stats().missCount();
+            }
+        });
+        metricRegistry.register(MetricRegistry.name(owner, "evictions"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return cache.stats().evictionCount();
+            }
+        });
+        metricRegistry.register(MetricRegistry.name(owner, "size"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return cache.size();
+            }
+        });
+    }
+}
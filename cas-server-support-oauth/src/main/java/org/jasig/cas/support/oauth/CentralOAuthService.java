@@ -26,6 +26,7 @@ import org.jasig.cas.support.oauth.token.AccessToken;
 import org.jasig.cas.support.oauth.token.AuthorizationCode;
 import org.jasig.cas.support.oauth.token.InvalidTokenException;
 import org.jasig.cas.support.oauth.token.RefreshToken;
+import org.jasig.cas.support.oauth.token.SignedAccessToken;
 import org.jasig.cas.support.oauth.token.Token;
 import org.jasig.cas.support.oauth.token.TokenType;
 import org.jasig.cas.ticket.TicketException;
@@ -143,6 +144,17 @@ public interface CentralOAuthService {
      */
     Boolean revokeToken(Token token);
 
+    /**
+     * Revoke the refresh tokens and access tokens of the ids specified at once.
+     *
+     * Each token is revoked as by {@link #revokeToken(Token)}, but the tickets are deleted in bulk by the token
+     * registry. Unknown token ids are ignored.
+     *
+     * @param tokenIds the token ids
+     * @return a Boolean status if any of the tokens was found and revoked
+     */
+    Boolean revokeTokens(Collection<String> tokenIds);
+
     /**
      * Revoke all tokens associated with the specified client id, authorized by the client secret.
      *
@@ -157,6 +169,8 @@ public interface CentralOAuthService {
     /**
      * Revoke all tokens associated with the access token principal id and the client id specified.
      *
+     * The ticket granting tickets of the tokens are deleted in bulk by the token registry, in one transaction.
+     *
      * @param accessToken the access token
      * @param clientId the client id
      * @return a Boolean status if the tokens were successfully revoked
@@ -214,7 +228,7 @@ public interface CentralOAuthService {
     /**
      * Get the token by the id and clazz specified.
      *
-     * @param tokenId the token id
+     * @param tokenId the token id, or the value of a self-contained access token
      * @param clazz The expected class of the token we wish to retrieve
      * @param <T> the generic token type to return that extends {@link Token}
      * @return a token
@@ -225,11 +239,37 @@ public interface CentralOAuthService {
     /**
      * Get the PERSONAL access token by the token id specified.
      *
+     * It is only looked up once {@link #getToken(String, Class)} has not found an access token of this id. Thus an id
+     * which is not a PERSONAL access token either may be remembered as unknown, after which both lookups reject it
+     * right away until the entry expires. An id is only remembered when the lookup completes, a failure of the lookup
+     * is thrown to the caller.
+     *
      * @param tokenId the token id
-     * @return a personal access token
+     * @return a personal access token, or null if not found
      */
     PersonalAccessToken getPersonalAccessToken(String tokenId);
 
+    /**
+     * Get the value of an access token to be handed out to the client.
+     *
+     * When self-contained access tokens are enabled, ONLINE and OFFLINE access tokens are handed out as signed tokens
+     * which carry the principal, the released attributes and the scopes, see {@link #getSignedAccessToken(String)}.
+     * Otherwise, and for any other type, the value is the token id.
+     *
+     * @param accessToken the access token
+     * @return the value of the access token
+     */
+    String getAccessTokenValue(AccessToken accessToken);
+
+    /**
+     * Verify a self-contained access token without any lookup of the token registry.
+     *
+     * @param value the value of the access token as handed out to the client
+     * @return the verified access token, or null if self-contained access tokens are disabled or the value is an id
+     * @throws InvalidTokenException if the token is forged, expired or revoked
+     */
+    SignedAccessToken getSignedAccessToken(String value) throws InvalidTokenException;
+
     /**
      * Validates a list of scopes given and returns any additional default scopes required by the manager.
      *
@@ -240,18 +280,26 @@ public interface CentralOAuthService {
     Map<String, Scope> getScopes(Set<String> scopeSet) throws InvalidScopeException;
 
     /**
-     * Get a list of all the refresh tokens for a given client of the id specified.
+     * Get a page of the refresh tokens for a given client of the id specified, ordered by token id.
+     *
+     * A client may have a very large number of tokens, thus they are walked through page by page, each page starting
+     * right after the last token of the previous one.
      *
      * @param clientId the client id
-     * @return a list of refresh tokens
+     * @param afterId the id of the last token of the previous page, or null for the first page
+     * @param maxResults the maximum number of tokens in the page
+     * @return a page of refresh tokens, empty after the last page
      */
-    Collection<RefreshToken> getClientRefreshTokens(String clientId);
+    Collection<RefreshToken> getClientRefreshTokens(String clientId, String afterId, Integer maxResults);
 
     /**
-     * Get a list of all the access tokens for a given client of the id specified.
+     * Get a page of the access tokens for a given client of the id specified, ordered by token id.
      *
      * @param clientId the client id
-     * @return a list of access tokens
+     * @param afterId the id of the last token of the previous page, or null for the first page
+     * @param maxResults the maximum number of tokens in the page
+     * @return a page of access tokens, empty after the last page
+     * @see #getClientRefreshTokens(String, String, Integer)
      */
-    Collection<AccessToken> getClientAccessTokens(String clientId);
+    Collection<AccessToken> getClientAccessTokens(String clientId, String afterId, Integer maxResults);
 }
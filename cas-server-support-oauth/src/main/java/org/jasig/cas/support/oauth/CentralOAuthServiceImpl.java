@@ -19,6 +19,10 @@ import com.codahale.metrics.annotation.Counted;
 import com.codahale.metrics.annotation.Metered;
 import com.codahale.metrics.annotation.Timed;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Iterables;
+
 import org.apache.commons.lang3.StringUtils;
 
 import org.jasig.cas.authentication.AuthenticationException;
@@ -26,6 +30,7 @@ import org.jasig.cas.authentication.principal.Principal;
 import org.jasig.cas.authentication.principal.Service;
 import org.jasig.cas.authentication.principal.SimpleWebApplicationServiceImpl;
 import org.jasig.cas.CentralAuthenticationService;
+import org.jasig.cas.services.RegisteredService;
 import org.jasig.cas.services.ServicesManager;
 import org.jasig.cas.support.oauth.authentication.principal.OAuthCredential;
 import org.jasig.cas.support.oauth.metadata.ClientMetadata;
@@ -36,6 +41,7 @@ import org.jasig.cas.support.oauth.scope.InvalidScopeException;
 import org.jasig.cas.support.oauth.scope.Scope;
 import org.jasig.cas.support.oauth.scope.ScopeManager;
 import org.jasig.cas.support.oauth.services.OAuthRegisteredService;
+import org.jasig.cas.support.oauth.services.OAuthRegisteredServiceIndex;
 import org.jasig.cas.support.oauth.token.AccessToken;
 import org.jasig.cas.support.oauth.token.AccessTokenImpl;
 import org.jasig.cas.support.oauth.token.AuthorizationCode;
@@ -43,10 +49,15 @@ import org.jasig.cas.support.oauth.token.AuthorizationCodeImpl;
 import org.jasig.cas.support.oauth.token.InvalidTokenException;
 import org.jasig.cas.support.oauth.token.RefreshToken;
 import org.jasig.cas.support.oauth.token.RefreshTokenImpl;
+import org.jasig.cas.support.oauth.token.SignedAccessToken;
+import org.jasig.cas.support.oauth.token.SignedAccessTokenCodec;
 import org.jasig.cas.support.oauth.token.Token;
 import org.jasig.cas.support.oauth.token.TokenType;
 import org.jasig.cas.support.oauth.token.registry.TokenRegistry;
+import org.jasig.cas.support.oauth.token.registry.TokenRevocationList;
+import org.jasig.cas.support.oauth.token.registry.UnknownTokenCache;
 import org.jasig.cas.ticket.ServiceTicket;
+import org.jasig.cas.ticket.Ticket;
 import org.jasig.cas.ticket.TicketException;
 import org.jasig.cas.ticket.TicketGrantingTicket;
 import org.jasig.cas.ticket.registry.TicketRegistry;
@@ -57,10 +68,17 @@ import org.slf4j.LoggerFactory;
 
 import org.springframework.util.Assert;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.validation.constraints.NotNull;
 
@@ -76,6 +94,12 @@ public final class CentralOAuthServiceImpl implements CentralOAuthService {
     /** Log instance for logging events, info, warnings, errors, etc. */
     private static final Logger LOGGER = LoggerFactory.getLogger(CentralOAuthService.class);
 
+    /** The default lifetime in seconds of ONLINE and OFFLINE access tokens, which is 1 hour. */
+    private static final long DEFAULT_ACCESS_TOKEN_TIME_TO_LIVE_IN_SECONDS = 3600;
+
+    /** The default maximum number of ticket granting tickets in the CAS access token index. */
+    private static final long DEFAULT_CAS_ACCESS_TOKEN_INDEX_MAXIMUM_SIZE = 10000;
+
     /** The primary CAS authentication service for requesting tickets as needed. */
     @NotNull
     private final CentralAuthenticationService centralAuthenticationService;
@@ -84,6 +108,10 @@ public final class CentralOAuthServiceImpl implements CentralOAuthService {
     @NotNull
     private final ServicesManager servicesManager;
 
+    /** The client id index of the OAuth registered services of the service manager. */
+    @NotNull
+    private final OAuthRegisteredServiceIndex registeredServiceIndex;
+
     /** The ticket registry for accessing (deleting) tickets as needed. */
     @NotNull
     private final TicketRegistry ticketRegistry;
@@ -112,6 +140,25 @@ public final class CentralOAuthServiceImpl implements CentralOAuthService {
     @NotNull
     private final UniqueTicketIdGenerator accessTokenUniqueIdGenerator;
 
+    /** The lifetime in seconds of ONLINE and OFFLINE access tokens, see {@link Token#getExpirationDate()}. */
+    private long accessTokenTimeToLiveInSeconds = DEFAULT_ACCESS_TOKEN_TIME_TO_LIVE_IN_SECONDS;
+
+    /** The optional codec of self-contained ONLINE and OFFLINE access tokens, see {@link #getAccessTokenValue}. */
+    private SignedAccessTokenCodec signedAccessTokenCodec;
+
+    /** The revocation list of self-contained access tokens, required along with the codec. */
+    private TokenRevocationList tokenRevocationList;
+
+    /** The optional negative cache of the access token ids known to be absent. */
+    private UnknownTokenCache unknownTokenCache;
+
+    /** Whether CAS access tokens are reused for the same ticket granting ticket and service. */
+    private boolean reuseCASAccessTokens;
+
+    /** The ids of the CAS access tokens granted by this node, by service id, by ticket granting ticket id. */
+    private Cache<String, ConcurrentMap<String, String>> casAccessTokenIndex
+            = newCASAccessTokenIndex(DEFAULT_CAS_ACCESS_TOKEN_INDEX_MAXIMUM_SIZE);
+
     /**
      * Instantiates a new CAS OAuth service {@link CentralOAuthServiceImpl}.
      *
@@ -138,6 +185,7 @@ public final class CentralOAuthServiceImpl implements CentralOAuthService {
     ) {
         this.centralAuthenticationService = centralAuthenticationService;
         this.servicesManager = servicesManager;
+        this.registeredServiceIndex = new OAuthRegisteredServiceIndex(servicesManager);
         this.ticketRegistry = ticketRegistry;
         this.tokenRegistry = tokenRegistry;
         this.authorizationCodeUniqueIdGenerator = authorizationCodeUniqueIdGenerator;
@@ -147,9 +195,67 @@ public final class CentralOAuthServiceImpl implements CentralOAuthService {
         this.personalAccessTokenManager = personalAccessTokenManager;
     }
 
+    /**
+     * Set the lifetime of ONLINE and OFFLINE access tokens, which must match the time to kill of the OAuth access token
+     * expiration policy.
+     *
+     * @param accessTokenTimeToLiveInSeconds the lifetime in seconds
+     */
+    public void setAccessTokenTimeToLiveInSeconds(final long accessTokenTimeToLiveInSeconds) {
+        this.accessTokenTimeToLiveInSeconds = accessTokenTimeToLiveInSeconds;
+    }
+
+    /**
+     * Enable self-contained ONLINE and OFFLINE access tokens, which resource servers validate without any lookup of
+     * the token registry. Such tokens stay valid until they expire unless revoked through this service, thus the
+     * lifetime of access tokens should stay short.
+     *
+     * @param signedAccessTokenCodec the codec of self-contained access tokens
+     */
+    public void setSignedAccessTokenCodec(final SignedAccessTokenCodec signedAccessTokenCodec) {
+        this.signedAccessTokenCodec = signedAccessTokenCodec;
+    }
+
+    public void setTokenRevocationList(final TokenRevocationList tokenRevocationList) {
+        this.tokenRevocationList = tokenRevocationList;
+    }
+
+    /**
+     * Remember the access token ids which are neither in the token registry nor a PERSONAL access token, so that they
+     * are rejected without any lookup for a short while.
+     *
+     * @param unknownTokenCache the negative cache of access token ids
+     */
+    public void setUnknownTokenCache(final UnknownTokenCache unknownTokenCache) {
+        this.unknownTokenCache = unknownTokenCache;
+    }
+
+    /**
+     * Reuse the unexpired CAS access token granted earlier for the same ticket granting ticket and service, instead of
+     * granting a new one on every service ticket validation.
+     *
+     * Granted tokens are looked up in an in-memory index of this node. A token granted by another node, or before a
+     * restart, is not found there, in which case a new one is granted and indexed as before.
+     *
+     * @param reuseCASAccessTokens whether to reuse CAS access tokens
+     */
+    public void setReuseCASAccessTokens(final boolean reuseCASAccessTokens) {
+        this.reuseCASAccessTokens = reuseCASAccessTokens;
+    }
+
+    /**
+     * Set the maximum number of ticket granting tickets kept in the CAS access token index, the least recently used
+     * ones are evicted first.
+     *
+     * @param maximumSize the maximum number of ticket granting tickets
+     */
+    public void setCasAccessTokenIndexMaximumSize(final long maximumSize) {
+        this.casAccessTokenIndex = newCASAccessTokenIndex(maximumSize);
+    }
+
     @Override
     public OAuthRegisteredService getRegisteredService(final String clientId) {
-        return OAuthUtils.getRegisteredOAuthService(servicesManager, clientId);
+        return registeredServiceIndex.getService(clientId);
     }
 
     @Override
@@ -209,7 +315,7 @@ public final class CentralOAuthServiceImpl implements CentralOAuthService {
 
         // Remove the service ticket, doing so will CASCADE and remove the authorization code.
         // For `AuthorizationCodeImpl`, both `.getTicket()` and `getServiceTicket()` returns the service ticket.
-        ticketRegistry.deleteTicket(authorizationCode.getTicket().getId());
+        deleteTicket(authorizationCode.getTicket().getId());
 
         tokenRegistry.addToken(refreshToken);
         return refreshToken;
@@ -221,6 +327,24 @@ public final class CentralOAuthServiceImpl implements CentralOAuthService {
             final Service service
     ) throws TicketException {
 
+        final Set<String> scopes = scopeManager.getCASScopes();
+        final ConcurrentMap<String, String> serviceTokens;
+        if (reuseCASAccessTokens) {
+            serviceTokens = getCASAccessTokenIndex(ticketGrantingTicket.getId());
+            final String tokenId = serviceTokens.get(service.getId());
+            if (tokenId != null) {
+                final AccessToken accessToken = tokenRegistry.getToken(tokenId, AccessToken.class);
+                if (accessToken != null
+                        && !accessToken.getTicket().isExpired()
+                        && accessToken.getScopes().equals(scopes)) {
+                    LOGGER.debug("Reusing CAS {} : {}", OAuthConstants.ACCESS_TOKEN, accessToken);
+                    return accessToken;
+                }
+            }
+        } else {
+            serviceTokens = null;
+        }
+
         final AccessToken accessToken = new AccessTokenImpl(
                 accessTokenUniqueIdGenerator.getNewTicketId(AccessToken.PREFIX),
                 TokenType.CAS,
@@ -229,11 +353,14 @@ public final class CentralOAuthServiceImpl implements CentralOAuthService {
                 ticketGrantingTicket,
                 service,
                 null,
-                scopeManager.getCASScopes()
+                scopes
         );
         LOGGER.debug("CAS {} : {}", OAuthConstants.ACCESS_TOKEN, accessToken);
 
         tokenRegistry.addToken(accessToken);
+        if (serviceTokens != null) {
+            serviceTokens.put(service.getId(), accessToken.getId());
+        }
         return accessToken;
     }
 
@@ -264,6 +391,9 @@ public final class CentralOAuthServiceImpl implements CentralOAuthService {
         LOGGER.debug("PERSONAL {} : {}", OAuthConstants.ACCESS_TOKEN, accessToken);
 
         tokenRegistry.addToken(accessToken);
+        if (unknownTokenCache != null) {
+            unknownTokenCache.invalidate(accessToken.getId());
+        }
         return accessToken;
     }
 
@@ -281,7 +411,7 @@ public final class CentralOAuthServiceImpl implements CentralOAuthService {
             throw new InvalidTokenException(refreshToken.getId());
         }
 
-        final AccessToken accessToken = new AccessTokenImpl(
+        final AccessTokenImpl accessToken = new AccessTokenImpl(
                 accessTokenUniqueIdGenerator.getNewTicketId(AccessToken.PREFIX),
                 TokenType.OFFLINE,
                 refreshToken.getClientId(),
@@ -291,6 +421,7 @@ public final class CentralOAuthServiceImpl implements CentralOAuthService {
                 serviceTicket,
                 refreshToken.getScopes()
         );
+        accessToken.setExpirationDate(getAccessTokenExpirationDate());
         LOGGER.debug("OFFLINE {} : {}", OAuthConstants.ACCESS_TOKEN, accessToken);
 
         tokenRegistry.addToken(accessToken);
@@ -311,7 +442,7 @@ public final class CentralOAuthServiceImpl implements CentralOAuthService {
             throw new InvalidTokenException(authorizationCode.getId());
         }
 
-        final AccessToken accessToken = new AccessTokenImpl(
+        final AccessTokenImpl accessToken = new AccessTokenImpl(
                 accessTokenUniqueIdGenerator.getNewTicketId(AccessToken.PREFIX),
                 TokenType.ONLINE,
                 authorizationCode.getClientId(),
@@ -321,11 +452,12 @@ public final class CentralOAuthServiceImpl implements CentralOAuthService {
                 null,
                 authorizationCode.getScopes()
         );
+        accessToken.setExpirationDate(getAccessTokenExpirationDate());
         LOGGER.debug("ONLINE {} : {}", OAuthConstants.ACCESS_TOKEN, accessToken);
 
         // Remove the service ticket, doing so will CASCADE and remove the authorization code.
         // For `AuthorizationCodeImpl`, both `.getTicket()` and `getServiceTicket()` returns the service ticket.
-        ticketRegistry.deleteTicket(authorizationCode.getTicket().getId());
+        deleteTicket(authorizationCode.getTicket().getId());
 
         tokenRegistry.addToken(accessToken);
         return accessToken;
@@ -333,8 +465,38 @@ public final class CentralOAuthServiceImpl implements CentralOAuthService {
 
     @Override
     public Boolean revokeToken(final Token token) {
+        revokeSignedAccessTokens(Collections.singleton(token), Collections.singleton(token.getTicket().getId()));
         // Remove the ticket, doing so will CASCADE and remove the token.
-        return ticketRegistry.deleteTicket(token.getTicket().getId());
+        final Boolean deleted = deleteTicket(token.getTicket().getId());
+        clientTokensDeleted(Collections.singleton(token));
+        personalAccessTokensRevoked(Collections.singleton(token));
+        return deleted;
+    }
+
+    @Override
+    public Boolean revokeTokens(final Collection<String> tokenIds) {
+
+        Assert.notNull(tokenIds, "tokenIds cannot be null");
+
+        final Set<Token> tokens = new HashSet<>();
+        tokens.addAll(tokenRegistry.getTokens(tokenIds, RefreshToken.class));
+        tokens.addAll(tokenRegistry.getTokens(tokenIds, AccessToken.class));
+        final Set<String> ticketIds = new HashSet<>();
+        for (final Token token : tokens) {
+            ticketIds.add(token.getTicket().getId());
+        }
+        if (ticketIds.isEmpty()) {
+            return Boolean.FALSE;
+        }
+        revokeSignedAccessTokens(tokens, ticketIds);
+
+        // Remove the tickets at once, doing so will CASCADE and remove the tokens.
+        casAccessTokenIndex.invalidateAll(ticketIds);
+        final Integer count = tokenRegistry.deleteTickets(ticketIds);
+        clientTokensDeleted(tokens);
+        personalAccessTokensRevoked(tokens);
+        LOGGER.debug("Revoked {} tokens by deleting {} tickets", tokenIds.size(), count);
+        return Boolean.TRUE;
     }
 
     @Override
@@ -363,6 +525,7 @@ public final class CentralOAuthServiceImpl implements CentralOAuthService {
             targetClientId = accessToken.getClientId();
         }
 
+        final Set<String> ticketIds = new HashSet<>();
         final Collection<RefreshToken> refreshTokens = tokenRegistry
                 .getClientPrincipalTokens(
                         targetClientId,
@@ -374,7 +537,7 @@ public final class CentralOAuthServiceImpl implements CentralOAuthService {
             // Remove the ticket granting ticket, doing so will CASCADE and remove 1) the refresh token and 2) the
             // service tickets created by the ticket granting ticket for generating OFFLINE access tokens which will
             // further CASCADE and remove all the OFFLINE access tokens.
-            ticketRegistry.deleteTicket(token.getTicketGrantingTicket().getId());
+            ticketIds.add(token.getTicketGrantingTicket().getId());
         }
 
         final Collection<AccessToken> accessTokens = tokenRegistry
@@ -387,7 +550,21 @@ public final class CentralOAuthServiceImpl implements CentralOAuthService {
         for (final AccessToken token : accessTokens) {
             LOGGER.debug("Revoking access token : {}", token.getId());
             // Remove the ticket granting ticket, doing so will CASCADE and remove the ONLINE access token.
-            ticketRegistry.deleteTicket(token.getTicketGrantingTicket().getId());
+            ticketIds.add(token.getTicketGrantingTicket().getId());
+        }
+
+        // Remove all the tickets at once instead of one by one, which matters for heavily-used clients.
+        if (!ticketIds.isEmpty()) {
+            revokeSignedAccessTokens(Iterables.concat(refreshTokens, accessTokens), ticketIds);
+            casAccessTokenIndex.invalidateAll(ticketIds);
+            final Integer count = tokenRegistry.deleteTickets(ticketIds);
+            tokenRegistry.clientTokensDeleted(targetClientId);
+            LOGGER.debug(
+                    "Deleted {} tickets of client [{}] and principal [{}]",
+                    count,
+                    targetClientId,
+                    accessToken.getPrincipalId()
+            );
         }
 
         return Boolean.TRUE;
@@ -425,41 +602,25 @@ public final class CentralOAuthServiceImpl implements CentralOAuthService {
             throw new InvalidTokenException(accessToken.getId());
         }
 
-        final Map<String, PrincipalMetadata> metadata = new HashMap<>();
-
-        // TODO: Fix code duplication
-        for (final Token token : tokenRegistry.getPrincipalTokens(accessToken.getPrincipalId(), RefreshToken.class)) {
-            final PrincipalMetadata serviceDetail;
-            if (!metadata.containsKey(token.getClientId())) {
-                final OAuthRegisteredService service = getRegisteredService(token.getClientId());
-                serviceDetail = new PrincipalMetadata(
-                        service.getClientId(),
-                        service.getName(),
-                        service.getDescription());
-                metadata.put(token.getClientId(), serviceDetail
-                );
-            } else {
-                serviceDetail = metadata.get(token.getClientId());
+        final Collection<PrincipalMetadata> metadata = new ArrayList<>();
+        final Map<String, Set<String>> clientScopes
+                = tokenRegistry.getPrincipalClientScopes(accessToken.getPrincipalId());
+        for (final Map.Entry<String, Set<String>> entry : clientScopes.entrySet()) {
+            final OAuthRegisteredService service = getRegisteredService(entry.getKey());
+            if (service == null) {
+                LOGGER.warn("OAuth Registered Service could not be found for clientId : {}", entry.getKey());
+                continue;
             }
-            serviceDetail.getScopes().addAll(token.getScopes());
-        }
-        for (final Token token : tokenRegistry.getPrincipalTokens(accessToken.getPrincipalId(), AccessToken.class)) {
-            final PrincipalMetadata serviceDetail;
-            if (!metadata.containsKey(token.getClientId())) {
-                final OAuthRegisteredService service = getRegisteredService(token.getClientId());
-                serviceDetail = new PrincipalMetadata(
-                        service.getClientId(),
-                        service.getName(),
-                        service.getDescription()
-                );
-                metadata.put(token.getClientId(), serviceDetail);
-            } else {
-                serviceDetail = metadata.get(token.getClientId());
-            }
-            serviceDetail.getScopes().addAll(token.getScopes());
+            final PrincipalMetadata serviceDetail = new PrincipalMetadata(
+                    service.getClientId(),
+                    service.getName(),
+                    service.getDescription()
+            );
+            serviceDetail.getScopes().addAll(entry.getValue());
+            metadata.add(serviceDetail);
         }
 
-        return metadata.values();
+        return metadata;
     }
 
     @Override
@@ -498,6 +659,18 @@ public final class CentralOAuthServiceImpl implements CentralOAuthService {
 
         Assert.notNull(tokenId, "tokenId cannot be null");
 
+        // Self-contained access tokens are looked up by the token id they carry, e.g. for revocation.
+        final SignedAccessToken signedAccessToken = getSignedAccessToken(tokenId);
+        if (signedAccessToken != null) {
+            return getToken(signedAccessToken.getId(), clazz);
+        }
+
+        if (unknownTokenCache != null && AccessToken.class.isAssignableFrom(clazz)
+                && unknownTokenCache.isUnknown(tokenId)) {
+            LOGGER.debug("Token [{}] is known to be absent.", tokenId);
+            throw new InvalidTokenException(tokenId);
+        }
+
         final T token = this.tokenRegistry.getToken(tokenId, clazz);
         if (token == null) {
             LOGGER.error("Token [{}] by type [{}] cannot be found in the token registry.", tokenId, clazz.getSimpleName());
@@ -505,7 +678,8 @@ public final class CentralOAuthServiceImpl implements CentralOAuthService {
         }
         if (token.getTicket().isExpired()) {
             // Remove the expired ticket, which will CASCADE and remove the token.
-            ticketRegistry.deleteTicket(token.getTicket().getId());
+            deleteTicket(token.getTicket().getId());
+            clientTokensDeleted(Collections.singleton(token));
             LOGGER.error("Token [{}] ticket [{}] is expired.", tokenId, token.getTicket().getId());
             throw new InvalidTokenException(tokenId);
         }
@@ -518,11 +692,66 @@ public final class CentralOAuthServiceImpl implements CentralOAuthService {
 
         Assert.notNull(tokenId, "tokenId cannot be null");
 
-        if (personalAccessTokenManager != null) {
-            return personalAccessTokenManager.getToken(tokenId);
+        if (personalAccessTokenManager == null) {
+            return null;
+        }
+        if (unknownTokenCache != null && unknownTokenCache.isUnknown(tokenId)) {
+            return null;
         }
 
-        return null;
+        // Only a completed lookup may remember the id as unknown, an exception of the handler is left to the caller.
+        final PersonalAccessToken personalAccessToken = personalAccessTokenManager.getToken(tokenId);
+        if (personalAccessToken == null && unknownTokenCache != null) {
+            unknownTokenCache.put(tokenId);
+        }
+        return personalAccessToken;
+    }
+
+    @Override
+    public String getAccessTokenValue(final AccessToken accessToken) {
+
+        if (signedAccessTokenCodec == null || accessToken.getExpirationDate() == null
+                || (accessToken.getType() != TokenType.ONLINE && accessToken.getType() != TokenType.OFFLINE)) {
+            return accessToken.getId();
+        }
+
+        // Release the same attributes as the validation of a service ticket would, see `OAuth20ProfileController`.
+        final TicketGrantingTicket ticketGrantingTicket;
+        final Service service;
+        if (accessToken.getType() == TokenType.OFFLINE) {
+            ticketGrantingTicket = accessToken.getServiceTicket().getGrantingTicket();
+            service = accessToken.getServiceTicket().getService();
+        } else {
+            ticketGrantingTicket = accessToken.getTicketGrantingTicket();
+            service = accessToken.getService();
+        }
+        final Map<String, Object> attributes = new HashMap<>();
+        final RegisteredService registeredService = servicesManager.findServiceBy(service);
+        if (registeredService != null) {
+            attributes.putAll(registeredService.getAttributeReleasePolicy()
+                    .getAttributes(ticketGrantingTicket.getAuthentication().getPrincipal()));
+        }
+
+        return signedAccessTokenCodec.encode(accessToken, attributes);
+    }
+
+    @Override
+    @Timed(name = "GET_SIGNED_ACCESS_TOKEN_TIMER")
+    @Metered(name = "GET_SIGNED_ACCESS_TOKEN_METER")
+    @Counted(name="GET_SIGNED_ACCESS_TOKEN_COUNTER", monotonic=true)
+    public SignedAccessToken getSignedAccessToken(final String value) throws InvalidTokenException {
+
+        if (signedAccessTokenCodec == null || !signedAccessTokenCodec.isEncoded(value)) {
+            return null;
+        }
+
+        final SignedAccessToken signedAccessToken = signedAccessTokenCodec.decode(value);
+        if (tokenRevocationList.isRevoked(signedAccessToken.getId())) {
+            LOGGER.error("Signed access token [{}] has been revoked.", signedAccessToken.getId());
+            throw new InvalidTokenException(signedAccessToken.getId());
+        }
+
+        return signedAccessToken;
     }
 
     @Override
@@ -549,12 +778,144 @@ public final class CentralOAuthServiceImpl implements CentralOAuthService {
     }
 
     @Override
-    public Collection<RefreshToken> getClientRefreshTokens(final String clientId) {
-        return tokenRegistry.getClientTokens(clientId, RefreshToken.class);
+    public Collection<RefreshToken> getClientRefreshTokens(
+            final String clientId,
+            final String afterId,
+            final Integer maxResults
+    ) {
+        return tokenRegistry.getClientTokens(clientId, afterId, maxResults, RefreshToken.class);
     }
 
     @Override
-    public Collection<AccessToken> getClientAccessTokens(final String clientId) {
-        return tokenRegistry.getClientTokens(clientId, AccessToken.class);
+    public Collection<AccessToken> getClientAccessTokens(
+            final String clientId,
+            final String afterId,
+            final Integer maxResults
+    ) {
+        return tokenRegistry.getClientTokens(clientId, afterId, maxResults, AccessToken.class);
+    }
+
+    /**
+     * Delete a ticket from the ticket registry and notify the token registry about the deletion.
+     *
+     * @param ticketId the ticket id
+     * @return a Boolean status if the ticket was successfully deleted
+     */
+    private Boolean deleteTicket(final String ticketId) {
+        casAccessTokenIndex.invalidate(ticketId);
+        final boolean deleted = ticketRegistry.deleteTicket(ticketId);
+        tokenRegistry.deleteTicketTokens(ticketId);
+        return deleted;
+    }
+
+    /**
+     * Notify the token registry that the tokens specified have been deleted, once per client.
+     *
+     * @param tokens the deleted tokens
+     */
+    private void clientTokensDeleted(final Iterable<? extends Token> tokens) {
+        final Set<String> clientIds = new HashSet<>();
+        for (final Token token : tokens) {
+            if (token.getClientId() != null && clientIds.add(token.getClientId())) {
+                tokenRegistry.clientTokensDeleted(token.getClientId());
+            }
+        }
+    }
+
+    /**
+     * Have the personal access token manager forget the PERSONAL access tokens among the revoked tokens specified, so
+     * that the next use of such a token reads it again, with its current scopes, from OSF.
+     *
+     * @param tokens the revoked tokens
+     */
+    private void personalAccessTokensRevoked(final Iterable<? extends Token> tokens) {
+        if (personalAccessTokenManager == null) {
+            return;
+        }
+        for (final Token token : tokens) {
+            if (token.getType() == TokenType.PERSONAL) {
+                personalAccessTokenManager.invalidateToken(token.getId());
+            }
+        }
+    }
+
+    /**
+     * Get the CAS access token ids granted for the ticket granting ticket specified, by service id.
+     *
+     * @param ticketGrantingTicketId the ticket granting ticket id
+     * @return the mutable map of CAS access token ids by service id
+     */
+    private ConcurrentMap<String, String> getCASAccessTokenIndex(final String ticketGrantingTicketId) {
+        final ConcurrentMap<String, String> serviceTokens = casAccessTokenIndex.getIfPresent(ticketGrantingTicketId);
+        if (serviceTokens != null) {
+            return serviceTokens;
+        }
+        final ConcurrentMap<String, String> newServiceTokens = new ConcurrentHashMap<>();
+        final ConcurrentMap<String, String> existing
+                = casAccessTokenIndex.asMap().putIfAbsent(ticketGrantingTicketId, newServiceTokens);
+        return existing != null ? existing : newServiceTokens;
+    }
+
+    /**
+     * Create an index of CAS access tokens bounded to the number of ticket granting tickets specified.
+     *
+     * @param maximumSize the maximum number of ticket granting tickets
+     * @return the index
+     */
+    private static Cache<String, ConcurrentMap<String, String>> newCASAccessTokenIndex(final long maximumSize) {
+        return CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+    }
+
+    /**
+     * Add the self-contained access tokens which are about to be removed along with the tickets specified to the
+     * revocation list, since resource servers would otherwise accept them until they expire.
+     *
+     * Besides the tokens themselves, OFFLINE access tokens are removed along with the ticket granting ticket of their
+     * refresh token, thus the access tokens of each client and principal involved are checked.
+     *
+     * @param tokens the tokens being revoked
+     * @param ticketIds the ids of the tickets being deleted
+     */
+    private void revokeSignedAccessTokens(final Iterable<? extends Token> tokens, final Set<String> ticketIds) {
+
+        if (signedAccessTokenCodec == null) {
+            return;
+        }
+
+        final Set<List<String>> clientPrincipals = new HashSet<>();
+        for (final Token token : tokens) {
+            if (token.getType() == TokenType.ONLINE || token.getType() == TokenType.OFFLINE) {
+                clientPrincipals.add(Arrays.asList(token.getClientId(), token.getPrincipalId()));
+            }
+        }
+        for (final List<String> clientPrincipal : clientPrincipals) {
+            final Collection<AccessToken> accessTokens = tokenRegistry
+                    .getClientPrincipalTokens(clientPrincipal.get(0), clientPrincipal.get(1), AccessToken.class);
+            for (final AccessToken accessToken : accessTokens) {
+                if (accessToken.getExpirationDate() == null) {
+                    continue;
+                }
+                final Ticket ticket = accessToken.getTicket();
+                final Ticket grantingTicket = ticket.getGrantingTicket();
+                if (ticketIds.contains(ticket.getId())
+                        || (grantingTicket != null && ticketIds.contains(grantingTicket.getId()))) {
+                    LOGGER.debug("Revoking signed access token : {}", accessToken.getId());
+                    tokenRevocationList.revoke(accessToken.getId(), accessToken.getExpirationDate());
+                }
+            }
+        }
+    }
+
+    /**
+     * Compute the expiration date of an ONLINE or OFFLINE access token granted now.
+     *
+     * The expiration date is not extended when the ticket of an ONLINE access token is used, thus the token registry
+     * may report such a token as expired before its ticket actually expires. This is only used to decide whether the
+     * approval prompt can be skipped, for which showing it again is the safe side.
+     *
+     * @return the expiration date in milliseconds
+     */
+    private Long getAccessTokenExpirationDate() {
+        return System.currentTimeMillis() + accessTokenTimeToLiveInSeconds * 1000L;
     }
 }
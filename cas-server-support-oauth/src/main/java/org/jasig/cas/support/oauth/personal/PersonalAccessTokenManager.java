@@ -51,4 +51,13 @@ public class PersonalAccessTokenManager {
     public PersonalAccessToken getToken(final String tokenId) {
         return personalAccessTokenHandler.getToken(tokenId);
     }
+
+    /**
+     * Have the handler forget the personal access token of the id specified, after it has been revoked.
+     *
+     * @param tokenId the token id
+     */
+    public void invalidateToken(final String tokenId) {
+        personalAccessTokenHandler.invalidate(tokenId);
+    }
 }
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2015. Center for Open Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jasig.cas.support.oauth.personal.handler;
+
+import com.codahale.metrics.MetricRegistry;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import org.jasig.cas.support.oauth.CacheMetrics;
+import org.jasig.cas.support.oauth.personal.PersonalAccessToken;
+import org.jasig.cas.support.oauth.personal.handler.support.AbstractPersonalAccessTokenHandler;
+import org.jasig.cas.support.oauth.personal.handler.support.PersonalAccessTokenHandler;
+
+import org.springframework.beans.factory.InitializingBean;
+
+import javax.validation.constraints.NotNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read-through caching personal access token handler.
+ *
+ * A decorator of {@link PersonalAccessTokenHandler} which keeps a bounded, time-to-live cache of the personal access
+ * tokens found by the wrapped handler. A token revoked through CAS is evicted right away. Otherwise tokens are re-read
+ * from the wrapped handler once the entry expires, thus a token deactivated or re-scoped in OSF without a revocation
+ * is noticed after at most the time-to-live. Tokens which are not found are not cached, see
+ * {@link org.jasig.cas.support.oauth.token.registry.UnknownTokenCache} instead.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public final class CachingPersonalAccessTokenHandler extends AbstractPersonalAccessTokenHandler
+        implements InitializingBean {
+
+    /** The wrapped personal access token handler. */
+    @NotNull
+    private final PersonalAccessTokenHandler personalAccessTokenHandler;
+
+    /** The personal access token cache keyed by token id. */
+    @NotNull
+    private final Cache<String, PersonalAccessToken> cache;
+
+    /** The optional metric registry where the cache statistics are published. */
+    private MetricRegistry metricRegistry;
+
+    /**
+     * Instantiate a new {@link CachingPersonalAccessTokenHandler}.
+     *
+     * @param personalAccessTokenHandler the wrapped personal access token handler
+     * @param timeToLiveInSeconds the time in seconds a token stays in the cache after being loaded
+     * @param maximumSize the maximum number of tokens to keep in the cache
+     */
+    public CachingPersonalAccessTokenHandler(
+            final PersonalAccessTokenHandler personalAccessTokenHandler,
+            final long timeToLiveInSeconds,
+            final long maximumSize
+    ) {
+        this.personalAccessTokenHandler = personalAccessTokenHandler;
+        this.cache = CacheBuilder.newBuilder()
+                .expireAfterWrite(timeToLiveInSeconds, TimeUnit.SECONDS)
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    public void setMetricRegistry(final MetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if (metricRegistry == null) {
+            return;
+        }
+        CacheMetrics.registerCacheGauges(metricRegistry, CachingPersonalAccessTokenHandler.class, cache);
+    }
+
+    @Override
+    public PersonalAccessToken getToken(final String tokenId) {
+
+        final PersonalAccessToken cached = cache.getIfPresent(tokenId);
+        if (cached != null) {
+            return cached;
+        }
+
+        final PersonalAccessToken token = personalAccessTokenHandler.getToken(tokenId);
+        if (token != null) {
+            cache.put(tokenId, token);
+        }
+        return token;
+    }
+
+    @Override
+    public void invalidate(final String tokenId) {
+        cache.invalidate(tokenId);
+        personalAccessTokenHandler.invalidate(tokenId);
+    }
+}
@@ -22,4 +22,10 @@ package org.jasig.cas.support.oauth.personal.handler.support;
  * @author Longze Chen
  * @since 4.1.5
  */
-public abstract class AbstractPersonalAccessTokenHandler implements PersonalAccessTokenHandler {}
+public abstract class AbstractPersonalAccessTokenHandler implements PersonalAccessTokenHandler {
+
+    @Override
+    public void invalidate(final String tokenId) {
+        // Nothing is kept by default.
+    }
+}
@@ -29,8 +29,17 @@ public interface PersonalAccessTokenHandler {
     /**
      * Get a personal access token from the handler by the token id specified.
      *
+     * Failures of the lookup are thrown rather than reported as null, which would have the id remembered as unknown.
+     *
      * @param tokenId the token id
-     * @return a personal access token or null
+     * @return a personal access token or null if there is no such token
      */
     PersonalAccessToken getToken(String tokenId);
+
+    /**
+     * Forget whatever the handler keeps of the token id specified, e.g. after the token has been revoked.
+     *
+     * @param tokenId the token id
+     */
+    void invalidate(String tokenId);
 }
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2015. Center for Open Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jasig.cas.support.oauth.services;
+
+import org.jasig.cas.services.RegisteredService;
+import org.jasig.cas.services.ServicesManager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Client id index of the OAuth registered services of a {@link ServicesManager}.
+ *
+ * The services manager only finds services by service URL or numeric id, thus finding an OAuth registered service by
+ * client id takes a scan of all the registered services. This index keeps a snapshot of the OAuth registered services
+ * by client id instead, rebuilt by a scan when a client id is not found or when the snapshot is older than the refresh
+ * interval. Services are reloaded by the services manager periodically anyway, thus a change to an existing service
+ * (e.g. a new client secret) takes at most one refresh interval longer to be seen.
+ *
+ * As {@link org.jasig.cas.support.oauth.OAuthUtils#getRegisteredOAuthService(ServicesManager, String)} does, the first
+ * service found for a client id wins.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public final class OAuthRegisteredServiceIndex {
+
+    /** Log instance for logging events, info, warnings, errors, etc. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(OAuthRegisteredServiceIndex.class);
+
+    /** The default refresh interval of the snapshot, which is 1 minute. */
+    private static final long DEFAULT_REFRESH_INTERVAL_IN_SECONDS = 60;
+
+    /** The indexed services manager. */
+    private final ServicesManager servicesManager;
+
+    /** The refresh interval in seconds of the snapshot. */
+    private long refreshIntervalInSeconds = DEFAULT_REFRESH_INTERVAL_IN_SECONDS;
+
+    /** The OAuth registered services by client id, as found by the last scan. */
+    private volatile Map<String, OAuthRegisteredService> services = Collections.emptyMap();
+
+    /** The time in milliseconds of the last scan. */
+    private volatile long snapshotTime;
+
+    /**
+     * Instantiate a new {@link OAuthRegisteredServiceIndex}.
+     *
+     * @param servicesManager the services manager to index
+     */
+    public OAuthRegisteredServiceIndex(final ServicesManager servicesManager) {
+        this.servicesManager = servicesManager;
+    }
+
+    public void setRefreshIntervalInSeconds(final long refreshIntervalInSeconds) {
+        this.refreshIntervalInSeconds = refreshIntervalInSeconds;
+    }
+
+    /**
+     * Find the OAuth registered service of the client id specified.
+     *
+     * @param clientId the client id
+     * @return the OAuth registered service, or null if not found
+     */
+    public OAuthRegisteredService getService(final String clientId) {
+
+        if (clientId == null) {
+            return null;
+        }
+
+        if (System.currentTimeMillis() - snapshotTime < refreshIntervalInSeconds * 1000L) {
+            final OAuthRegisteredService service = services.get(clientId);
+            if (service != null) {
+                return service;
+            }
+        }
+
+        // Concurrent scans may happen on a miss, they build the same snapshot and the last one is kept.
+        return refresh().get(clientId);
+    }
+
+    /**
+     * Scan the registered services and replace the snapshot.
+     *
+     * @return the new snapshot
+     */
+    private Map<String, OAuthRegisteredService> refresh() {
+        final long now = System.currentTimeMillis();
+        final Map<String, OAuthRegisteredService> snapshot = new HashMap<>();
+        for (final RegisteredService registeredService : servicesManager.getAllServices()) {
+            if (registeredService instanceof OAuthRegisteredService) {
+                final OAuthRegisteredService service = (OAuthRegisteredService) registeredService;
+                if (service.getClientId() != null && !snapshot.containsKey(service.getClientId())) {
+                    snapshot.put(service.getClientId(), service);
+                }
+            }
+        }
+        services = snapshot;
+        snapshotTime = now;
+        LOGGER.debug("Indexed {} OAuth registered services by client id.", snapshot.size());
+        return snapshot;
+    }
+}
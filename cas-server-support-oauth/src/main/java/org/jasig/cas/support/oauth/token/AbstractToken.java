@@ -19,12 +19,9 @@ import org.springframework.util.Assert;
 
 import javax.persistence.Column;
 import javax.persistence.Id;
-import javax.persistence.Lob;
 import javax.persistence.MappedSuperclass;
-import javax.persistence.PrePersist;
-import javax.persistence.PreUpdate;
+import javax.persistence.Transient;
 
-import java.util.HashSet;
 import java.util.Set;
 
 /**
@@ -57,12 +54,17 @@ public abstract class AbstractToken implements Token {
     @Column(name="TYPE", nullable=false)
     private TokenType type;
 
-    @Lob
-    @Column(name="SCOPES", nullable=false, length = 1000000)
-    private final HashSet<String> scopes = new HashSet<>();
+    /** The scopes associated with the token, in the canonical encoding of {@link TokenScopes}. */
+    @Column(name="SCOPE_SET", nullable=false, length=TokenScopes.MAX_LENGTH)
+    private String encodedScopes;
 
-    @Column(name="SCOPES_HASH", nullable=false)
-    private Integer scopesHash;
+    /** The time in milliseconds after which the token is expired, or null if it does not expire by time. */
+    @Column(name="EXPIRATION_DATE")
+    private Long expirationDate;
+
+    /** The decoded scopes, lazily built from the encoded scopes. */
+    @Transient
+    private Set<String> scopes;
 
     /** Default constructor. */
     protected AbstractToken(){}
@@ -91,14 +93,7 @@ public abstract class AbstractToken implements Token {
         this.clientId = clientId;
         this.principalId = principalId;
         this.type = type;
-        this.scopes.addAll(scopes);
-    }
-
-    /** Compute the hash of all scopes upon saving the token. */
-    @PreUpdate
-    @PrePersist
-    private void updateScopesHash() {
-        this.scopesHash = this.scopes.hashCode();
+        this.encodedScopes = TokenScopes.encode(scopes);
     }
 
     @Override
@@ -123,11 +118,23 @@ public abstract class AbstractToken implements Token {
 
     @Override
     public Set<String> getScopes() {
+        if (this.scopes == null) {
+            this.scopes = TokenScopes.decode(this.encodedScopes);
+        }
         return this.scopes;
     }
 
     @Override
-    public Integer getScopesHash() {
-        return this.scopesHash;
+    public String getEncodedScopes() {
+        return this.encodedScopes;
+    }
+
+    @Override
+    public Long getExpirationDate() {
+        return this.expirationDate;
+    }
+
+    public void setExpirationDate(final Long expirationDate) {
+        this.expirationDate = expirationDate;
     }
 }
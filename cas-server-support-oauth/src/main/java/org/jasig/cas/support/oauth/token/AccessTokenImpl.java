@@ -29,6 +29,7 @@ import javax.persistence.Access;
 import javax.persistence.AccessType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.Index;
 import javax.persistence.Lob;
 import javax.persistence.OneToOne;
 import javax.persistence.Table;
@@ -43,7 +44,20 @@ import java.util.Set;
  * @since 4.1.5
  */
 @Entity
-@Table(name="ACCESSTOKEN")
+@Table(
+        name="ACCESSTOKEN",
+        indexes = {
+                @Index(
+                        name="IDX_ACCESSTOKEN_CLIENT_PRINCIPAL",
+                        columnList="CLIENT_ID, PRINCIPAL_ID, TYPE, SCOPE_SET"
+                ),
+                @Index(name="IDX_ACCESSTOKEN_CLIENT", columnList="CLIENT_ID, ID"),
+                @Index(name="IDX_ACCESSTOKEN_PRINCIPAL", columnList="PRINCIPAL_ID, CLIENT_ID"),
+                @Index(name="IDX_ACCESSTOKEN_TGT", columnList="ticketGrantingTicket_ID"),
+                @Index(name="IDX_ACCESSTOKEN_ST", columnList="serviceTicket_ID"),
+                @Index(name="IDX_ACCESSTOKEN_EXPIRATION", columnList="EXPIRATION_DATE, ID")
+        }
+)
 @Access(AccessType.FIELD)
 public final class AccessTokenImpl extends AbstractToken implements AccessToken {
 
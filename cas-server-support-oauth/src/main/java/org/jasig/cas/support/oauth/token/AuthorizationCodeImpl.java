@@ -23,6 +23,7 @@ import org.jasig.cas.ticket.ServiceTicketImpl;
 import org.jasig.cas.ticket.Ticket;
 
 import javax.persistence.Entity;
+import javax.persistence.Index;
 import javax.persistence.OneToOne;
 import javax.persistence.Table;
 
@@ -36,7 +37,12 @@ import java.util.Set;
  * @since 4.1.5
  */
 @Entity
-@Table(name="AUTHORIZATIONCODE")
+@Table(
+        name="AUTHORIZATIONCODE",
+        indexes = {
+                @Index(name="IDX_AUTHORIZATIONCODE_ST", columnList="serviceTicket_ID")
+        }
+)
 public final class AuthorizationCodeImpl extends AbstractToken implements AuthorizationCode {
 
     /** Unique id for serialization. */
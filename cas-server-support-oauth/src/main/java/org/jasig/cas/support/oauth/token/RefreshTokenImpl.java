@@ -27,6 +27,7 @@ import javax.persistence.Access;
 import javax.persistence.AccessType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.Index;
 import javax.persistence.OneToOne;
 import javax.persistence.Table;
 
@@ -40,7 +41,15 @@ import java.util.Set;
  * @since 4.1.5
  */
 @Entity
-@Table(name="REFRESHTOKEN")
+@Table(
+        name="REFRESHTOKEN",
+        indexes = {
+                @Index(name="IDX_REFRESHTOKEN_CLIENT_PRINCIPAL", columnList="CLIENT_ID, PRINCIPAL_ID, SCOPE_SET"),
+                @Index(name="IDX_REFRESHTOKEN_CLIENT", columnList="CLIENT_ID, ID"),
+                @Index(name="IDX_REFRESHTOKEN_PRINCIPAL", columnList="PRINCIPAL_ID, CLIENT_ID"),
+                @Index(name="IDX_REFRESHTOKEN_TGT", columnList="ticketGrantingTicket_ID")
+        }
+)
 @Access(AccessType.FIELD)
 public final class RefreshTokenImpl extends AbstractToken implements RefreshToken {
 
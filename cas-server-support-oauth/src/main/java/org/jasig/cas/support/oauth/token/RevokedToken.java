@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2015. Center for Open Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jasig.cas.support.oauth.token;
+
+import javax.persistence.Access;
+import javax.persistence.AccessType;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import java.io.Serializable;
+
+/**
+ * An entry of the revocation list of self-contained access tokens, see {@link SignedAccessTokenCodec}.
+ *
+ * The entry is only needed until the token expires by itself, thus the list stays as small as the number of tokens
+ * revoked within one access token lifetime.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+@Entity
+@Table(
+        name="REVOKEDTOKEN",
+        indexes = {
+                @Index(name="IDX_REVOKEDTOKEN_EXPIRATION", columnList="EXPIRATION_DATE")
+        }
+)
+@Access(AccessType.FIELD)
+public final class RevokedToken implements Serializable {
+
+    /** Unique id for serialization. */
+    private static final long serialVersionUID = 2291638245870719203L;
+
+    /** The id of the revoked access token. */
+    @Id
+    @Column(name="ID", nullable=false)
+    private String id;
+
+    /** The expiration date in milliseconds of the revoked access token. */
+    @Column(name="EXPIRATION_DATE", nullable=false)
+    private Long expirationDate;
+
+    /** Default constructor. */
+    public RevokedToken() {}
+
+    /**
+     * Instantiate a new {@link RevokedToken}.
+     *
+     * @param id the id of the revoked access token
+     * @param expirationDate the expiration date in milliseconds of the revoked access token
+     */
+    public RevokedToken(final String id, final Long expirationDate) {
+        this.id = id;
+        this.expirationDate = expirationDate;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Long getExpirationDate() {
+        return expirationDate;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2015. Center for Open Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jasig.cas.support.oauth.token;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A self-contained ONLINE or OFFLINE access token, as verified by {@link SignedAccessTokenCodec}.
+ *
+ * Unlike {@link AccessToken}, it is not backed by any ticket. Everything the resource server needs is carried by the
+ * token itself, thus it can be validated without any lookup of the token registry.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public final class SignedAccessToken {
+
+    /** The id of the access token in the token registry. */
+    private final String id;
+
+    /** The token type. */
+    private final TokenType type;
+
+    /** The client id. */
+    private final String clientId;
+
+    /** The principal id. */
+    private final String principalId;
+
+    /** The granted scopes. */
+    private final Set<String> scopes;
+
+    /** The expiration date in milliseconds. */
+    private final Long expirationDate;
+
+    /** The principal attributes released to the client. */
+    private final Map<String, Object> attributes;
+
+    /**
+     * Instantiate a new {@link SignedAccessToken}.
+     *
+     * @param id the id of the access token in the token registry
+     * @param type the token type
+     * @param clientId the client id
+     * @param principalId the principal id
+     * @param scopes the granted scopes
+     * @param expirationDate the expiration date in milliseconds
+     * @param attributes the principal attributes released to the client
+     */
+    public SignedAccessToken(
+            final String id,
+            final TokenType type,
+            final String clientId,
+            final String principalId,
+            final Set<String> scopes,
+            final Long expirationDate,
+            final Map<String, Object> attributes
+    ) {
+        this.id = id;
+        this.type = type;
+        this.clientId = clientId;
+        this.principalId = principalId;
+        this.scopes = Collections.unmodifiableSet(scopes);
+        this.expirationDate = expirationDate;
+        this.attributes = Collections.unmodifiableMap(attributes);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public TokenType getType() {
+        return type;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public String getPrincipalId() {
+        return principalId;
+    }
+
+    public Set<String> getScopes() {
+        return scopes;
+    }
+
+    public Long getExpirationDate() {
+        return expirationDate;
+    }
+
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+}
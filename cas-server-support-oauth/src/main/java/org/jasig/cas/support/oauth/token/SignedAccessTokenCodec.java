@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2015. Center for Open Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jasig.cas.support.oauth.token;
+
+import com.nimbusds.jose.EncryptionMethod;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWEAlgorithm;
+import com.nimbusds.jose.JWEHeader;
+import com.nimbusds.jose.JWEObject;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.KeyLengthException;
+import com.nimbusds.jose.Payload;
+import com.nimbusds.jose.crypto.DirectDecrypter;
+import com.nimbusds.jose.crypto.DirectEncrypter;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jose.crypto.MACVerifier;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+
+import org.apache.commons.lang3.StringUtils;
+
+import org.springframework.util.Assert;
+
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Codec of self-contained ONLINE and OFFLINE access tokens.
+ *
+ * The token is a JWT signed with HMAC SHA-256 which carries the registry id of the access token, the principal, the
+ * client, the scopes, the expiration date and the principal attributes released to the client. When an encryption
+ * secret is given, the signed JWT is further wrapped in a JWE with direct AES-256-GCM encryption, as done for the
+ * institution login payload sent to OSF, so that the attributes are not readable by the client.
+ *
+ * Both secrets must be 32 bytes long.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public final class SignedAccessTokenCodec {
+
+    /** The prefix of every compact JOSE object, the base64url encoding of <code>{"</code>. */
+    private static final String JOSE_PREFIX = "eyJ";
+
+    /** The number of parts of a compact JWS. */
+    private static final int JWS_PARTS = 3;
+
+    /** The number of parts of a compact JWE. */
+    private static final int JWE_PARTS = 5;
+
+    /** The claim of the client id. */
+    private static final String CLIENT_ID_CLAIM = "client_id";
+
+    /** The claim of the token type. */
+    private static final String TYPE_CLAIM = "token_type";
+
+    /** The claim of the scopes, in the canonical encoding of {@link TokenScopes}. */
+    private static final String SCOPE_CLAIM = "scope";
+
+    /** The claim of the released principal attributes. */
+    private static final String ATTRIBUTES_CLAIM = "attributes";
+
+    /** The issuer of the tokens. */
+    private final String issuer;
+
+    /** The signer of the tokens. */
+    private final JWSSigner signer;
+
+    /** The verifier of the tokens. */
+    private final JWSVerifier verifier;
+
+    /** The optional encrypter of the tokens. */
+    private final DirectEncrypter encrypter;
+
+    /** The optional decrypter of the tokens. */
+    private final DirectDecrypter decrypter;
+
+    /**
+     * Instantiate a new {@link SignedAccessTokenCodec}.
+     *
+     * @param issuer the issuer of the tokens, usually the CAS server name
+     * @param signingSecret the secret the tokens are signed with
+     * @param encryptionSecret the secret the tokens are encrypted with, or blank for signed only tokens
+     */
+    public SignedAccessTokenCodec(final String issuer, final String signingSecret, final String encryptionSecret) {
+
+        Assert.hasText(issuer, "issuer cannot be blank");
+        Assert.hasText(signingSecret, "signingSecret cannot be blank, signed access tokens require a secret");
+
+        this.issuer = issuer;
+        try {
+            final byte[] signingKey = signingSecret.getBytes(StandardCharsets.UTF_8);
+            this.signer = new MACSigner(signingKey);
+            this.verifier = new MACVerifier(signingKey);
+            if (StringUtils.isBlank(encryptionSecret)) {
+                this.encrypter = null;
+                this.decrypter = null;
+            } else {
+                final byte[] encryptionKey = encryptionSecret.getBytes(StandardCharsets.UTF_8);
+                this.encrypter = new DirectEncrypter(encryptionKey);
+                this.decrypter = new DirectDecrypter(encryptionKey);
+            }
+        } catch (final KeyLengthException e) {
+            throw new IllegalArgumentException("Signing and encryption secrets must be 32 bytes long", e);
+        } catch (final JOSEException e) {
+            throw new IllegalArgumentException("Invalid signing secret", e);
+        }
+    }
+
+    /**
+     * Check whether a token value looks like a token of this codec rather than a token id.
+     *
+     * @param value the token value
+     * @return true if the value may be decoded
+     */
+    public boolean isEncoded(final String value) {
+        if (value == null || !value.startsWith(JOSE_PREFIX)) {
+            return false;
+        }
+        final int parts = StringUtils.countMatches(value, ".") + 1;
+        return parts == (encrypter == null ? JWS_PARTS : JWE_PARTS);
+    }
+
+    /**
+     * Encode an access token with its expiration date and released attributes.
+     *
+     * @param accessToken the ONLINE or OFFLINE access token
+     * @param attributes the principal attributes released to the client
+     * @return the compact self-contained token
+     */
+    public String encode(final AccessToken accessToken, final Map<String, Object> attributes) {
+
+        Assert.notNull(accessToken.getExpirationDate(), "accessToken must have an expiration date");
+
+        final JWTClaimsSet claimsSet = new JWTClaimsSet.Builder()
+                .issuer(issuer)
+                .jwtID(accessToken.getId())
+                .subject(accessToken.getPrincipalId())
+                .issueTime(new Date())
+                .expirationTime(new Date(accessToken.getExpirationDate()))
+                .claim(CLIENT_ID_CLAIM, accessToken.getClientId())
+                .claim(TYPE_CLAIM, accessToken.getType().name())
+                .claim(SCOPE_CLAIM, accessToken.getEncodedScopes())
+                .claim(ATTRIBUTES_CLAIM, attributes)
+                .build();
+        final SignedJWT signedJWT = new SignedJWT(new JWSHeader(JWSAlgorithm.HS256), claimsSet);
+        try {
+            signedJWT.sign(signer);
+            if (encrypter == null) {
+                return signedJWT.serialize();
+            }
+            final JWEObject jweObject = new JWEObject(
+                    new JWEHeader.Builder(JWEAlgorithm.DIR, EncryptionMethod.A256GCM).contentType("JWT").build(),
+                    new Payload(signedJWT)
+            );
+            jweObject.encrypt(encrypter);
+            return jweObject.serialize();
+        } catch (final JOSEException e) {
+            throw new IllegalStateException("Could not sign access token " + accessToken.getId(), e);
+        }
+    }
+
+    /**
+     * Decode a token and verify its signature, issuer and expiration date.
+     *
+     * Revocation is not checked here, see {@link org.jasig.cas.support.oauth.token.registry.TokenRevocationList}.
+     *
+     * @param value the compact self-contained token
+     * @return the verified access token
+     * @throws InvalidTokenException if the token is malformed, forged, issued by another server or expired
+     */
+    public SignedAccessToken decode(final String value) throws InvalidTokenException {
+        try {
+            final SignedJWT signedJWT;
+            if (decrypter == null) {
+                signedJWT = SignedJWT.parse(value);
+            } else {
+                final JWEObject jweObject = JWEObject.parse(value);
+                jweObject.decrypt(decrypter);
+                signedJWT = jweObject.getPayload().toSignedJWT();
+            }
+            if (signedJWT == null || !JWSAlgorithm.HS256.equals(signedJWT.getHeader().getAlgorithm())
+                    || !signedJWT.verify(verifier)) {
+                throw new InvalidTokenException(value);
+            }
+
+            final JWTClaimsSet claimsSet = signedJWT.getJWTClaimsSet();
+            final Date expirationTime = claimsSet.getExpirationTime();
+            final String type = claimsSet.getStringClaim(TYPE_CLAIM);
+            if (!issuer.equals(claimsSet.getIssuer()) || claimsSet.getJWTID() == null || type == null
+                    || expirationTime == null || expirationTime.getTime() <= System.currentTimeMillis()) {
+                throw new InvalidTokenException(value);
+            }
+
+            final Map<String, Object> attributes = new HashMap<>();
+            final Object attributesClaim = claimsSet.getClaim(ATTRIBUTES_CLAIM);
+            if (attributesClaim instanceof Map) {
+                for (final Map.Entry<?, ?> entry : ((Map<?, ?>) attributesClaim).entrySet()) {
+                    attributes.put(String.valueOf(entry.getKey()), entry.getValue());
+                }
+            }
+            return new SignedAccessToken(
+                    claimsSet.getJWTID(),
+                    TokenType.valueOf(type),
+                    claimsSet.getStringClaim(CLIENT_ID_CLAIM),
+                    claimsSet.getSubject(),
+                    TokenScopes.decode(claimsSet.getStringClaim(SCOPE_CLAIM)),
+                    expirationTime.getTime(),
+                    attributes
+            );
+        } catch (final ParseException | JOSEException | IllegalArgumentException e) {
+            throw new InvalidTokenException(e, value);
+        }
+    }
+}
@@ -67,14 +67,26 @@ public interface Token extends Serializable {
     /**
      * Method to retrieve the scopes.
      *
-     * @return the scopes
+     * @return the unmodifiable set of scopes
      */
     Set<String> getScopes();
 
     /**
-     * Method to retrieve the computed hash of the assigned scopes.
+     * Method to retrieve the scopes in the canonical encoding of {@link TokenScopes}.
      *
-     * @return the hash
+     * @return the encoded scopes
      */
-    Integer getScopesHash();
+    String getEncodedScopes();
+
+    /**
+     * Method to retrieve the time in milliseconds after which the token is expired.
+     *
+     * The expiration date is only set for ONLINE and OFFLINE access tokens, whose lifetime is the one of the OAuth
+     * access token policy. It is null for tokens that never expire by time (refresh tokens and PERSONAL access tokens)
+     * and for tokens whose lifetime follows their CAS ticket (CAS access tokens and authorization codes). The ticket
+     * state, checked by {@link Ticket#isExpired()}, remains the authority for a token retrieved by id.
+     *
+     * @return the expiration date, or null
+     */
+    Long getExpirationDate();
 }
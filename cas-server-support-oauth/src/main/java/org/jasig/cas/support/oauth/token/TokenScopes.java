@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2015. Center for Open Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jasig.cas.support.oauth.token;
+
+import org.apache.commons.lang3.StringUtils;
+
+import org.springframework.util.Assert;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The canonical encoding of token scopes.
+ *
+ * Scopes are stored as a single column holding the scope names sorted in their natural order and separated by a
+ * single space, which is the scope delimiter of RFC 6749 and thus never part of a scope name. Two equal sets of scopes
+ * always have the same encoding, which allows {@link org.jasig.cas.support.oauth.token.registry.TokenRegistry} to
+ * match scopes with an exact and indexed comparison.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public final class TokenScopes {
+
+    /** The delimiter between scope names. */
+    public static final String DELIMITER = " ";
+
+    /** The maximum length of the encoded scopes. */
+    public static final int MAX_LENGTH = 1024;
+
+    /** Private constructor. */
+    private TokenScopes() {}
+
+    /**
+     * Encode a set of scopes into its canonical form.
+     *
+     * @param scopes the set of scopes
+     * @return the encoded scopes
+     */
+    public static String encode(final Set<String> scopes) {
+        Assert.notNull(scopes, "scopes cannot be null");
+        final Set<String> sorted = new TreeSet<>();
+        for (final String scope : scopes) {
+            Assert.hasText(scope, "scope cannot be empty");
+            Assert.isTrue(!scope.contains(DELIMITER), "scope cannot contain the delimiter: " + scope);
+            sorted.add(scope);
+        }
+        final String encoded = StringUtils.join(sorted, DELIMITER);
+        Assert.isTrue(encoded.length() <= MAX_LENGTH, "encoded scopes cannot exceed " + MAX_LENGTH + " characters");
+        return encoded;
+    }
+
+    /**
+     * Decode the canonical form into an unmodifiable set of scopes, sorted in their natural order.
+     *
+     * @param encoded the encoded scopes
+     * @return the set of scopes
+     */
+    public static Set<String> decode(final String encoded) {
+        if (StringUtils.isEmpty(encoded)) {
+            return Collections.emptySet();
+        }
+        final Set<String> scopes = new LinkedHashSet<>();
+        Collections.addAll(scopes, StringUtils.split(encoded, DELIMITER));
+        return Collections.unmodifiableSet(scopes);
+    }
+}
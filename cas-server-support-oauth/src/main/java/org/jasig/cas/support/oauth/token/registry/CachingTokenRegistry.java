@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) 2015. Center for Open Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jasig.cas.support.oauth.token.registry;
+
+import com.codahale.metrics.MetricRegistry;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import org.jasig.cas.support.oauth.CacheMetrics;
+import org.jasig.cas.support.oauth.token.AuthorizationCode;
+import org.jasig.cas.support.oauth.token.Token;
+import org.jasig.cas.support.oauth.token.TokenType;
+import org.jasig.cas.ticket.Ticket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+import javax.validation.constraints.NotNull;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read-through caching OAuth token registry.
+ *
+ * A decorator of {@link TokenRegistry} which keeps a bounded, time-to-live cache of the tokens retrieved by id from
+ * the wrapped registry. All the other queries are passed through as they are.
+ *
+ * Only access tokens and refresh tokens are cached. Authorization codes are used once and deleted right after.
+ *
+ * Cached tokens are shared, detached entity instances and must not be modified. A cached token whose ticket appears
+ * to be expired is always re-read from the wrapped registry so that the expiration check is done on the latest ticket
+ * state. Tokens are evicted when the {@link org.jasig.cas.support.oauth.CentralOAuthService} deletes their ticket.
+ * Tickets deleted elsewhere (e.g. by CAS logout) are only noticed when the cache entry expires, which is why the
+ * time-to-live should stay short.
+ *
+ * Optionally, the number of principals per client is cached as well. Tokens are mostly removed by the CASCADE of
+ * ticket deletions which bypass the token registry, thus the count cannot be maintained incrementally. It is evicted
+ * when the {@link org.jasig.cas.support.oauth.CentralOAuthService} reports deleted tokens of the client through
+ * {@link #clientTokensDeleted(String)}, and otherwise reloaded once its time-to-live has passed.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public final class CachingTokenRegistry implements TokenRegistry, InitializingBean {
+
+    /** Log instance for logging events, info, warnings, errors, etc. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachingTokenRegistry.class);
+
+    /** The wrapped token registry. */
+    @NotNull
+    private final TokenRegistry tokenRegistry;
+
+    /** The token cache keyed by token id. */
+    @NotNull
+    private final Cache<String, Token> cache;
+
+    /** The optional principal count cache keyed by client id. */
+    private final Cache<String, Integer> principalCountCache;
+
+    /** The optional metric registry where the cache statistics are published. */
+    private MetricRegistry metricRegistry;
+
+    /**
+     * Instantiate a new {@link CachingTokenRegistry}.
+     *
+     * @param tokenRegistry the wrapped token registry
+     * @param timeToLiveInSeconds the time in seconds a token stays in the cache after being loaded
+     * @param maximumSize the maximum number of tokens to keep in the cache
+     */
+    public CachingTokenRegistry(
+            final TokenRegistry tokenRegistry,
+            final long timeToLiveInSeconds,
+            final long maximumSize
+    ) {
+        this(tokenRegistry, timeToLiveInSeconds, maximumSize, 0);
+    }
+
+    /**
+     * Instantiate a new {@link CachingTokenRegistry} which also caches the number of principals per client.
+     *
+     * @param tokenRegistry the wrapped token registry
+     * @param timeToLiveInSeconds the time in seconds a token stays in the cache after being loaded
+     * @param maximumSize the maximum number of tokens to keep in the cache
+     * @param principalCountTimeToLiveInSeconds the time in seconds a principal count stays in the cache after being
+     *                                          loaded, or 0 to disable the principal count cache
+     */
+    public CachingTokenRegistry(
+            final TokenRegistry tokenRegistry,
+            final long timeToLiveInSeconds,
+            final long maximumSize,
+            final long principalCountTimeToLiveInSeconds
+    ) {
+        this.tokenRegistry = tokenRegistry;
+        this.cache = CacheBuilder.newBuilder()
+                .expireAfterWrite(timeToLiveInSeconds, TimeUnit.SECONDS)
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+        if (principalCountTimeToLiveInSeconds > 0) {
+            this.principalCountCache = CacheBuilder.newBuilder()
+                    .expireAfterWrite(principalCountTimeToLiveInSeconds, TimeUnit.SECONDS)
+                    .maximumSize(maximumSize)
+                    .build();
+        } else {
+            this.principalCountCache = null;
+        }
+    }
+
+    public void setMetricRegistry(final MetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if (metricRegistry == null) {
+            return;
+        }
+        CacheMetrics.registerCacheGauges(metricRegistry, CachingTokenRegistry.class, cache);
+    }
+
+    @Override
+    public void addToken(final Token token) {
+        // Do not populate the cache here, the token is only visible to others once the transaction commits.
+        tokenRegistry.addToken(token);
+    }
+
+    @Override
+    public void updateToken(final Token token) {
+        cache.invalidate(token.getId());
+        tokenRegistry.updateToken(token);
+    }
+
+    @Override
+    public <T extends Token> T getToken(final String tokenId, final Class<T> clazz) throws ClassCastException {
+
+        Assert.notNull(clazz, "clazz cannot be null");
+
+        if (AuthorizationCode.class.isAssignableFrom(clazz)) {
+            return tokenRegistry.getToken(tokenId, clazz);
+        }
+
+        final Token cached = cache.getIfPresent(tokenId);
+        if (cached != null && clazz.isInstance(cached) && !cached.getTicket().isExpired()) {
+            return clazz.cast(cached);
+        }
+
+        final T token = tokenRegistry.getToken(tokenId, clazz);
+        if (token != null) {
+            cache.put(tokenId, token);
+        } else {
+            cache.invalidate(tokenId);
+        }
+        return token;
+    }
+
+    @Override
+    public <T extends Token> Collection<T> getTokens(
+            final Collection<String> tokenIds,
+            final Class<T> clazz
+    ) throws ClassCastException {
+        return tokenRegistry.getTokens(tokenIds, clazz);
+    }
+
+    @Override
+    public <T extends Token> Collection<T> getClientTokens(
+            final String clientId,
+            final Class<T> clazz
+    ) throws ClassCastException {
+        return tokenRegistry.getClientTokens(clientId, clazz);
+    }
+
+    @Override
+    public <T extends Token> Collection<T> getClientTokens(
+            final String clientId,
+            final String afterId,
+            final Integer maxResults,
+            final Class<T> clazz
+    ) throws ClassCastException {
+        return tokenRegistry.getClientTokens(clientId, afterId, maxResults, clazz);
+    }
+
+    @Override
+    public <T extends Token> Collection<T> getClientPrincipalTokens(
+            final String clientId,
+            final String principalId,
+            final Class<T> clazz
+    ) throws ClassCastException {
+        return tokenRegistry.getClientPrincipalTokens(clientId, principalId, clazz);
+    }
+
+    @Override
+    public <T extends Token> Collection<T> getClientPrincipalTokens(
+            final String clientId,
+            final String principalId,
+            final TokenType type,
+            final Class<T> clazz
+    ) throws ClassCastException {
+        return tokenRegistry.getClientPrincipalTokens(clientId, principalId, type, clazz);
+    }
+
+    @Override
+    public <T extends Token> Collection<T> getPrincipalTokens(
+            final String principalId,
+            final Class<T> clazz
+    ) throws ClassCastException {
+        return tokenRegistry.getPrincipalTokens(principalId, clazz);
+    }
+
+    @Override
+    public <T extends Token> Boolean isToken(
+            final String clientId,
+            final String principalId,
+            final Set<String> scopes,
+            final Class<T> clazz
+    ) throws ClassCastException {
+        return tokenRegistry.isToken(clientId, principalId, scopes, clazz);
+    }
+
+    @Override
+    public <T extends Token> Boolean isToken(
+            final TokenType type,
+            final String clientId,
+            final String principalId,
+            final Set<String> scopes,
+            final Class<T> clazz
+    ) throws ClassCastException {
+        return tokenRegistry.isToken(type, clientId, principalId, scopes, clazz);
+    }
+
+    @Override
+    public <T extends Token> Collection<T> getExpiredTokens(
+            final Long expirationDate,
+            final Token after,
+            final Integer maxResults,
+            final Class<T> clazz
+    ) throws ClassCastException {
+        return tokenRegistry.getExpiredTokens(expirationDate, after, maxResults, clazz);
+    }
+
+    @Override
+    public Map<String, Set<String>> getPrincipalClientScopes(final String principalId) {
+        return tokenRegistry.getPrincipalClientScopes(principalId);
+    }
+
+    @Override
+    public Integer getPrincipalCount(final String clientId) {
+
+        if (principalCountCache == null) {
+            return tokenRegistry.getPrincipalCount(clientId);
+        }
+
+        final Integer cached = principalCountCache.getIfPresent(clientId);
+        if (cached != null) {
+            return cached;
+        }
+
+        final Integer count = tokenRegistry.getPrincipalCount(clientId);
+        principalCountCache.put(clientId, count);
+        return count;
+    }
+
+    @Override
+    public void clientTokensDeleted(final String clientId) {
+        Assert.notNull(clientId, "clientId cannot be null");
+        if (principalCountCache != null) {
+            principalCountCache.invalidate(clientId);
+        }
+        tokenRegistry.clientTokensDeleted(clientId);
+    }
+
+    @Override
+    public void deleteTicketTokens(final String ticketId) {
+
+        Assert.notNull(ticketId, "ticketId cannot be null");
+
+        evictTicketTokens(Collections.singleton(ticketId));
+        LOGGER.debug("Evicted cached tokens of ticket [{}].", ticketId);
+
+        tokenRegistry.deleteTicketTokens(ticketId);
+    }
+
+    @Override
+    public Integer deleteTickets(final Collection<String> ticketIds) {
+
+        Assert.notNull(ticketIds, "ticketIds cannot be null");
+
+        evictTicketTokens(new HashSet<>(ticketIds));
+        LOGGER.debug("Evicted cached tokens of {} tickets.", ticketIds.size());
+
+        return tokenRegistry.deleteTickets(ticketIds);
+    }
+
+    /**
+     * Evict the cached tokens backed by the tickets specified, and OFFLINE access tokens backed by a service ticket
+     * granted by one of them. Revocations are rare and the cache is bounded, thus a full scan is acceptable here.
+     *
+     * @param ticketIds the ids of the tickets
+     */
+    private void evictTicketTokens(final Set<String> ticketIds) {
+        final Iterator<Token> iterator = cache.asMap().values().iterator();
+        while (iterator.hasNext()) {
+            final Token token = iterator.next();
+            final Ticket ticket = token.getTicket();
+            if (ticket == null) {
+                continue;
+            }
+            if (ticketIds.contains(ticket.getId())
+                    || (ticket.getGrantingTicket() != null && ticketIds.contains(ticket.getGrantingTicket().getId()))) {
+                iterator.remove();
+                if (principalCountCache != null && token.getClientId() != null) {
+                    principalCountCache.invalidate(token.getClientId());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,706 @@
+/*
+ * Copyright (c) 2015. Center for Open Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jasig.cas.support.oauth.token.registry;
+
+import com.google.common.util.concurrent.Striped;
+
+import org.jasig.cas.support.oauth.token.AccessToken;
+import org.jasig.cas.support.oauth.token.AuthorizationCode;
+import org.jasig.cas.support.oauth.token.RefreshToken;
+import org.jasig.cas.support.oauth.token.Token;
+import org.jasig.cas.support.oauth.token.TokenScopes;
+import org.jasig.cas.support.oauth.token.TokenType;
+import org.jasig.cas.ticket.Ticket;
+import org.jasig.cas.ticket.registry.TicketRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.Lock;
+import java.util.function.BiFunction;
+
+/**
+ * In-memory OAuth token registry.
+ *
+ * An implementation of {@link TokenRegistry} which keeps the tokens in a {@link ConcurrentHashMap}, for single-node
+ * deployments with an in-memory ticket registry and for tests without a database.
+ *
+ * Each query of {@link TokenRegistry} is served by a secondary index which maps the query key to the ids of the
+ * matching tokens. The writes of a token id, i.e. the change of the token map and of the indexes, are serialized by a
+ * lock striped by token id, so that the indexes and the principal counts always end up matching the token map. Readers
+ * do not lock and may briefly see the indexes disagree with the token map, thus every token found through an index is
+ * checked against the query before being returned. The tokens with an expiration date are also kept in a set ordered
+ * by expiration date, which serves {@link #getExpiredTokens(Long, Token, Integer, Class)} without scanning the
+ * registry; a token must thus not change its expiration date once added.
+ *
+ * The removal of the tokens of expired tickets by {@link #clean()} takes the lock of each token id as well. The
+ * indexes hold token ids rather than token instances, thus unindexing a removed token outside of the lock could drop
+ * the entries of a token added meanwhile under the same id, and would decrement the principal counts of the removed
+ * token after the new one has incremented them. Only the lock of one token id is held at a time, which is uncontended
+ * but for a concurrent write of that very token.
+ *
+ * Tokens are not removed by a database CASCADE here. The CAS OAuth service removes them along with their ticket by
+ * {@link #deleteTicketTokens(String)}, and {@link #clean()} removes the tokens whose ticket is expired, which also
+ * covers tickets destroyed elsewhere (e.g. by CAS logout) since CAS marks them expired first.
+ *
+ * {@link #deleteTickets(Collection)} deletes the tickets from the ticket registry set by
+ * {@link #setTicketRegistry(TicketRegistry)}, if any, as there is no database to delete them in bulk.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public final class InMemoryTokenRegistry implements TokenRegistry {
+
+    /** Log instance for logging events, info, warnings, errors, etc. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(InMemoryTokenRegistry.class);
+
+    /** The number of stripes of the token id locks. */
+    private static final int LOCK_STRIPES = 64;
+
+    /** The separator of the parts of composite index keys, which never appears in ids, types or scopes. */
+    private static final char KEY_SEPARATOR = '\0';
+
+    /** The order of {@link #getExpiredTokens}, by expiration date and then by id. */
+    private static final Comparator<Token> EXPIRATION_ORDER = new Comparator<Token>() {
+        @Override
+        public int compare(final Token t1, final Token t2) {
+            final int result = t1.getExpirationDate().compareTo(t2.getExpirationDate());
+            return result != 0 ? result : t1.getId().compareTo(t2.getId());
+        }
+    };
+
+    /** The order of the pages of {@link #getClientTokens(String, String, Integer, Class)}, by id. */
+    private static final Comparator<Token> ID_ORDER = new Comparator<Token>() {
+        @Override
+        public int compare(final Token t1, final Token t2) {
+            return t1.getId().compareTo(t2.getId());
+        }
+    };
+
+    /** The tokens keyed by token id. */
+    private final ConcurrentMap<String, Token> tokens = new ConcurrentHashMap<>();
+
+    /** Token ids by client id. */
+    private final ConcurrentMap<String, Set<String>> clientIndex = new ConcurrentHashMap<>();
+
+    /** Token ids by principal id. */
+    private final ConcurrentMap<String, Set<String>> principalIndex = new ConcurrentHashMap<>();
+
+    /** Token ids by client id and principal id. */
+    private final ConcurrentMap<String, Set<String>> clientPrincipalIndex = new ConcurrentHashMap<>();
+
+    /** Token ids by client id, principal id and token type. */
+    private final ConcurrentMap<String, Set<String>> clientPrincipalTypeIndex = new ConcurrentHashMap<>();
+
+    /** Token ids by client id, principal id and encoded scopes. */
+    private final ConcurrentMap<String, Set<String>> clientPrincipalScopesIndex = new ConcurrentHashMap<>();
+
+    /** Token ids by the id of their ticket and of the granting ticket of their ticket. */
+    private final ConcurrentMap<String, Set<String>> ticketIndex = new ConcurrentHashMap<>();
+
+    /** The tokens with an expiration date, by expiration date and then by id. */
+    private final NavigableSet<Token> expirationIndex = new ConcurrentSkipListSet<>(EXPIRATION_ORDER);
+
+    /** Principal ids with the number of their access and refresh tokens, by client id. */
+    private final ConcurrentMap<String, ConcurrentMap<String, Integer>> clientPrincipalCounts
+            = new ConcurrentHashMap<>();
+
+    /** The locks which serialize the writes of a token id. */
+    private final Striped<Lock> locks = Striped.lock(LOCK_STRIPES);
+
+    /** The optional ticket registry where {@link #deleteTickets(Collection)} deletes the tickets. */
+    private TicketRegistry ticketRegistry;
+
+    public void setTicketRegistry(final TicketRegistry ticketRegistry) {
+        this.ticketRegistry = ticketRegistry;
+    }
+
+    @Override
+    public void addToken(final Token token) {
+        Assert.notNull(token, "token cannot be null");
+        final Lock lock = locks.get(token.getId());
+        lock.lock();
+        try {
+            final Token previous = tokens.put(token.getId(), token);
+            if (previous != null) {
+                unindex(previous);
+            }
+            index(token);
+        } finally {
+            lock.unlock();
+        }
+        LOGGER.debug("Added token [{}] to registry.", token);
+    }
+
+    @Override
+    public void updateToken(final Token token) {
+        addToken(token);
+        LOGGER.debug("Updated token [{}].", token);
+    }
+
+    @Override
+    public <T extends Token> T getToken(final String tokenId, final Class<T> clazz) throws ClassCastException {
+
+        Assert.notNull(clazz, "clazz cannot be null");
+
+        final Token token = tokens.get(tokenId);
+        if (token == null || !getTokenInterface(clazz).isInstance(token)) {
+            return null;
+        }
+
+        if (!clazz.isInstance(token)) {
+            throw new ClassCastException(
+                    "Token [" + token.getId() + "] is of type " + token.getClass() + " when we were expecting " + clazz
+            );
+        }
+
+        return clazz.cast(token);
+    }
+
+    @Override
+    public <T extends Token> Collection<T> getTokens(
+            final Collection<String> tokenIds,
+            final Class<T> clazz
+    ) throws ClassCastException {
+
+        Assert.notNull(tokenIds, "tokenIds cannot be null");
+        Assert.notNull(clazz, "clazz cannot be null");
+
+        final Collection<T> result = new ArrayList<>();
+        for (final String tokenId : tokenIds) {
+            final Token token = tokens.get(tokenId);
+            if (token != null) {
+                addIfInstance(result, token, clazz);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public <T extends Token> Collection<T> getClientTokens(
+            final String clientId,
+            final Class<T> clazz
+    ) throws ClassCastException {
+
+        Assert.notNull(clientId, "clientId cannot be null");
+        Assert.notNull(clazz, "clazz cannot be null");
+
+        final Collection<T> result = new ArrayList<>();
+        for (final Token token : lookup(clientIndex, clientId)) {
+            if (clientId.equals(token.getClientId())) {
+                addIfInstance(result, token, clazz);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public <T extends Token> Collection<T> getClientTokens(
+            final String clientId,
+            final String afterId,
+            final Integer maxResults,
+            final Class<T> clazz
+    ) throws ClassCastException {
+
+        Assert.notNull(clientId, "clientId cannot be null");
+        Assert.notNull(maxResults, "maxResults cannot be null");
+        Assert.notNull(clazz, "clazz cannot be null");
+
+        final List<T> result = new ArrayList<>();
+        for (final Token token : lookup(clientIndex, clientId)) {
+            if (clientId.equals(token.getClientId()) && (afterId == null || token.getId().compareTo(afterId) > 0)) {
+                addIfInstance(result, token, clazz);
+            }
+        }
+        Collections.sort(result, ID_ORDER);
+        return result.size() > maxResults ? new ArrayList<>(result.subList(0, maxResults)) : result;
+    }
+
+    @Override
+    public <T extends Token> Collection<T> getClientPrincipalTokens(
+            final String clientId,
+            final String principalId,
+            final Class<T> clazz
+    ) throws ClassCastException {
+        return getClientPrincipalTokens(clientId, principalId, null, clazz);
+    }
+
+    @Override
+    public <T extends Token> Collection<T> getClientPrincipalTokens(
+            final String clientId,
+            final String principalId,
+            final TokenType type,
+            final Class<T> clazz
+    ) throws ClassCastException {
+
+        Assert.notNull(clientId, "clientId cannot be null");
+        Assert.notNull(principalId, "principalId cannot be null");
+        Assert.notNull(clazz, "clazz cannot be null");
+
+        final Collection<Token> candidates = type == null
+                ? lookup(clientPrincipalIndex, key(clientId, principalId))
+                : lookup(clientPrincipalTypeIndex, key(clientId, principalId, type.name()));
+
+        final Collection<T> result = new ArrayList<>();
+        for (final Token token : candidates) {
+            if (clientId.equals(token.getClientId()) && principalId.equals(token.getPrincipalId())
+                    && (type == null || type == token.getType())) {
+                addIfInstance(result, token, clazz);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public <T extends Token> Collection<T> getPrincipalTokens(
+            final String principalId,
+            final Class<T> clazz
+    ) throws ClassCastException {
+
+        Assert.notNull(principalId, "principalId cannot be null");
+        Assert.notNull(clazz, "clazz cannot be null");
+
+        final Collection<T> result = new ArrayList<>();
+        for (final Token token : lookup(principalIndex, principalId)) {
+            if (principalId.equals(token.getPrincipalId())) {
+                addIfInstance(result, token, clazz);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public <T extends Token> Boolean isToken(
+            final String clientId,
+            final String principalId,
+            final Set<String> scopes,
+            final Class<T> clazz
+    ) throws ClassCastException {
+        return isToken(null, clientId, principalId, scopes, clazz);
+    }
+
+    @Override
+    public <T extends Token> Boolean isToken(
+            final TokenType type,
+            final String clientId,
+            final String principalId,
+            final Set<String> scopes,
+            final Class<T> clazz
+    ) throws ClassCastException {
+
+        Assert.notNull(clientId, "clientId cannot be null");
+        Assert.notNull(principalId, "principalId cannot be null");
+        Assert.notNull(scopes, "scopes cannot be null");
+        Assert.notNull(clazz, "clazz cannot be null");
+
+        final Class<? extends Token> tokenInterface = getTokenInterface(clazz);
+        final String encodedScopes = TokenScopes.encode(scopes);
+        final long now = System.currentTimeMillis();
+        for (final Token token : lookup(clientPrincipalScopesIndex, key(clientId, principalId, encodedScopes))) {
+            if (tokenInterface.isInstance(token)
+                    && clientId.equals(token.getClientId())
+                    && principalId.equals(token.getPrincipalId())
+                    && encodedScopes.equals(token.getEncodedScopes())
+                    && (type == null || type == token.getType())
+                    && (token.getExpirationDate() == null || token.getExpirationDate() > now)) {
+                return Boolean.TRUE;
+            }
+        }
+        return Boolean.FALSE;
+    }
+
+    @Override
+    public <T extends Token> Collection<T> getExpiredTokens(
+            final Long expirationDate,
+            final Token after,
+            final Integer maxResults,
+            final Class<T> clazz
+    ) throws ClassCastException {
+
+        Assert.notNull(expirationDate, "expirationDate cannot be null");
+        Assert.notNull(maxResults, "maxResults cannot be null");
+        Assert.notNull(clazz, "clazz cannot be null");
+
+        final List<T> result = new ArrayList<>();
+        final NavigableSet<Token> candidates = after == null ? expirationIndex : expirationIndex.tailSet(after, false);
+        for (final Token token : candidates) {
+            if (result.size() >= maxResults || token.getExpirationDate() >= expirationDate) {
+                break;
+            }
+            // The token may have been removed from the registry and not yet from the index.
+            if (tokens.get(token.getId()) == token) {
+                addIfInstance(result, token, clazz);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Set<String>> getPrincipalClientScopes(final String principalId) {
+
+        Assert.notNull(principalId, "principalId cannot be null");
+
+        final Map<String, Set<String>> clientScopes = new HashMap<>();
+        for (final Token token : lookup(principalIndex, principalId)) {
+            if (!principalId.equals(token.getPrincipalId()) || !isCounted(token) || token.getClientId() == null) {
+                continue;
+            }
+            Set<String> scopes = clientScopes.get(token.getClientId());
+            if (scopes == null) {
+                scopes = new HashSet<>();
+                clientScopes.put(token.getClientId(), scopes);
+            }
+            scopes.addAll(token.getScopes());
+        }
+        return clientScopes;
+    }
+
+    @Override
+    public Integer getPrincipalCount(final String clientId) {
+        Assert.notNull(clientId, "clientId cannot be null");
+        final ConcurrentMap<String, Integer> principals = clientPrincipalCounts.get(clientId);
+        return principals == null ? 0 : principals.size();
+    }
+
+    @Override
+    public void clientTokensDeleted(final String clientId) {
+        // The principal counts are maintained as tokens are removed.
+    }
+
+    @Override
+    public void deleteTicketTokens(final String ticketId) {
+        Assert.notNull(ticketId, "ticketId cannot be null");
+        for (final Token token : lookup(ticketIndex, ticketId)) {
+            removeToken(token);
+        }
+        LOGGER.debug("Removed tokens of ticket [{}].", ticketId);
+    }
+
+    @Override
+    public Integer deleteTickets(final Collection<String> ticketIds) {
+
+        Assert.notNull(ticketIds, "ticketIds cannot be null");
+
+        int count = 0;
+        for (final String ticketId : ticketIds) {
+            if (ticketRegistry != null && ticketRegistry.deleteTicket(ticketId)) {
+                count++;
+            }
+            deleteTicketTokens(ticketId);
+        }
+        return count;
+    }
+
+    /**
+     * Remove the tokens whose ticket is expired.
+     *
+     * The iteration over the token map is weakly consistent and a token is only removed if it has not been replaced
+     * meanwhile. Each removal serializes with the writes of its token id, see the class documentation.
+     *
+     * @return the number of tokens removed
+     */
+    public int clean() {
+        int count = 0;
+        for (final Token token : tokens.values()) {
+            final Ticket ticket = token.getTicket();
+            if ((ticket == null || ticket.isExpired()) && removeToken(token)) {
+                count++;
+            }
+        }
+        LOGGER.info("{} expired tokens found and removed.", count);
+        return count;
+    }
+
+    /**
+     * Remove a token from the registry and its indexes, unless it has already been removed or replaced.
+     *
+     * @param token the token
+     * @return true if the token has been removed
+     */
+    private boolean removeToken(final Token token) {
+        final Lock lock = locks.get(token.getId());
+        lock.lock();
+        try {
+            if (!tokens.remove(token.getId(), token)) {
+                return false;
+            }
+            unindex(token);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Add a token to all the secondary indexes.
+     *
+     * @param token the token
+     */
+    private void index(final Token token) {
+        final String id = token.getId();
+        final String clientId = token.getClientId();
+        final String principalId = token.getPrincipalId();
+        if (clientId != null) {
+            addToIndex(clientIndex, clientId, id);
+            addToIndex(clientPrincipalIndex, key(clientId, principalId), id);
+            addToIndex(clientPrincipalTypeIndex, key(clientId, principalId, token.getType().name()), id);
+            addToIndex(clientPrincipalScopesIndex, key(clientId, principalId, token.getEncodedScopes()), id);
+            if (isCounted(token)) {
+                clientPrincipalCounts.compute(clientId, new PrincipalCountUpdate(principalId, 1));
+            }
+        }
+        addToIndex(principalIndex, principalId, id);
+        for (final String ticketId : getTicketIds(token)) {
+            addToIndex(ticketIndex, ticketId, id);
+        }
+        if (token.getExpirationDate() != null) {
+            expirationIndex.add(token);
+        }
+    }
+
+    /**
+     * Remove a token from all the secondary indexes.
+     *
+     * @param token the token
+     */
+    private void unindex(final Token token) {
+        final String id = token.getId();
+        final String clientId = token.getClientId();
+        final String principalId = token.getPrincipalId();
+        if (clientId != null) {
+            removeFromIndex(clientIndex, clientId, id);
+            removeFromIndex(clientPrincipalIndex, key(clientId, principalId), id);
+            removeFromIndex(clientPrincipalTypeIndex, key(clientId, principalId, token.getType().name()), id);
+            removeFromIndex(clientPrincipalScopesIndex, key(clientId, principalId, token.getEncodedScopes()), id);
+            if (isCounted(token)) {
+                clientPrincipalCounts.computeIfPresent(clientId, new PrincipalCountUpdate(principalId, -1));
+            }
+        }
+        removeFromIndex(principalIndex, principalId, id);
+        for (final String ticketId : getTicketIds(token)) {
+            removeFromIndex(ticketIndex, ticketId, id);
+        }
+        if (token.getExpirationDate() != null) {
+            expirationIndex.remove(token);
+        }
+    }
+
+    /**
+     * Retrieve the tokens currently registered under a key of an index.
+     *
+     * @param index the index
+     * @param key the key
+     * @return the tokens
+     */
+    private Collection<Token> lookup(final ConcurrentMap<String, Set<String>> index, final String key) {
+        final Set<String> ids = index.get(key);
+        if (ids == null) {
+            return Collections.emptyList();
+        }
+        final Collection<Token> result = new ArrayList<>(ids.size());
+        for (final String id : ids) {
+            final Token token = tokens.get(id);
+            if (token != null) {
+                result.add(token);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Add a token id under a key of an index. The update is atomic per key.
+     *
+     * @param index the index
+     * @param key the key
+     * @param id the token id
+     */
+    private static void addToIndex(final ConcurrentMap<String, Set<String>> index, final String key, final String id) {
+        index.compute(key, new BiFunction<String, Set<String>, Set<String>>() {
+            @Override
+            public Set<String> apply(final String k, final Set<String> ids) {
+                final Set<String> result = ids != null
+                        ? ids
+                        : Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+                result.add(id);
+                return result;
+            }
+        });
+    }
+
+    /**
+     * Remove a token id from a key of an index, and the key itself once empty. The update is atomic per key.
+     *
+     * @param index the index
+     * @param key the key
+     * @param id the token id
+     */
+    private static void removeFromIndex(
+            final ConcurrentMap<String, Set<String>> index,
+            final String key,
+            final String id
+    ) {
+        index.computeIfPresent(key, new BiFunction<String, Set<String>, Set<String>>() {
+            @Override
+            public Set<String> apply(final String k, final Set<String> ids) {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            }
+        });
+    }
+
+    /**
+     * Retrieve the ids of the tickets whose deletion removes the token, i.e. its own ticket and the granting ticket
+     * of its ticket.
+     *
+     * @param token the token
+     * @return the ticket ids
+     */
+    private static Collection<String> getTicketIds(final Token token) {
+        final Collection<String> ticketIds = new ArrayList<>(2);
+        final Ticket ticket = token.getTicket();
+        if (ticket != null) {
+            ticketIds.add(ticket.getId());
+            if (ticket.getGrantingTicket() != null) {
+                ticketIds.add(ticket.getGrantingTicket().getId());
+            }
+        }
+        return ticketIds;
+    }
+
+    /**
+     * Check if the token is taken into account by {@link #getPrincipalCount(String)}, i.e. it is an access token or
+     * a refresh token.
+     *
+     * @param token the token
+     * @return true if the token is counted
+     */
+    private static boolean isCounted(final Token token) {
+        return token instanceof AccessToken || token instanceof RefreshToken;
+    }
+
+    /**
+     * Build a composite index key.
+     *
+     * @param parts the parts of the key
+     * @return the key
+     */
+    private static String key(final String... parts) {
+        final StringBuilder builder = new StringBuilder();
+        for (final String part : parts) {
+            if (builder.length() > 0) {
+                builder.append(KEY_SEPARATOR);
+            }
+            builder.append(part);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Add a token to a result collection if it is an instance of the expected class.
+     *
+     * @param result the result collection
+     * @param token the token
+     * @param clazz the expected class
+     * @param <T> the generic token type to return that extends {@link Token}
+     */
+    private static <T extends Token> void addIfInstance(
+            final Collection<T> result,
+            final Token token,
+            final Class<T> clazz
+    ) {
+        if (clazz.isInstance(token)) {
+            result.add(clazz.cast(token));
+        }
+    }
+
+    /**
+     * Retrieve the token interface of the clazz specified, which plays the role of the token table of
+     * {@link JpaTokenRegistry}.
+     *
+     * @param clazz the class or interface
+     * @param <T> the generic token type that extends {@link Token}
+     * @return the token interface
+     * @throws ClassCastException the class cast exception
+     */
+    private static <T extends Token> Class<? extends Token> getTokenInterface(final Class<T> clazz)
+            throws ClassCastException {
+        if (AuthorizationCode.class.isAssignableFrom(clazz)) {
+            return AuthorizationCode.class;
+        } else if (RefreshToken.class.isAssignableFrom(clazz)) {
+            return RefreshToken.class;
+        } else if (AccessToken.class.isAssignableFrom(clazz)) {
+            return AccessToken.class;
+        }
+        throw new ClassCastException("Could not cast " + clazz + " to a suitable token implementation class");
+    }
+
+    /**
+     * Atomic update of the number of tokens of a principal within the principal counts of a client.
+     */
+    private static final class PrincipalCountUpdate
+            implements BiFunction<String, ConcurrentMap<String, Integer>, ConcurrentMap<String, Integer>> {
+
+        /** The principal id. */
+        private final String principalId;
+
+        /** The change in the number of tokens of the principal. */
+        private final int delta;
+
+        /**
+         * Instantiate a new {@link PrincipalCountUpdate}.
+         *
+         * @param principalId the principal id
+         * @param delta the change in the number of tokens of the principal
+         */
+        private PrincipalCountUpdate(final String principalId, final int delta) {
+            this.principalId = principalId;
+            this.delta = delta;
+        }
+
+        @Override
+        public ConcurrentMap<String, Integer> apply(
+                final String clientId,
+                final ConcurrentMap<String, Integer> counts
+        ) {
+            final ConcurrentMap<String, Integer> result = counts != null
+                    ? counts
+                    : new ConcurrentHashMap<String, Integer>();
+            final Integer count = result.get(principalId);
+            final int newCount = (count == null ? 0 : count) + delta;
+            if (newCount > 0) {
+                result.put(principalId, newCount);
+            } else {
+                result.remove(principalId);
+            }
+            return result.isEmpty() ? null : result;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2015. Center for Open Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jasig.cas.support.oauth.token.registry;
+
+import org.springframework.util.Assert;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-memory revocation list of self-contained access tokens, for single-node deployments and tests.
+ *
+ * Entries are pruned once their token has expired whenever a token is revoked.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public final class InMemoryTokenRevocationList implements TokenRevocationList {
+
+    /** The expiration dates of the revoked tokens, by token id. */
+    private final ConcurrentMap<String, Long> revokedTokens = new ConcurrentHashMap<>();
+
+    @Override
+    public void revoke(final String tokenId, final Long expirationDate) {
+
+        Assert.notNull(tokenId, "tokenId cannot be null");
+        Assert.notNull(expirationDate, "expirationDate cannot be null");
+
+        final long now = System.currentTimeMillis();
+        final Iterator<Map.Entry<String, Long>> iterator = revokedTokens.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getValue() <= now) {
+                iterator.remove();
+            }
+        }
+        revokedTokens.put(tokenId, expirationDate);
+    }
+
+    @Override
+    public boolean isRevoked(final String tokenId) {
+        final Long expirationDate = revokedTokens.get(tokenId);
+        return expirationDate != null && expirationDate > System.currentTimeMillis();
+    }
+}
@@ -22,6 +22,7 @@ import org.jasig.cas.support.oauth.token.AuthorizationCodeImpl;
 import org.jasig.cas.support.oauth.token.RefreshToken;
 import org.jasig.cas.support.oauth.token.RefreshTokenImpl;
 import org.jasig.cas.support.oauth.token.Token;
+import org.jasig.cas.support.oauth.token.TokenScopes;
 import org.jasig.cas.support.oauth.token.TokenType;
 
 import org.slf4j.Logger;
@@ -32,10 +33,16 @@ import org.springframework.util.Assert;
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
 import javax.validation.constraints.NotNull;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -43,12 +50,18 @@ import java.util.Set;
  *
  * An implementation of {@link TokenRegistry} which uses Java Persistent API (JPA) to store access tokens.
  *
+ * The queries are served by the indexes declared on the token entities. Deployments that do not let Hibernate update
+ * the schema must apply the matching migrations in {@code etc/sql/cas}.
+ *
  * @author Michael Haselton
  * @author Longze Chen
  * @since 4.1.5
  */
 public final class JpaTokenRegistry implements TokenRegistry {
 
+    /** The Hibernate query hint of the JDBC fetch size. */
+    private static final String FETCH_SIZE_HINT = "org.hibernate.fetchSize";
+
     /** Log instance for logging events, info, warnings, errors, etc. */
     protected final Logger logger = LoggerFactory.getLogger(getClass());
 
@@ -87,6 +100,24 @@ public final class JpaTokenRegistry implements TokenRegistry {
         return token;
     }
 
+    @Override
+    public <T extends Token> Collection<T> getTokens(
+            final Collection<String> tokenIds,
+            final Class<T> clazz
+    ) throws ClassCastException {
+
+        Assert.notNull(tokenIds, "tokenIds cannot be null");
+        Assert.notNull(clazz, "clazz cannot be null");
+
+        if (tokenIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final Class<T> clazzImpl = getClassImplementation(clazz);
+        final String query = "select t from " + clazzImpl.getSimpleName() + " t where t.id in :ids";
+        return entityManager.createQuery(query, clazzImpl).setParameter("ids", tokenIds).getResultList();
+    }
+
     @Override
     public <T extends Token> Collection<T> getClientTokens(
             final String clientId,
@@ -105,6 +136,36 @@ public final class JpaTokenRegistry implements TokenRegistry {
         }
     }
 
+    @Override
+    public <T extends Token> Collection<T> getClientTokens(
+            final String clientId,
+            final String afterId,
+            final Integer maxResults,
+            final Class<T> clazz
+    ) throws ClassCastException {
+
+        Assert.notNull(clientId, "clientId cannot be null");
+        Assert.notNull(maxResults, "maxResults cannot be null");
+        Assert.notNull(clazz, "clazz cannot be null");
+
+        // Keyset iteration on (clientId, id), which only reads the rows of the page from the index. The fetch size
+        // matches the page so that the driver does not buffer more rows than returned.
+        final Class<T> clazzImpl = getClassImplementation(clazz);
+        final String query = "select t from " + clazzImpl.getSimpleName() + " t where t.clientId = :clientId"
+                + (afterId == null ? "" : " and t.id > :afterId")
+                + " order by t.id";
+        final TypedQuery<T> typedQuery = entityManager
+                .createQuery(query, clazzImpl)
+                .setParameter("clientId", clientId)
+                .setHint(FETCH_SIZE_HINT, maxResults)
+                .setMaxResults(maxResults);
+        if (afterId != null) {
+            typedQuery.setParameter("afterId", afterId);
+        }
+
+        return typedQuery.getResultList();
+    }
+
     @Override
     public <T extends Token> Collection<T> getClientPrincipalTokens(
             final String clientId,
@@ -196,41 +257,85 @@ public final class JpaTokenRegistry implements TokenRegistry {
         Assert.notNull(scopes, "scopes cannot be null");
         Assert.notNull(clazz, "clazz cannot be null");
 
-        String query;
-        final Collection<T> tokens;
+        // Expired tokens are filtered out by their expiration date, thus only the id of the first match is needed.
         final Class<T> clazzImpl = getClassImplementation(clazz);
-        try {
-            if (type == null) {
-                query = "select t from " + clazzImpl.getSimpleName() + " t where "
-                        + "t.clientId = :clientId and t.principalId = :principalId and t.scopesHash = :scopesHash";
-                tokens = entityManager
-                        .createQuery(query, clazzImpl)
-                        .setParameter("clientId", clientId)
-                        .setParameter("principalId", principalId)
-                        .setParameter("scopesHash", scopes.hashCode())
-                        .getResultList();
-            } else {
-                query = "select t from " + clazzImpl.getSimpleName() + " t where t.type = :type and "
-                        + "t.clientId = :clientId and t.principalId = :principalId and t.scopesHash = :scopesHash";
-                tokens = entityManager
-                        .createQuery(query, clazzImpl)
-                        .setParameter("type", type)
-                        .setParameter("clientId", clientId)
-                        .setParameter("principalId", principalId)
-                        .setParameter("scopesHash", scopes.hashCode())
-                        .getResultList();
-            }
-        } catch (final NoResultException e) {
-            return Boolean.FALSE;
+        final String query = "select t.id from " + clazzImpl.getSimpleName() + " t where "
+                + (type == null ? "" : "t.type = :type and ")
+                + "t.clientId = :clientId and t.principalId = :principalId and t.encodedScopes = :encodedScopes "
+                + "and (t.expirationDate is null or t.expirationDate > :now)";
+        final TypedQuery<String> typedQuery = entityManager
+                .createQuery(query, String.class)
+                .setParameter("clientId", clientId)
+                .setParameter("principalId", principalId)
+                .setParameter("encodedScopes", TokenScopes.encode(scopes))
+                .setParameter("now", System.currentTimeMillis())
+                .setMaxResults(1);
+        if (type != null) {
+            typedQuery.setParameter("type", type);
         }
 
-        for (final Token token : tokens) {
-            if (!token.getTicket().isExpired()) {
-                return Boolean.TRUE;
-            }
+        return !typedQuery.getResultList().isEmpty();
+    }
+
+    @Override
+    public <T extends Token> Collection<T> getExpiredTokens(
+            final Long expirationDate,
+            final Token after,
+            final Integer maxResults,
+            final Class<T> clazz
+    ) throws ClassCastException {
+
+        Assert.notNull(expirationDate, "expirationDate cannot be null");
+        Assert.notNull(maxResults, "maxResults cannot be null");
+        Assert.notNull(clazz, "clazz cannot be null");
+
+        // Keyset iteration on (expirationDate, id), which only reads the rows of the batch from the index.
+        final Class<T> clazzImpl = getClassImplementation(clazz);
+        final String query = "select t from " + clazzImpl.getSimpleName() + " t where t.expirationDate < :expirationDate"
+                + (after == null ? "" : " and (t.expirationDate > :afterExpirationDate "
+                        + "or (t.expirationDate = :afterExpirationDate and t.id > :afterId))")
+                + " order by t.expirationDate, t.id";
+        final TypedQuery<T> typedQuery = entityManager
+                .createQuery(query, clazzImpl)
+                .setParameter("expirationDate", expirationDate)
+                .setMaxResults(maxResults);
+        if (after != null) {
+            typedQuery
+                    .setParameter("afterExpirationDate", after.getExpirationDate())
+                    .setParameter("afterId", after.getId());
         }
 
-        return Boolean.FALSE;
+        return typedQuery.getResultList();
+    }
+
+    @Override
+    public Map<String, Set<String>> getPrincipalClientScopes(final String principalId) {
+
+        Assert.notNull(principalId, "principalId cannot be null");
+
+        // JPQL has no UNION, thus read the distinct client and scope set pairs of both token tables with a native
+        // query. Tokens of a client mostly share the same scope set, thus only a few rows are returned per client.
+        final String query = "select r.CLIENT_ID, r.SCOPE_SET from REFRESHTOKEN r where r.PRINCIPAL_ID = :principalId "
+                + "union "
+                + "select a.CLIENT_ID, a.SCOPE_SET from ACCESSTOKEN a "
+                + "where a.PRINCIPAL_ID = :principalId and a.CLIENT_ID is not null";
+        @SuppressWarnings("unchecked")
+        final List<Object[]> rows = entityManager
+                .createNativeQuery(query)
+                .setParameter("principalId", principalId)
+                .getResultList();
+
+        final Map<String, Set<String>> clientScopes = new HashMap<>();
+        for (final Object[] row : rows) {
+            final String clientId = (String) row[0];
+            Set<String> scopes = clientScopes.get(clientId);
+            if (scopes == null) {
+                scopes = new HashSet<>();
+                clientScopes.put(clientId, scopes);
+            }
+            scopes.addAll(TokenScopes.decode((String) row[1]));
+        }
+        return clientScopes;
     }
 
     @Override
@@ -238,30 +343,77 @@ public final class JpaTokenRegistry implements TokenRegistry {
 
         Assert.notNull(clientId, "clientId cannot be null");
 
-        String query;
-        final Set<String> principals = new HashSet<>();
+        // JPQL has no UNION, thus count the distinct principals of both token tables with a native query.
+        final String query = "select count(*) from ("
+                + "select r.PRINCIPAL_ID from REFRESHTOKEN r where r.CLIENT_ID = :clientId "
+                + "union "
+                + "select a.PRINCIPAL_ID from ACCESSTOKEN a where a.CLIENT_ID = :clientId"
+                + ") p";
+        final Number count = (Number) entityManager
+                .createNativeQuery(query)
+                .setParameter("clientId", clientId)
+                .getSingleResult();
+
+        return count.intValue();
+    }
 
-        try {
-            query = "select distinct t.principalId from "
-                    + RefreshTokenImpl.class.getSimpleName() + " t where t.clientId = :clientId";
-            principals.addAll(
-                    entityManager.createQuery(query, String.class).setParameter("clientId", clientId).getResultList()
-            );
-        } catch (final NoResultException e) {
-            // no results
+    @Override
+    public void clientTokensDeleted(final String clientId) {
+        // Nothing is kept per client.
+    }
+
+    @Override
+    public void deleteTicketTokens(final String ticketId) {
+        // Tokens have already been removed by the CASCADE of the ticket deletion.
+    }
+
+    @Override
+    public Integer deleteTickets(final Collection<String> ticketIds) {
+
+        Assert.notNull(ticketIds, "ticketIds cannot be null");
+
+        if (ticketIds.isEmpty()) {
+            return 0;
         }
 
-        try {
-            query = "select distinct t.principalId from "
-                    + AccessTokenImpl.class.getSimpleName() + " t where t.clientId = :clientId";
-            principals.addAll(
-                    entityManager.createQuery(query, String.class).setParameter("clientId", clientId).getResultList()
-            );
-        } catch (final NoResultException e) {
-            // no results
+        // As the JPA ticket registry does, the ticket granting tickets granted by the tickets are deleted as well. Find
+        // them level by level, which takes one query per level instead of one per ticket.
+        final List<Collection<String>> levels = new ArrayList<>();
+        Collection<String> level = new HashSet<>(ticketIds);
+        while (!level.isEmpty()) {
+            levels.add(level);
+            level = entityManager
+                    .createQuery(
+                            "select t.id from TicketGrantingTicketImpl t where t.ticketGrantingTicket.id in :ids",
+                            String.class
+                    )
+                    .setParameter("ids", level)
+                    .getResultList();
+        }
+
+        // Bulk statements bypass the persistence context, thus write the pending changes before and drop the stale
+        // entities after. Service tickets go first and granting tickets from the deepest level up, so that no foreign
+        // key is violated. The database then removes the tokens by CASCADE.
+        entityManager.flush();
+        int count = 0;
+        for (final Collection<String> ids : levels) {
+            count += entityManager
+                    .createQuery(
+                            "delete from ServiceTicketImpl s where s.id in :ids or s.ticketGrantingTicket.id in :ids"
+                    )
+                    .setParameter("ids", ids)
+                    .executeUpdate();
+        }
+        for (int i = levels.size() - 1; i >= 0; i--) {
+            count += entityManager
+                    .createQuery("delete from TicketGrantingTicketImpl t where t.id in :ids")
+                    .setParameter("ids", levels.get(i))
+                    .executeUpdate();
         }
+        entityManager.clear();
 
-        return principals.size();
+        logger.debug("Deleted {} tickets and their tokens from registry.", count);
+        return count;
     }
 
     /**
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2015. Center for Open Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jasig.cas.support.oauth.token.registry;
+
+import org.jasig.cas.support.oauth.token.RevokedToken;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.util.Assert;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * JPA-based revocation list of self-contained access tokens.
+ *
+ * Revocations are stored in the database so that every node of a cluster sees them. Each node checks tokens against a
+ * local snapshot of the ids of the unexpired revoked tokens, reloaded at most once per refresh interval, thus token
+ * validation does not hit the database. A revocation made by a node is visible to it right away, and to the other
+ * nodes after their next reload. Expired entries are pruned whenever a token is revoked.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public final class JpaTokenRevocationList implements TokenRevocationList {
+
+    /** Log instance for logging events, info, warnings, errors, etc. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(JpaTokenRevocationList.class);
+
+    /** The default refresh interval of the local snapshot, which is 10 seconds. */
+    private static final long DEFAULT_REFRESH_INTERVAL_IN_SECONDS = 10;
+
+    @NotNull
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /** The refresh interval in seconds of the local snapshot. */
+    @Min(0)
+    private long refreshIntervalInSeconds = DEFAULT_REFRESH_INTERVAL_IN_SECONDS;
+
+    /** The ids of the revoked tokens, as loaded by the last refresh. */
+    private volatile Set<String> snapshot = Collections.emptySet();
+
+    /** The time in milliseconds of the last refresh. */
+    private volatile long snapshotTime;
+
+    /** Whether a refresh is in progress, only one thread refreshes at a time. */
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    /** The expiration dates of the tokens revoked by this node since the last refresh, by token id. */
+    private final ConcurrentMap<String, Long> localRevocations = new ConcurrentHashMap<>();
+
+    public void setRefreshIntervalInSeconds(final long refreshIntervalInSeconds) {
+        this.refreshIntervalInSeconds = refreshIntervalInSeconds;
+    }
+
+    @Override
+    public void revoke(final String tokenId, final Long expirationDate) {
+
+        Assert.notNull(tokenId, "tokenId cannot be null");
+        Assert.notNull(expirationDate, "expirationDate cannot be null");
+
+        entityManager.merge(new RevokedToken(tokenId, expirationDate));
+        localRevocations.put(tokenId, expirationDate);
+
+        final int pruned = entityManager
+                .createQuery("delete from RevokedToken r where r.expirationDate <= :now")
+                .setParameter("now", System.currentTimeMillis())
+                .executeUpdate();
+        LOGGER.debug("Revoked token [{}] and pruned {} expired revocations.", tokenId, pruned);
+    }
+
+    @Override
+    public boolean isRevoked(final String tokenId) {
+        refreshIfStale();
+        final Long expirationDate = localRevocations.get(tokenId);
+        return snapshot.contains(tokenId) || expirationDate != null && expirationDate > System.currentTimeMillis();
+    }
+
+    /**
+     * Reload the snapshot of the revoked tokens if it is older than the refresh interval and no other thread is
+     * already reloading it.
+     */
+    private void refreshIfStale() {
+        final long now = System.currentTimeMillis();
+        if (now - snapshotTime < refreshIntervalInSeconds * 1000L || !refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            snapshot = new HashSet<>(
+                    entityManager
+                            .createQuery("select r.id from RevokedToken r where r.expirationDate > :now", String.class)
+                            .setParameter("now", now)
+                            .getResultList()
+            );
+            snapshotTime = now;
+            // Revocations made before the reload are part of the snapshot now, unless their transaction is still
+            // pending, thus keep the local ones until they expire.
+            final Iterator<Map.Entry<String, Long>> iterator = localRevocations.entrySet().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().getValue() <= now) {
+                    iterator.remove();
+                }
+            }
+            LOGGER.debug("Loaded {} revoked tokens.", snapshot.size());
+        } finally {
+            refreshing.set(false);
+        }
+    }
+}
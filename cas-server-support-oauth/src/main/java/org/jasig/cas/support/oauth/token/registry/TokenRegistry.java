@@ -19,6 +19,7 @@ import org.jasig.cas.support.oauth.token.Token;
 import org.jasig.cas.support.oauth.token.TokenType;
 
 import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -57,6 +58,19 @@ public interface TokenRegistry {
      */
     <T extends Token> T getToken(String tokenId, Class<T> clazz) throws ClassCastException;
 
+    /**
+     * Retrieve the tokens of the ids specified from the registry at once.
+     *
+     * Ids of unknown tokens and of tokens of another class are skipped.
+     *
+     * @param tokenIds the ids of the tokens we wish to retrieve
+     * @param clazz the expected class of the tokens we wish to retrieve
+     * @param <T> the generic token type to return that extends {@link Token}
+     * @return the requested tokens
+     * @throws ClassCastException the class cast exception
+     */
+    <T extends Token> Collection<T> getTokens(Collection<String> tokenIds, Class<T> clazz) throws ClassCastException;
+
     /**
      * Retrieve a collection of tokens associated with the client id specified.
      *
@@ -68,6 +82,27 @@ public interface TokenRegistry {
      */
     <T extends Token> Collection<T> getClientTokens(String clientId, Class<T> clazz) throws ClassCastException;
 
+    /**
+     * Retrieve a page of the tokens associated with the client id specified, ordered by token id.
+     *
+     * Meant for walking through the tokens of a client by keyset iteration, each page starting right after the last
+     * token of the previous one, without loading all of them at once.
+     *
+     * @param clientId the client id of the tokens we wish to retrieve
+     * @param afterId the id of the last token of the previous page, or null for the first page
+     * @param maxResults the maximum number of tokens to retrieve
+     * @param clazz the expected class of the token we wish to retrieve
+     * @param <T> the generic token type to return that extends {@link Token}
+     * @return the page of tokens
+     * @throws ClassCastException the class cast exception
+     */
+    <T extends Token> Collection<T> getClientTokens(
+            String clientId,
+            String afterId,
+            Integer maxResults,
+            Class<T> clazz
+    ) throws ClassCastException;
+
     /**
      * Retrieve a collection of tokens associated with the client id and the principal id specified.
      *
@@ -116,12 +151,14 @@ public interface TokenRegistry {
     /**
      * Check if a token exists by client id, principal id and assigned scopes.
      *
+     * Tokens past their expiration date (see {@link Token#getExpirationDate()}) are not taken into account.
+     *
      * @param clientId the client id of the token we wish to find
      * @param principalId the principal id of the token we wish to find
      * @param scopes the scopes associated with the token we wish to find
      * @param clazz the expected class of the token we wish to find
      * @param <T> the generic token type to return that extends {@link Token}
-     * @return indicates if the token could be found
+     * @return indicates if an unexpired token could be found
      * @throws ClassCastException the class cast exception
      */
     <T extends Token> Boolean isToken(
@@ -134,13 +171,15 @@ public interface TokenRegistry {
     /**
      * Check if a token exists by token type, client id, principal id and assigned scopes.
      *
+     * Tokens past their expiration date (see {@link Token#getExpirationDate()}) are not taken into account.
+     *
      * @param type the token type of the token we wish to find
      * @param clientId the client id of the token we wish to find
      * @param principalId the principal id of the token we wish to find
      * @param scopes the scopes associated with the token we wish to find
      * @param clazz the expected class of the token we wish to find
      * @param <T> the generic token type to return that extends {@link Token}
-     * @return indicates if the token could be found
+     * @return indicates if an unexpired token could be found
      * @throws ClassCastException the class cast exception
      */
     <T extends Token> Boolean isToken(
@@ -151,6 +190,38 @@ public interface TokenRegistry {
             Class<T> clazz
     ) throws ClassCastException;
 
+    /**
+     * Retrieve a batch of tokens whose expiration date has passed, ordered by expiration date and id.
+     *
+     * Meant for sweeping the registry by keyset iteration, each batch starting right after the last token of the
+     * previous one. Tokens without an expiration date are never returned. The ticket of a returned token may still be
+     * valid, e.g. when an ONLINE access token has been used since it was granted, which the caller must check.
+     *
+     * @param expirationDate the date in milliseconds before which tokens are expired
+     * @param after the last token of the previous batch, or null for the first batch
+     * @param maxResults the maximum number of tokens to retrieve
+     * @param clazz the expected class of the tokens we wish to retrieve
+     * @param <T> the generic token type to return that extends {@link Token}
+     * @return the expired tokens
+     * @throws ClassCastException the class cast exception
+     */
+    <T extends Token> Collection<T> getExpiredTokens(
+            Long expirationDate,
+            Token after,
+            Integer maxResults,
+            Class<T> clazz
+    ) throws ClassCastException;
+
+    /**
+     * Get the scopes each client has been granted by a principal, i.e. the union of the scopes of the refresh tokens
+     * and access tokens of the principal by client id, aggregated by the registry. Tokens that are not bound to a
+     * client (e.g. CAS and PERSONAL access tokens) are left out.
+     *
+     * @param principalId the principal id
+     * @return the scopes by client id
+     */
+    Map<String, Set<String>> getPrincipalClientScopes(String principalId);
+
     /**
      * Count the number unique principal's assigned to a client token id.
      *
@@ -158,4 +229,36 @@ public interface TokenRegistry {
      * @return a count of the number of unique principals
      */
     Integer getPrincipalCount(String clientId);
+
+    /**
+     * Notify the registry that tokens of a client have been deleted, e.g. by revocation or by the CASCADE of a ticket
+     * deletion. Registries which keep anything per client (e.g. a cached principal count) must drop it, whether or not
+     * they hold the deleted tokens themselves.
+     *
+     * @param clientId the client id
+     */
+    void clientTokensDeleted(String clientId);
+
+    /**
+     * Notify the registry that a ticket has been deleted from the ticket registry.
+     *
+     * Tokens stored in the database are removed by CASCADE when their ticket is deleted. Registries which keep tokens
+     * anywhere else (e.g. in memory) must drop every token backed by the ticket, either directly or through its
+     * granting ticket.
+     *
+     * @param ticketId the id of the deleted ticket
+     */
+    void deleteTicketTokens(String ticketId);
+
+    /**
+     * Delete the tickets specified, the tickets they granted and the tokens backed by any of them, in bulk.
+     *
+     * This is the set-based counterpart of deleting each ticket from the ticket registry and then calling
+     * {@link #deleteTicketTokens(String)}, for revoking many tokens at once. It must be called within the transaction
+     * of the ticket registry.
+     *
+     * @param ticketIds the ids of the tickets to delete
+     * @return the number of tickets deleted
+     */
+    Integer deleteTickets(Collection<String> ticketIds);
 }
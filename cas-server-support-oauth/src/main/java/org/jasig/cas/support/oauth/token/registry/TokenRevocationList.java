@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2015. Center for Open Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jasig.cas.support.oauth.token.registry;
+
+/**
+ * The revocation list of self-contained access tokens,
+ * see {@link org.jasig.cas.support.oauth.token.SignedAccessTokenCodec}.
+ *
+ * Self-contained access tokens are validated without any lookup of the token registry, thus deleting them from the
+ * registry does not revoke them. Instead, their ids are kept in this list until they expire.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public interface TokenRevocationList {
+
+    /**
+     * Revoke an access token until it expires.
+     *
+     * @param tokenId the id of the access token
+     * @param expirationDate the expiration date in milliseconds of the access token
+     */
+    void revoke(String tokenId, Long expirationDate);
+
+    /**
+     * Check if an access token has been revoked.
+     *
+     * @param tokenId the id of the access token
+     * @return true if the access token has been revoked
+     */
+    boolean isRevoked(String tokenId);
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2015. Center for Open Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jasig.cas.support.oauth.token.registry;
+
+import com.codahale.metrics.MetricRegistry;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import org.jasig.cas.support.oauth.CacheMetrics;
+
+import org.springframework.beans.factory.InitializingBean;
+
+import javax.validation.constraints.NotNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Negative cache of the access token ids which are known to be absent, i.e. neither in the token registry nor a
+ * PERSONAL access token of OSF.
+ *
+ * Invalid tokens presented over and over again (e.g. by scanners or misconfigured clients) are then rejected without
+ * any database lookup until the entry expires. The cache is bounded and the time-to-live should stay short, since a
+ * PERSONAL access token created in OSF right after its id was presented is only accepted once the entry expires.
+ *
+ * A Bloom filter was considered as well, but it can neither expire nor forget an entry and would turn a token that has
+ * become valid into a permanent false positive.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public final class UnknownTokenCache implements InitializingBean {
+
+    /** Placeholder value of the cache entries, only the keys matter. */
+    private static final Boolean UNKNOWN = Boolean.TRUE;
+
+    /** The unknown token ids. */
+    @NotNull
+    private final Cache<String, Boolean> cache;
+
+    /** The optional metric registry where the cache statistics are published. */
+    private MetricRegistry metricRegistry;
+
+    /**
+     * Instantiate a new {@link UnknownTokenCache}.
+     *
+     * @param timeToLiveInSeconds the time in seconds a token id is known to be absent after the last lookup
+     * @param maximumSize the maximum number of token ids to keep in the cache
+     */
+    public UnknownTokenCache(final long timeToLiveInSeconds, final long maximumSize) {
+        this.cache = CacheBuilder.newBuilder()
+                .expireAfterWrite(timeToLiveInSeconds, TimeUnit.SECONDS)
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    public void setMetricRegistry(final MetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if (metricRegistry == null) {
+            return;
+        }
+        CacheMetrics.registerCacheGauges(metricRegistry, UnknownTokenCache.class, cache);
+    }
+
+    /**
+     * Check if the token id specified is known to be absent.
+     *
+     * @param tokenId the token id
+     * @return true if the token id was recently found to be absent
+     */
+    public boolean isUnknown(final String tokenId) {
+        return cache.getIfPresent(tokenId) != null;
+    }
+
+    /**
+     * Remember the token id specified as absent.
+     *
+     * @param tokenId the token id
+     */
+    public void put(final String tokenId) {
+        cache.put(tokenId, UNKNOWN);
+    }
+
+    /**
+     * Forget the token id specified, e.g. when a token of this id is granted.
+     *
+     * @param tokenId the token id
+     */
+    public void invalidate(final String tokenId) {
+        cache.invalidate(tokenId);
+    }
+
+    /** Forget all the token ids. */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2015. Center for Open Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jasig.cas.support.oauth.token.registry.support;
+
+import com.codahale.metrics.MetricRegistry;
+
+import org.jasig.cas.support.oauth.token.AccessToken;
+import org.jasig.cas.support.oauth.token.registry.TokenRegistry;
+import org.jasig.cas.ticket.Ticket;
+import org.jasig.cas.ticket.registry.support.LockingStrategy;
+import org.jasig.cas.ticket.registry.support.NoOpLockingStrategy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.util.Assert;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Sweeper of expired OAuth access tokens.
+ *
+ * ONLINE and OFFLINE access tokens are otherwise only removed when they are presented again after they have expired.
+ * This sweeper walks the access tokens whose expiration date has passed in bounded batches, by keyset iteration on
+ * their expiration date and id, and deletes the expired tickets behind them in bulk, which removes the tokens as well.
+ * A token whose ticket has been used since it was granted and is still valid is left alone.
+ *
+ * A run which stops at {@link #setMaxBatchesPerRun(int)} keeps its position and the next run resumes from there, so
+ * that more live tokens than the budget of a run cannot keep the sweeper from reaching the tokens behind them. Once a
+ * run reaches the end of the expired tokens, the next one starts over from the beginning.
+ *
+ * As the ticket registry cleaner does, the sweeper runs under a {@link LockingStrategy} so that only one node of a
+ * cluster sweeps at a time. Each batch is a call of the token registry, thus its own transaction, and batches may be
+ * paced to spread the load on the database.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public final class ExpiredTokenSweeper {
+
+    /** Log instance for logging events, info, warnings, errors, etc. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExpiredTokenSweeper.class);
+
+    /** The default number of tokens read per batch. */
+    private static final int DEFAULT_BATCH_SIZE = 500;
+
+    /** The default maximum number of batches per run. */
+    private static final int DEFAULT_MAX_BATCHES_PER_RUN = 100;
+
+    /** The token registry to sweep. */
+    @NotNull
+    private final TokenRegistry tokenRegistry;
+
+    /** The lock which prevents concurrent sweeps on the nodes of a cluster. */
+    @NotNull
+    private LockingStrategy lock = new NoOpLockingStrategy();
+
+    /** The number of tokens read per batch. */
+    @Min(1)
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /** The maximum number of batches per run, the remaining tokens are swept by the next run. */
+    @Min(1)
+    private int maxBatchesPerRun = DEFAULT_MAX_BATCHES_PER_RUN;
+
+    /** The pause in milliseconds between two batches. */
+    @Min(0)
+    private long pauseBetweenBatchesInMilliseconds;
+
+    /** The optional metric registry where the number of tokens swept per run is published. */
+    private MetricRegistry metricRegistry;
+
+    /** The last token read by the previous run if it stopped before the end, or null to start from the beginning. */
+    private volatile AccessToken resumeAfter;
+
+    /**
+     * Instantiate a new {@link ExpiredTokenSweeper}.
+     *
+     * @param tokenRegistry the token registry to sweep
+     */
+    public ExpiredTokenSweeper(final TokenRegistry tokenRegistry) {
+        this.tokenRegistry = tokenRegistry;
+    }
+
+    public void setLock(final LockingStrategy lock) {
+        this.lock = lock;
+    }
+
+    public void setBatchSize(final int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public void setMaxBatchesPerRun(final int maxBatchesPerRun) {
+        this.maxBatchesPerRun = maxBatchesPerRun;
+    }
+
+    public void setPauseBetweenBatchesInMilliseconds(final long pauseBetweenBatchesInMilliseconds) {
+        this.pauseBetweenBatchesInMilliseconds = pauseBetweenBatchesInMilliseconds;
+    }
+
+    public void setMetricRegistry(final MetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+    }
+
+    /**
+     * Sweep the expired access tokens, unless another node is already doing so.
+     *
+     * @return the number of tokens swept
+     */
+    public int sweep() {
+
+        Assert.isTrue(batchSize > 0, "batchSize must be positive");
+
+        if (!lock.acquire()) {
+            LOGGER.info("Could not obtain lock. Aborting sweep of expired tokens.");
+            return 0;
+        }
+
+        int count = 0;
+        try {
+            final long now = System.currentTimeMillis();
+            AccessToken last = resumeAfter;
+            boolean reachedEnd = false;
+            for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+                if (batch > 0 && pauseBetweenBatchesInMilliseconds > 0) {
+                    Thread.sleep(pauseBetweenBatchesInMilliseconds);
+                }
+                final Collection<AccessToken> tokens
+                        = tokenRegistry.getExpiredTokens(now, last, batchSize, AccessToken.class);
+                final Set<String> ticketIds = new HashSet<>();
+                final Set<String> clientIds = new HashSet<>();
+                for (final AccessToken token : tokens) {
+                    last = token;
+                    final Ticket ticket = token.getTicket();
+                    if (ticket != null && ticket.isExpired()) {
+                        ticketIds.add(ticket.getId());
+                        if (token.getClientId() != null) {
+                            clientIds.add(token.getClientId());
+                        }
+                        count++;
+                    }
+                }
+                if (!ticketIds.isEmpty()) {
+                    // Remove the tickets at once, doing so will CASCADE and remove the tokens.
+                    tokenRegistry.deleteTickets(ticketIds);
+                    for (final String clientId : clientIds) {
+                        tokenRegistry.clientTokensDeleted(clientId);
+                    }
+                }
+                if (tokens.size() < batchSize) {
+                    reachedEnd = true;
+                    break;
+                }
+            }
+            resumeAfter = reachedEnd ? null : last;
+        } catch (final InterruptedException e) {
+            LOGGER.warn("Sweep of expired tokens interrupted.");
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.release();
+        }
+
+        if (metricRegistry != null) {
+            metricRegistry.histogram(MetricRegistry.name(ExpiredTokenSweeper.class, "swept")).update(count);
+            metricRegistry.meter(MetricRegistry.name(ExpiredTokenSweeper.class, "tokens")).mark(count);
+        }
+        LOGGER.info("{} expired tokens found and removed.", count);
+        return count;
+    }
+}
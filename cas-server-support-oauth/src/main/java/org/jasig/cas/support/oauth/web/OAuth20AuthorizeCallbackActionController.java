@@ -146,7 +146,8 @@ public final class OAuth20AuthorizeCallbackActionController extends AbstractCont
             String callbackUrl = redirectUri;
             final long timeSinceTicketCreation = System.currentTimeMillis() - accessToken.getTicket().getCreationTime();
             final int expiresIn = (int) (timeout - TimeUnit.MILLISECONDS.toSeconds(timeSinceTicketCreation));
-            callbackUrl += "#" + OAuthConstants.ACCESS_TOKEN + "=" + accessToken.getId();
+            final String accessTokenValue = centralOAuthService.getAccessTokenValue(accessToken);
+            callbackUrl += "#" + OAuthConstants.ACCESS_TOKEN + "=" + accessTokenValue;
             callbackUrl += "&" + OAuthConstants.EXPIRES_IN + "=" + expiresIn;
             callbackUrl += "&" + OAuthConstants.TOKEN_TYPE + "=" + OAuthConstants.BEARER_TOKEN;
             if (!StringUtils.isBlank(state)) {
@@ -34,9 +34,11 @@ import org.jasig.cas.support.oauth.OAuthUtils;
 import org.jasig.cas.support.oauth.personal.PersonalAccessToken;
 import org.jasig.cas.support.oauth.token.AccessToken;
 import org.jasig.cas.support.oauth.token.InvalidTokenException;
+import org.jasig.cas.support.oauth.token.SignedAccessToken;
 import org.jasig.cas.support.oauth.token.TokenType;
 import org.jasig.cas.ticket.InvalidTicketException;
 import org.jasig.cas.ticket.ServiceTicket;
+import org.jasig.cas.ticket.TicketException;
 import org.jasig.cas.validation.Assertion;
 
 import org.slf4j.Logger;
@@ -110,6 +112,29 @@ public final class OAuth20ProfileController extends AbstractController {
             );
         }
 
+        // Self-contained ONLINE and OFFLINE access tokens carry the principal, the released attributes and the scopes.
+        // Thus they are answered right away, without any lookup of the token registry or any service ticket.
+        final SignedAccessToken signedAccessToken;
+        try {
+            signedAccessToken = centralOAuthService.getSignedAccessToken(accessTokenId);
+        } catch (final InvalidTokenException e) {
+            LOGGER.error("Could not verify Signed Access Token [{}]", e.getMessage());
+            return OAuthUtils.writeJsonError(
+                    response,
+                    OAuthConstants.UNAUTHORIZED_REQUEST,
+                    OAuthConstants.INVALID_ACCESS_TOKEN_DESCRIPTION,
+                    HttpStatus.SC_UNAUTHORIZED
+            );
+        }
+        if (signedAccessToken != null) {
+            return writeProfile(
+                    response,
+                    signedAccessToken.getPrincipalId(),
+                    signedAccessToken.getAttributes(),
+                    signedAccessToken.getScopes()
+            );
+        }
+
         // Verify and retrieve the access token. The token can be OAuth-granted by authorization or CAS-granted by
         // authentication. It can also be an OSF-generated PERSONAL access token, which does not exist in the token
         // registry (i.e. CAS database) the first time it is used.
@@ -148,9 +173,25 @@ public final class OAuth20ProfileController extends AbstractController {
             } else {
                 // Both ONLINE and CAS access tokens are granted with a ticket granting ticket and an associated
                 // registered service. Thus, must grant a new service ticket here using the TGT and the service.
-                serviceTicket = centralAuthenticationService
-                        .grantServiceTicket(accessToken.getTicketGrantingTicket().getId(), accessToken.getService()
-                );
+                try {
+                    serviceTicket = centralAuthenticationService
+                            .grantServiceTicket(accessToken.getTicketGrantingTicket().getId(), accessToken.getService()
+                    );
+                } catch (final TicketException e) {
+                    // The ticket granting ticket may have been destroyed (e.g. by CAS logout) after the access token
+                    // was retrieved from the token registry cache.
+                    LOGGER.error(
+                            "Could not grant Service Ticket from Ticket Granting Ticket [{}] of Access Token [{}]",
+                            accessToken.getTicketGrantingTicket().getId(),
+                            accessToken.getId()
+                    );
+                    return OAuthUtils.writeJsonError(
+                            response,
+                            OAuthConstants.UNAUTHORIZED_REQUEST,
+                            OAuthConstants.INVALID_ACCESS_TOKEN_DESCRIPTION,
+                            HttpStatus.SC_UNAUTHORIZED
+                    );
+                }
             }
             // Validate the service ticket, and apply service specific attribute release policy
             final Assertion assertion;
@@ -177,16 +218,34 @@ public final class OAuth20ProfileController extends AbstractController {
             }
         }
 
-        // Build and return the response.
+        return writeProfile(response, principal.getId(), attributeMap, accessToken.getScopes());
+    }
+
+    /**
+     * Build and write the profile response.
+     *
+     * @param response the HTTP response
+     * @param principalId the principal id
+     * @param attributes the released principal attributes
+     * @param scopes the scopes of the access token
+     * @return the model and view
+     * @throws Exception if the profile cannot be serialized
+     */
+    private ModelAndView writeProfile(
+            final HttpServletResponse response,
+            final String principalId,
+            final Map<String, Object> attributes,
+            final Set<String> scopes
+    ) throws Exception {
+
         final ObjectMapper mapper = new ObjectMapper();
         final Map<String, Object> map = new HashMap<>();
-        map.put(OAuthConstants.PRINCIPAL_ID, principal.getId());
-        if (attributeMap.size() > 0) {
-            map.put(OAuthConstants.PRINCIPAL_ATTRIBUTES, attributeMap);
+        map.put(OAuthConstants.PRINCIPAL_ID, principalId);
+        if (attributes.size() > 0) {
+            map.put(OAuthConstants.PRINCIPAL_ATTRIBUTES, attributes);
         }
-        final Set<String> scopes = accessToken.getScopes();
         if (scopes.size() > 0) {
-            map.put(OAuthConstants.SCOPE, accessToken.getScopes());
+            map.put(OAuthConstants.SCOPE, scopes);
         }
         final String result = mapper.writeValueAsString(map);
         LOGGER.debug("result : {}", result);
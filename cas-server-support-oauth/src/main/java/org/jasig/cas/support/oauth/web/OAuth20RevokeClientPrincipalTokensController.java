@@ -44,6 +44,8 @@ import javax.servlet.http.HttpServletResponse;
  * PERSONAL access tokens. For CAS access tokens, any client id can be used. However, for OFFLINE and ONLINE access
  * tokens, only the client id with which the token is associated works.
  *
+ * The tokens are revoked at once, the CAS OAuth service deletes all of their tickets in bulk in a single transaction.
+ *
  * @author Michael Haselton
  * @author Longze Chen
  * @since 4.1.5
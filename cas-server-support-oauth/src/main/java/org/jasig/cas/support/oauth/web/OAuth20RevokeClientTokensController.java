@@ -25,6 +25,7 @@ import org.jasig.cas.support.oauth.OAuthUtils;
 import org.jasig.cas.support.oauth.services.OAuthRegisteredService;
 import org.jasig.cas.support.oauth.token.AccessToken;
 import org.jasig.cas.support.oauth.token.RefreshToken;
+import org.jasig.cas.support.oauth.token.Token;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,7 +33,9 @@ import org.slf4j.LoggerFactory;
 import org.springframework.web.servlet.ModelAndView;
 import org.springframework.web.servlet.mvc.AbstractController;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -51,6 +54,9 @@ public final class OAuth20RevokeClientTokensController extends AbstractControlle
     /** Log instance for logging events, info, warnings, errors, etc. */
     private static final Logger LOGGER = LoggerFactory.getLogger(OAuth20RevokeClientTokensController.class);
 
+    /** The maximum number of tokens revoked at once. */
+    private static final int PAGE_SIZE = 500;
+
     /** The CAS OAuth authorization service. */
     private final CentralOAuthService centralOAuthService;
 
@@ -97,22 +103,47 @@ public final class OAuth20RevokeClientTokensController extends AbstractControlle
             );
         }
 
-        // Attempt to remove all refresh and access tokens associated with the registered service via client id.
-        final Collection<RefreshToken> refreshTokens = centralOAuthService.getClientRefreshTokens(clientId);
-        for (final RefreshToken token: refreshTokens) {
-            LOGGER.debug("Revoking refresh token : {}", token.getId());
-            centralOAuthService.revokeToken(token);
-        }
-        final Collection<AccessToken> accessTokens = centralOAuthService.getClientAccessTokens(clientId);
-        for (final AccessToken token: accessTokens) {
-            LOGGER.info("Revoking access token : {}", token.getId());
-            centralOAuthService.revokeToken(token);
-        }
+        // Attempt to remove all refresh and access tokens associated with the registered service via client id. The
+        // tokens are walked through page by page and each page is revoked at once, so that neither the memory used nor
+        // the length of a transaction grows with the number of tokens of the client.
+        String afterId = null;
+        Collection<RefreshToken> refreshTokens;
+        do {
+            refreshTokens = centralOAuthService.getClientRefreshTokens(clientId, afterId, PAGE_SIZE);
+            afterId = revokePage(refreshTokens, afterId);
+        } while (refreshTokens.size() == PAGE_SIZE);
+        afterId = null;
+        Collection<AccessToken> accessTokens;
+        do {
+            accessTokens = centralOAuthService.getClientAccessTokens(clientId, afterId, PAGE_SIZE);
+            afterId = revokePage(accessTokens, afterId);
+        } while (accessTokens.size() == PAGE_SIZE);
 
         // Return an HTTP 204 No Content after all tokens have been removed successfully.
         return OAuthUtils.writeText(response, null, HttpStatus.SC_NO_CONTENT);
     }
 
+    /**
+     * Revoke a page of tokens at once.
+     *
+     * @param tokens the page of tokens, ordered by token id
+     * @param afterId the id of the last token of the previous page
+     * @return the id of the last token of this page, or {@code afterId} if the page is empty
+     */
+    private String revokePage(final Collection<? extends Token> tokens, final String afterId) {
+        if (tokens.isEmpty()) {
+            return afterId;
+        }
+        final List<String> tokenIds = new ArrayList<>(tokens.size());
+        for (final Token token : tokens) {
+            tokenIds.add(token.getId());
+        }
+        final String lastId = tokenIds.get(tokenIds.size() - 1);
+        LOGGER.info("Revoking {} tokens : {} .. {}", tokenIds.size(), tokenIds.get(0), lastId);
+        centralOAuthService.revokeTokens(tokenIds);
+        return lastId;
+    }
+
     /**
      * Verify that all required OAuth 2.0 parameters are provided.
      *
@@ -193,7 +193,7 @@ public final class OAuth20TokenAuthorizationCodeController extends AbstractContr
         if (authorizationCode.getType() == TokenType.OFFLINE && refreshToken != null) {
             map.put(OAuthConstants.REFRESH_TOKEN, refreshToken.getId());
         }
-        map.put(OAuthConstants.ACCESS_TOKEN, accessToken.getId());
+        map.put(OAuthConstants.ACCESS_TOKEN, centralOAuthService.getAccessTokenValue(accessToken));
         final long timeSinceTicketCreation = System.currentTimeMillis() - accessToken.getTicket().getCreationTime();
         final int expiresIn = (int) (timeout - TimeUnit.MILLISECONDS.toSeconds(timeSinceTicketCreation));
         map.put(OAuthConstants.EXPIRES_IN, expiresIn);
@@ -123,7 +123,7 @@ public final class OAuth20TokenRefreshTokenController extends AbstractController
         // Build and return the response.
         final Map<String, Object> map = new HashMap<>();
         map.put(OAuthConstants.TOKEN_TYPE, OAuthConstants.BEARER_TOKEN);
-        map.put(OAuthConstants.ACCESS_TOKEN, accessToken.getId());
+        map.put(OAuthConstants.ACCESS_TOKEN, centralOAuthService.getAccessTokenValue(accessToken));
         final long timeSinceTicketCreation = System.currentTimeMillis() - accessToken.getTicket().getCreationTime();
         final int expiresIn = (int) (timeout - TimeUnit.MILLISECONDS.toSeconds(timeSinceTicketCreation));
         map.put(OAuthConstants.EXPIRES_IN, expiresIn);
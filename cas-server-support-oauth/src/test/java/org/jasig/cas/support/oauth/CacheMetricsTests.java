@@ -0,0 +1,67 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.cas.support.oauth;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * This class tests the {@link CacheMetrics} class.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public final class CacheMetricsTests {
+
+    @Test
+    public void verifyRegisterCacheGauges() throws Exception {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final Cache<String, String> cache = CacheBuilder.newBuilder().maximumSize(1).recordStats().build();
+
+        CacheMetrics.registerCacheGauges(metricRegistry, CacheMetricsTests.class, cache);
+
+        cache.put("a", "a");
+        cache.put("b", "b");
+        cache.getIfPresent("b");
+        cache.getIfPresent("c");
+
+        final Map<String, Gauge> gauges = metricRegistry.getGauges();
+        final String prefix = CacheMetricsTests.class.getName();
+        assertEquals(
+                new HashSet<>(Arrays.asList(
+                        prefix + ".hits", prefix + ".misses", prefix + ".evictions", prefix + ".size"
+                )),
+                gauges.keySet()
+        );
+        assertEquals(1L, gauges.get(prefix + ".hits").getValue());
+        assertEquals(1L, gauges.get(prefix + ".misses").getValue());
+        assertEquals(1L, gauges.get(prefix + ".evictions").getValue());
+        assertEquals(1L, gauges.get(prefix + ".size").getValue());
+    }
+}
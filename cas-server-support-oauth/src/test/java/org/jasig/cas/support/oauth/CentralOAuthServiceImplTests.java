@@ -0,0 +1,292 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.cas.support.oauth;
+
+import org.jasig.cas.CentralAuthenticationService;
+import org.jasig.cas.authentication.Authentication;
+import org.jasig.cas.authentication.principal.Principal;
+import org.jasig.cas.authentication.principal.Service;
+import org.jasig.cas.authentication.principal.SimpleWebApplicationServiceImpl;
+import org.jasig.cas.services.RegisteredService;
+import org.jasig.cas.services.ServicesManager;
+import org.jasig.cas.support.oauth.authentication.principal.OAuthCredential;
+import org.jasig.cas.support.oauth.metadata.PrincipalMetadata;
+import org.jasig.cas.support.oauth.personal.PersonalAccessToken;
+import org.jasig.cas.support.oauth.personal.PersonalAccessTokenManager;
+import org.jasig.cas.support.oauth.scope.ScopeManager;
+import org.jasig.cas.support.oauth.services.OAuthRegisteredService;
+import org.jasig.cas.support.oauth.token.AccessToken;
+import org.jasig.cas.support.oauth.token.AccessTokenImpl;
+import org.jasig.cas.support.oauth.token.InvalidTokenException;
+import org.jasig.cas.support.oauth.token.TokenType;
+import org.jasig.cas.support.oauth.token.registry.CachingTokenRegistry;
+import org.jasig.cas.support.oauth.token.registry.InMemoryTokenRegistry;
+import org.jasig.cas.support.oauth.token.registry.UnknownTokenCache;
+import org.jasig.cas.ticket.TicketGrantingTicket;
+import org.jasig.cas.ticket.registry.TicketRegistry;
+import org.jasig.cas.util.DefaultUniqueTicketIdGenerator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+
+/**
+ * This class tests the {@link CentralOAuthServiceImpl} class.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public final class CentralOAuthServiceImplTests {
+
+    private static final String TGT_ID = "TGT-1";
+
+    private static final Service SERVICE = new SimpleWebApplicationServiceImpl("https://osf.io/");
+
+    private static final Service OTHER_SERVICE = new SimpleWebApplicationServiceImpl("https://api.osf.io/");
+
+    private CentralAuthenticationService centralAuthenticationService;
+
+    private ServicesManager servicesManager;
+
+    private InMemoryTokenRegistry tokenRegistry;
+
+    private PersonalAccessTokenManager personalAccessTokenManager;
+
+    private CentralOAuthServiceImpl centralOAuthService;
+
+    private TicketGrantingTicket ticketGrantingTicket;
+
+    @Before
+    public void setUp() throws Exception {
+        final ScopeManager scopeManager = mock(ScopeManager.class);
+        when(scopeManager.getCASScopes()).thenReturn(Collections.singleton("osf.full_write"));
+
+        centralAuthenticationService = mock(CentralAuthenticationService.class);
+        servicesManager = mock(ServicesManager.class);
+        tokenRegistry = new InMemoryTokenRegistry();
+        personalAccessTokenManager = mock(PersonalAccessTokenManager.class);
+        centralOAuthService = new CentralOAuthServiceImpl(
+                centralAuthenticationService,
+                servicesManager,
+                mock(TicketRegistry.class),
+                tokenRegistry,
+                new DefaultUniqueTicketIdGenerator(),
+                new DefaultUniqueTicketIdGenerator(),
+                new DefaultUniqueTicketIdGenerator(),
+                scopeManager,
+                personalAccessTokenManager
+        );
+
+        final Principal principal = mock(Principal.class);
+        when(principal.getId()).thenReturn("principal");
+        final Authentication authentication = mock(Authentication.class);
+        when(authentication.getPrincipal()).thenReturn(principal);
+        ticketGrantingTicket = mock(TicketGrantingTicket.class);
+        when(ticketGrantingTicket.getId()).thenReturn(TGT_ID);
+        when(ticketGrantingTicket.getAuthentication()).thenReturn(authentication);
+    }
+
+    @Test
+    public void verifyCASAccessTokensAreNotReusedByDefault() throws Exception {
+        final AccessToken accessToken = centralOAuthService.grantCASAccessToken(ticketGrantingTicket, SERVICE);
+        assertNotEquals(
+                accessToken.getId(),
+                centralOAuthService.grantCASAccessToken(ticketGrantingTicket, SERVICE).getId()
+        );
+    }
+
+    @Test
+    public void verifyCASAccessTokenIsReusedForSameService() throws Exception {
+        centralOAuthService.setReuseCASAccessTokens(true);
+        final AccessToken accessToken = centralOAuthService.grantCASAccessToken(ticketGrantingTicket, SERVICE);
+        assertEquals(
+                accessToken.getId(),
+                centralOAuthService.grantCASAccessToken(ticketGrantingTicket, SERVICE).getId()
+        );
+        assertNotEquals(
+                accessToken.getId(),
+                centralOAuthService.grantCASAccessToken(ticketGrantingTicket, OTHER_SERVICE).getId()
+        );
+    }
+
+    @Test
+    public void verifyCASAccessTokenOfExpiredTicketIsNotReused() throws Exception {
+        centralOAuthService.setReuseCASAccessTokens(true);
+        final AccessToken accessToken = centralOAuthService.grantCASAccessToken(ticketGrantingTicket, SERVICE);
+        when(ticketGrantingTicket.isExpired()).thenReturn(true);
+        assertNotEquals(
+                accessToken.getId(),
+                centralOAuthService.grantCASAccessToken(ticketGrantingTicket, SERVICE).getId()
+        );
+    }
+
+    @Test
+    public void verifyCASAccessTokenOfRevokedTicketIsNotReused() throws Exception {
+        centralOAuthService.setReuseCASAccessTokens(true);
+        final AccessToken accessToken = centralOAuthService.grantCASAccessToken(ticketGrantingTicket, SERVICE);
+        centralOAuthService.revokeToken(accessToken);
+        assertNotEquals(
+                accessToken.getId(),
+                centralOAuthService.grantCASAccessToken(ticketGrantingTicket, SERVICE).getId()
+        );
+    }
+
+    @Test
+    public void verifyRevocationEvictsCachedPrincipalCount() throws Exception {
+        final CachingTokenRegistry cachingTokenRegistry = new CachingTokenRegistry(tokenRegistry, 60, 100, 60);
+        final CentralOAuthServiceImpl service = new CentralOAuthServiceImpl(
+                centralAuthenticationService,
+                servicesManager,
+                mock(TicketRegistry.class),
+                cachingTokenRegistry,
+                new DefaultUniqueTicketIdGenerator(),
+                new DefaultUniqueTicketIdGenerator(),
+                new DefaultUniqueTicketIdGenerator(),
+                mock(ScopeManager.class),
+                personalAccessTokenManager
+        );
+        tokenRegistry.addToken(newOnlineAccessToken("AT-2", "client-1", "osf.full_read"));
+        assertEquals(Integer.valueOf(1), cachingTokenRegistry.getPrincipalCount("client-1"));
+
+        // The token is revoked without ever being read through the token cache.
+        assertTrue(service.revokeTokens(Collections.singleton("AT-2")));
+        assertEquals(Integer.valueOf(0), cachingTokenRegistry.getPrincipalCount("client-1"));
+    }
+
+    @Test
+    public void verifyPrincipalMetadataIsAggregatedByClient() throws Exception {
+        final OAuthRegisteredService service = new OAuthRegisteredService();
+        service.setClientId("client-1");
+        service.setName("OSF App");
+        when(servicesManager.getAllServices()).thenReturn(Collections.<RegisteredService>singleton(service));
+
+        tokenRegistry.addToken(newOnlineAccessToken("AT-2", "client-1", "osf.full_read"));
+        tokenRegistry.addToken(newOnlineAccessToken("AT-3", "client-1", "osf.users.email"));
+        // The service of this client has been removed since.
+        tokenRegistry.addToken(newOnlineAccessToken("AT-4", "client-2", "osf.full_read"));
+
+        final AccessToken accessToken = centralOAuthService.grantCASAccessToken(ticketGrantingTicket, SERVICE);
+        final Collection<PrincipalMetadata> metadata = centralOAuthService.getPrincipalMetadata(accessToken);
+        assertEquals(1, metadata.size());
+        final PrincipalMetadata principalMetadata = metadata.iterator().next();
+        assertEquals("client-1", principalMetadata.getClientId());
+        assertEquals("OSF App", principalMetadata.getName());
+        assertEquals(
+                new HashSet<>(Arrays.asList("osf.full_read", "osf.users.email")),
+                principalMetadata.getScopes()
+        );
+    }
+
+    @Test
+    public void verifyUnknownTokenIsRejectedWithoutLookup() throws Exception {
+        centralOAuthService.setUnknownTokenCache(new UnknownTokenCache(60, 100));
+
+        assertUnknownAccessToken("AT-unknown");
+        assertNull(centralOAuthService.getPersonalAccessToken("AT-unknown"));
+        assertUnknownAccessToken("AT-unknown");
+        assertNull(centralOAuthService.getPersonalAccessToken("AT-unknown"));
+        verify(personalAccessTokenManager, times(1)).getToken("AT-unknown");
+    }
+
+    @Test
+    public void verifyFailedPersonalAccessTokenLookupIsNotCached() throws Exception {
+        centralOAuthService.setUnknownTokenCache(new UnknownTokenCache(60, 100));
+        final PersonalAccessToken personalAccessToken
+                = new PersonalAccessToken("AT-personal", "principal", Collections.singleton("osf.full_read"));
+        when(personalAccessTokenManager.getToken("AT-personal"))
+                .thenThrow(new IllegalStateException("database unavailable"))
+                .thenReturn(personalAccessToken);
+
+        try {
+            centralOAuthService.getPersonalAccessToken("AT-personal");
+            fail("The failure of the lookup must be thrown");
+        } catch (final IllegalStateException e) {
+            assertEquals("database unavailable", e.getMessage());
+        }
+        assertEquals(personalAccessToken, centralOAuthService.getPersonalAccessToken("AT-personal"));
+        verify(personalAccessTokenManager, times(2)).getToken("AT-personal");
+    }
+
+    @Test
+    public void verifyPersonalAccessTokenIsNoLongerUnknownOnceGranted() throws Exception {
+        final UnknownTokenCache unknownTokenCache = new UnknownTokenCache(60, 100);
+        centralOAuthService.setUnknownTokenCache(unknownTokenCache);
+        when(centralAuthenticationService.createTicketGrantingTicket(any(OAuthCredential.class)))
+                .thenReturn(ticketGrantingTicket);
+
+        unknownTokenCache.put("personal-token");
+        centralOAuthService.grantPersonalAccessToken(
+                new PersonalAccessToken("personal-token", "principal", Collections.singleton("osf.full_read"))
+        );
+        assertNotNull(centralOAuthService.getToken("personal-token", AccessToken.class));
+    }
+
+    @Test
+    public void verifyRevokedPersonalAccessTokenIsInvalidated() throws Exception {
+        when(centralAuthenticationService.createTicketGrantingTicket(any(OAuthCredential.class)))
+                .thenReturn(ticketGrantingTicket);
+        final AccessToken accessToken = centralOAuthService.grantPersonalAccessToken(
+                new PersonalAccessToken("personal-token", "principal", Collections.singleton("osf.full_read"))
+        );
+        tokenRegistry.addToken(newOnlineAccessToken("AT-2", "client-1", "osf.full_read"));
+
+        centralOAuthService.revokeToken(accessToken);
+        verify(personalAccessTokenManager).invalidateToken("personal-token");
+        verify(personalAccessTokenManager, never()).invalidateToken("AT-2");
+    }
+
+    private void assertUnknownAccessToken(final String tokenId) {
+        try {
+            centralOAuthService.getToken(tokenId, AccessToken.class);
+        } catch (final InvalidTokenException e) {
+            return;
+        }
+        fail("Token [" + tokenId + "] should not be found");
+    }
+
+    private AccessToken newOnlineAccessToken(final String tokenId, final String clientId, final String scope) {
+        return new AccessTokenImpl(
+                tokenId,
+                TokenType.ONLINE,
+                clientId,
+                "principal",
+                ticketGrantingTicket,
+                SERVICE,
+                null,
+                Collections.singleton(scope)
+        );
+    }
+}
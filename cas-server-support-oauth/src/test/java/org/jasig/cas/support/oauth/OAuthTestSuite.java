@@ -18,6 +18,16 @@
  */
 package org.jasig.cas.support.oauth;
 
+import org.jasig.cas.support.oauth.personal.handler.CachingPersonalAccessTokenHandlerTests;
+import org.jasig.cas.support.oauth.services.OAuthRegisteredServiceIndexTests;
+import org.jasig.cas.support.oauth.token.SignedAccessTokenCodecTests;
+import org.jasig.cas.support.oauth.token.TokenScopesTests;
+import org.jasig.cas.support.oauth.token.registry.CachingTokenRegistryTests;
+import org.jasig.cas.support.oauth.token.registry.InMemoryTokenRegistryTests;
+import org.jasig.cas.support.oauth.token.registry.InMemoryTokenRevocationListTests;
+import org.jasig.cas.support.oauth.token.registry.JpaTokenRegistryTests;
+import org.jasig.cas.support.oauth.token.registry.JpaTokenRevocationListTests;
+import org.jasig.cas.support.oauth.token.registry.support.ExpiredTokenSweeperTests;
 import org.jasig.cas.support.oauth.web.OAuth20AuthorizeCallbackActionControllerTests;
 import org.jasig.cas.support.oauth.web.OAuth20MetadataClientControllerTests;
 import org.jasig.cas.support.oauth.web.OAuth20MetadataPrincipalControllerTests;
@@ -44,6 +54,7 @@ import org.junit.runners.Suite;
  */
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
+        CentralOAuthServiceImplTests.class,
         OAuth20WrapperControllerTests.class,
         OAuth20AuthorizeControllerTests.class,
         OAuth20AuthorizeCallbackControllerTests.class,
@@ -57,5 +68,16 @@ import org.junit.runners.Suite;
         OAuth20RevokeClientTokensControllerTests.class,
         OAuth20RevokeClientPrincipalTokensControllerTests.class,
         OAuth20ServiceValidateControllerTests.class,
+        CachingTokenRegistryTests.class,
+        TokenScopesTests.class,
+        InMemoryTokenRegistryTests.class,
+        JpaTokenRegistryTests.class,
+        ExpiredTokenSweeperTests.class,
+        SignedAccessTokenCodecTests.class,
+        InMemoryTokenRevocationListTests.class,
+        JpaTokenRevocationListTests.class,
+        OAuthRegisteredServiceIndexTests.class,
+        CachingPersonalAccessTokenHandlerTests.class,
+        CacheMetricsTests.class,
 })
 public class OAuthTestSuite {}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.cas.support.oauth.personal.handler;
+
+import org.jasig.cas.support.oauth.personal.PersonalAccessToken;
+import org.jasig.cas.support.oauth.personal.handler.support.PersonalAccessTokenHandler;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * This class tests the {@link CachingPersonalAccessTokenHandler} class.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public final class CachingPersonalAccessTokenHandlerTests {
+
+    private static final String TOKEN_ID = "personal-token";
+
+    private PersonalAccessTokenHandler osfPersonalAccessTokenHandler;
+
+    private CachingPersonalAccessTokenHandler cachingPersonalAccessTokenHandler;
+
+    private PersonalAccessToken personalAccessToken;
+
+    @Before
+    public void setUp() throws Exception {
+        osfPersonalAccessTokenHandler = mock(PersonalAccessTokenHandler.class);
+        cachingPersonalAccessTokenHandler
+                = new CachingPersonalAccessTokenHandler(osfPersonalAccessTokenHandler, 60, 100);
+        personalAccessToken = new PersonalAccessToken(TOKEN_ID, "principal", Collections.singleton("osf.full_read"));
+    }
+
+    @Test
+    public void verifyTokenIsReadOnce() throws Exception {
+        when(osfPersonalAccessTokenHandler.getToken(TOKEN_ID)).thenReturn(personalAccessToken);
+
+        assertSame(personalAccessToken, cachingPersonalAccessTokenHandler.getToken(TOKEN_ID));
+        assertSame(personalAccessToken, cachingPersonalAccessTokenHandler.getToken(TOKEN_ID));
+        verify(osfPersonalAccessTokenHandler, times(1)).getToken(TOKEN_ID);
+    }
+
+    @Test
+    public void verifyUnknownTokenIsNotCached() throws Exception {
+        assertNull(cachingPersonalAccessTokenHandler.getToken(TOKEN_ID));
+
+        when(osfPersonalAccessTokenHandler.getToken(TOKEN_ID)).thenReturn(personalAccessToken);
+        assertSame(personalAccessToken, cachingPersonalAccessTokenHandler.getToken(TOKEN_ID));
+    }
+
+    @Test
+    public void verifyInvalidatedTokenIsReadAgain() throws Exception {
+        when(osfPersonalAccessTokenHandler.getToken(TOKEN_ID)).thenReturn(personalAccessToken);
+        cachingPersonalAccessTokenHandler.getToken(TOKEN_ID);
+
+        when(osfPersonalAccessTokenHandler.getToken(TOKEN_ID)).thenReturn(null);
+        cachingPersonalAccessTokenHandler.invalidate(TOKEN_ID);
+        assertNull(cachingPersonalAccessTokenHandler.getToken(TOKEN_ID));
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.cas.support.oauth.services;
+
+import org.jasig.cas.services.RegisteredService;
+import org.jasig.cas.services.RegexRegisteredService;
+import org.jasig.cas.services.ServicesManager;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * This class tests the {@link OAuthRegisteredServiceIndex} class.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public final class OAuthRegisteredServiceIndexTests {
+
+    @Test
+    public void verifyGetServiceScansOnce() {
+        final OAuthRegisteredService service = newService("client-1");
+        final ServicesManager servicesManager = newServicesManager(new RegexRegisteredService(), service);
+        final OAuthRegisteredServiceIndex index = new OAuthRegisteredServiceIndex(servicesManager);
+
+        assertSame(service, index.getService("client-1"));
+        assertSame(service, index.getService("client-1"));
+        verify(servicesManager, times(1)).getAllServices();
+    }
+
+    @Test
+    public void verifyUnknownClientIdRescans() {
+        final Collection<RegisteredService> services = new ArrayList<>();
+        final ServicesManager servicesManager = mock(ServicesManager.class);
+        when(servicesManager.getAllServices()).thenReturn(services);
+        final OAuthRegisteredServiceIndex index = new OAuthRegisteredServiceIndex(servicesManager);
+
+        assertNull(index.getService("client-1"));
+        final OAuthRegisteredService service = newService("client-1");
+        services.add(service);
+        assertSame(service, index.getService("client-1"));
+        assertNull(index.getService(null));
+    }
+
+    @Test
+    public void verifyStaleSnapshotIsRefreshed() {
+        final OAuthRegisteredService service = newService("client-1");
+        final ServicesManager servicesManager = newServicesManager(service);
+        final OAuthRegisteredServiceIndex index = new OAuthRegisteredServiceIndex(servicesManager);
+        index.setRefreshIntervalInSeconds(0);
+
+        final OAuthRegisteredService reloaded = newService("client-1");
+        when(servicesManager.getAllServices()).thenReturn(Arrays.<RegisteredService>asList(reloaded));
+        assertSame(reloaded, index.getService("client-1"));
+    }
+
+    @Test
+    public void verifyFirstServiceWins() {
+        final OAuthRegisteredService first = newService("client-1");
+        final OAuthRegisteredServiceIndex index
+                = new OAuthRegisteredServiceIndex(newServicesManager(first, newService("client-1")));
+        assertSame(first, index.getService("client-1"));
+    }
+
+    private static OAuthRegisteredService newService(final String clientId) {
+        final OAuthRegisteredService service = new OAuthRegisteredService();
+        service.setClientId(clientId);
+        return service;
+    }
+
+    private static ServicesManager newServicesManager(final RegisteredService... services) {
+        final ServicesManager servicesManager = mock(ServicesManager.class);
+        when(servicesManager.getAllServices()).thenReturn(Arrays.asList(services));
+        return servicesManager;
+    }
+}
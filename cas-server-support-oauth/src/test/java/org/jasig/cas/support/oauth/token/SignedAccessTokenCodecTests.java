@@ -0,0 +1,145 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.cas.support.oauth.token;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class tests the {@link SignedAccessTokenCodec} class.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public final class SignedAccessTokenCodecTests {
+
+    private static final String ISSUER = "https://accounts.osf.io";
+
+    private static final String SIGNING_SECRET = "signing_secret_of_32_bytes_long!";
+
+    private static final String ENCRYPTION_SECRET = "encryption_secret_32_bytes_long!";
+
+    private static final String AT_ID = "AT-1-abcdef";
+
+    private static final String CLIENT_ID = "client";
+
+    private static final String PRINCIPAL_ID = "principal";
+
+    private static final Set<String> SCOPES = new HashSet<>(Arrays.asList("osf.full_read", "osf.users.email"));
+
+    private static final Map<String, Object> ATTRIBUTES = Collections.<String, Object>singletonMap("name", "value");
+
+    @Test
+    public void verifySignedRoundTrip() throws Exception {
+        final SignedAccessTokenCodec codec = new SignedAccessTokenCodec(ISSUER, SIGNING_SECRET, null);
+        final String value = codec.encode(newAccessToken(TokenType.ONLINE, 60000), ATTRIBUTES);
+        assertTrue(codec.isEncoded(value));
+        assertSignedAccessToken(codec.decode(value), TokenType.ONLINE);
+    }
+
+    @Test
+    public void verifyEncryptedRoundTrip() throws Exception {
+        final SignedAccessTokenCodec codec = new SignedAccessTokenCodec(ISSUER, SIGNING_SECRET, ENCRYPTION_SECRET);
+        final String value = codec.encode(newAccessToken(TokenType.OFFLINE, 60000), ATTRIBUTES);
+        assertTrue(codec.isEncoded(value));
+        assertFalse(new SignedAccessTokenCodec(ISSUER, SIGNING_SECRET, null).isEncoded(value));
+        assertSignedAccessToken(codec.decode(value), TokenType.OFFLINE);
+    }
+
+    @Test
+    public void verifyTokenIdIsNotEncoded() {
+        final SignedAccessTokenCodec codec = new SignedAccessTokenCodec(ISSUER, SIGNING_SECRET, null);
+        assertFalse(codec.isEncoded(AT_ID));
+        assertFalse(codec.isEncoded(null));
+    }
+
+    @Test(expected = InvalidTokenException.class)
+    public void verifyTamperedTokenIsRejected() throws Exception {
+        final SignedAccessTokenCodec codec = new SignedAccessTokenCodec(ISSUER, SIGNING_SECRET, null);
+        final String value = codec.encode(newAccessToken(TokenType.ONLINE, 60000), ATTRIBUTES);
+        final String[] parts = value.split("\\.");
+        final String forged = new SignedAccessTokenCodec(ISSUER, SIGNING_SECRET, null)
+                .encode(newAccessToken(TokenType.ONLINE, 120000), ATTRIBUTES).split("\\.")[1];
+        assertNotEquals(parts[1], forged);
+        codec.decode(parts[0] + "." + forged + "." + parts[2]);
+    }
+
+    @Test(expected = InvalidTokenException.class)
+    public void verifyOtherSecretIsRejected() throws Exception {
+        final String value = new SignedAccessTokenCodec(ISSUER, ENCRYPTION_SECRET, null)
+                .encode(newAccessToken(TokenType.ONLINE, 60000), ATTRIBUTES);
+        new SignedAccessTokenCodec(ISSUER, SIGNING_SECRET, null).decode(value);
+    }
+
+    @Test(expected = InvalidTokenException.class)
+    public void verifyOtherIssuerIsRejected() throws Exception {
+        final String value = new SignedAccessTokenCodec("https://other.osf.io", SIGNING_SECRET, null)
+                .encode(newAccessToken(TokenType.ONLINE, 60000), ATTRIBUTES);
+        new SignedAccessTokenCodec(ISSUER, SIGNING_SECRET, null).decode(value);
+    }
+
+    @Test(expected = InvalidTokenException.class)
+    public void verifyExpiredTokenIsRejected() throws Exception {
+        final SignedAccessTokenCodec codec = new SignedAccessTokenCodec(ISSUER, SIGNING_SECRET, null);
+        codec.decode(codec.encode(newAccessToken(TokenType.ONLINE, -1000), ATTRIBUTES));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void verifyShortSecretIsRejected() {
+        new SignedAccessTokenCodec(ISSUER, "short", null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void verifyBlankSigningSecretIsRejected() {
+        new SignedAccessTokenCodec(ISSUER, "", null);
+    }
+
+    private static AccessToken newAccessToken(final TokenType type, final long timeToLiveInMilliseconds) {
+        final AccessToken accessToken = mock(AccessToken.class);
+        when(accessToken.getId()).thenReturn(AT_ID);
+        when(accessToken.getType()).thenReturn(type);
+        when(accessToken.getClientId()).thenReturn(CLIENT_ID);
+        when(accessToken.getPrincipalId()).thenReturn(PRINCIPAL_ID);
+        when(accessToken.getEncodedScopes()).thenReturn(TokenScopes.encode(SCOPES));
+        when(accessToken.getExpirationDate()).thenReturn(System.currentTimeMillis() + timeToLiveInMilliseconds);
+        return accessToken;
+    }
+
+    private static void assertSignedAccessToken(final SignedAccessToken signedAccessToken, final TokenType type) {
+        assertEquals(AT_ID, signedAccessToken.getId());
+        assertEquals(type, signedAccessToken.getType());
+        assertEquals(CLIENT_ID, signedAccessToken.getClientId());
+        assertEquals(PRINCIPAL_ID, signedAccessToken.getPrincipalId());
+        assertEquals(SCOPES, signedAccessToken.getScopes());
+        assertEquals(ATTRIBUTES, signedAccessToken.getAttributes());
+        assertTrue(signedAccessToken.getExpirationDate() > System.currentTimeMillis());
+    }
+}
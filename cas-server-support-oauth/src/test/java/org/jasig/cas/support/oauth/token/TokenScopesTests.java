@@ -0,0 +1,70 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.cas.support.oauth.token;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This class tests the {@link TokenScopes} class.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public final class TokenScopesTests {
+
+    @Test
+    public void verifyEncodeIsCanonical() {
+        final Set<String> scopes = new HashSet<>(Arrays.asList("osf.full_write", "osf.full_read", "osf.users.email"));
+        assertEquals("osf.full_read osf.full_write osf.users.email", TokenScopes.encode(scopes));
+        assertEquals(
+                TokenScopes.encode(scopes),
+                TokenScopes.encode(new HashSet<>(Arrays.asList("osf.users.email", "osf.full_read", "osf.full_write")))
+        );
+    }
+
+    @Test
+    public void verifyDecodeRoundTrip() {
+        final Set<String> scopes = new HashSet<>(Arrays.asList("osf.full_write", "osf.full_read"));
+        assertEquals(scopes, TokenScopes.decode(TokenScopes.encode(scopes)));
+    }
+
+    @Test
+    public void verifyEmptyScopes() {
+        assertEquals("", TokenScopes.encode(Collections.<String>emptySet()));
+        assertTrue(TokenScopes.decode("").isEmpty());
+        assertTrue(TokenScopes.decode(null).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void verifyScopeWithDelimiterIsRejected() {
+        TokenScopes.encode(Collections.singleton("osf.full_read osf.full_write"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void verifyDecodedScopesAreUnmodifiable() {
+        TokenScopes.decode("osf.full_read").add("osf.full_write");
+    }
+}
@@ -0,0 +1,477 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.cas.support.oauth.token.registry;
+
+import org.jasig.cas.authentication.Authentication;
+import org.jasig.cas.authentication.AuthenticationHandler;
+import org.jasig.cas.authentication.BasicCredentialMetaData;
+import org.jasig.cas.authentication.CredentialMetaData;
+import org.jasig.cas.authentication.DefaultAuthenticationBuilder;
+import org.jasig.cas.authentication.DefaultHandlerResult;
+import org.jasig.cas.authentication.UsernamePasswordCredential;
+import org.jasig.cas.authentication.principal.DefaultPrincipalFactory;
+import org.jasig.cas.authentication.principal.Service;
+import org.jasig.cas.authentication.principal.SimpleWebApplicationServiceImpl;
+import org.jasig.cas.support.oauth.token.AccessToken;
+import org.jasig.cas.support.oauth.token.AccessTokenImpl;
+import org.jasig.cas.support.oauth.token.AuthorizationCode;
+import org.jasig.cas.support.oauth.token.AuthorizationCodeImpl;
+import org.jasig.cas.support.oauth.token.RefreshToken;
+import org.jasig.cas.support.oauth.token.RefreshTokenImpl;
+import org.jasig.cas.support.oauth.token.Token;
+import org.jasig.cas.support.oauth.token.TokenType;
+import org.jasig.cas.ticket.ServiceTicket;
+import org.jasig.cas.ticket.Ticket;
+import org.jasig.cas.ticket.TicketGrantingTicket;
+import org.jasig.cas.ticket.TicketGrantingTicketImpl;
+import org.jasig.cas.ticket.support.NeverExpiresExpirationPolicy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The contract tests of {@link TokenRegistry}, which every implementation must pass.
+ *
+ * Implementations backed by a database also need to store the tickets the tokens refer to, and to delete them the
+ * way the ticket registry does, see {@link #addTicket(Ticket)} and {@link #deleteTicket(String)}.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public abstract class AbstractTokenRegistryTests {
+
+    private static final String CLIENT_ID = "client-1";
+
+    private static final String OTHER_CLIENT_ID = "client-2";
+
+    private static final String PRINCIPAL_ID = "principal-1";
+
+    private static final String OTHER_PRINCIPAL_ID = "principal-2";
+
+    private static final Set<String> SCOPES = new HashSet<>(Arrays.asList("osf.full_read", "osf.full_write"));
+
+    private static final Service SERVICE = new SimpleWebApplicationServiceImpl("https://example.com/callback");
+
+    private TokenRegistry tokenRegistry;
+
+    private int ticketCount;
+
+    /**
+     * Create the token registry under test.
+     *
+     * @return the token registry
+     * @throws Exception if the registry cannot be created
+     */
+    protected abstract TokenRegistry newTokenRegistry() throws Exception;
+
+    /**
+     * Store a ticket the tokens refer to.
+     *
+     * @param ticket the ticket
+     */
+    protected void addTicket(final Ticket ticket) {
+    }
+
+    /**
+     * Delete a ticket the way the ticket registry and the CAS OAuth service do.
+     *
+     * @param ticketId the ticket id
+     */
+    protected void deleteTicket(final String ticketId) {
+        tokenRegistry.deleteTicketTokens(ticketId);
+    }
+
+    /** Make the changes visible to the following queries, e.g. by flushing the persistence context. */
+    protected void flush() {
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        tokenRegistry = newTokenRegistry();
+    }
+
+    @Test
+    public void verifyGetToken() throws Exception {
+        final AccessToken accessToken = addOnlineAccessToken(CLIENT_ID, PRINCIPAL_ID, SCOPES);
+        final RefreshToken refreshToken = addRefreshToken(CLIENT_ID, PRINCIPAL_ID);
+
+        final AccessToken found = tokenRegistry.getToken(accessToken.getId(), AccessToken.class);
+        assertNotNull(found);
+        assertEquals(accessToken.getId(), found.getId());
+        assertEquals(TokenType.ONLINE, found.getType());
+        assertEquals(SCOPES, found.getScopes());
+        assertNotNull(tokenRegistry.getToken(refreshToken.getId(), RefreshToken.class));
+
+        assertNull(tokenRegistry.getToken(accessToken.getId(), RefreshToken.class));
+        assertNull(tokenRegistry.getToken("AT-unknown", AccessToken.class));
+    }
+
+    @Test
+    public void verifyGetTokens() throws Exception {
+        final AccessToken accessToken = addOnlineAccessToken(CLIENT_ID, PRINCIPAL_ID, SCOPES);
+        final RefreshToken refreshToken = addRefreshToken(CLIENT_ID, PRINCIPAL_ID);
+        final Set<String> tokenIds
+                = new HashSet<>(Arrays.asList(accessToken.getId(), refreshToken.getId(), "AT-unknown"));
+
+        final Collection<AccessToken> accessTokens = tokenRegistry.getTokens(tokenIds, AccessToken.class);
+        assertEquals(1, accessTokens.size());
+        assertEquals(accessToken.getId(), accessTokens.iterator().next().getId());
+        assertEquals(1, tokenRegistry.getTokens(tokenIds, RefreshToken.class).size());
+        assertEquals(0, tokenRegistry.getTokens(Collections.<String>emptySet(), AccessToken.class).size());
+    }
+
+    @Test
+    public void verifyGetClientTokens() throws Exception {
+        addOnlineAccessToken(CLIENT_ID, PRINCIPAL_ID, SCOPES);
+        addOnlineAccessToken(OTHER_CLIENT_ID, PRINCIPAL_ID, SCOPES);
+        addRefreshToken(CLIENT_ID, PRINCIPAL_ID);
+
+        assertEquals(1, tokenRegistry.getClientTokens(CLIENT_ID, AccessToken.class).size());
+        assertEquals(1, tokenRegistry.getClientTokens(CLIENT_ID, RefreshToken.class).size());
+        assertEquals(0, tokenRegistry.getClientTokens(OTHER_CLIENT_ID, RefreshToken.class).size());
+    }
+
+    @Test
+    public void verifyGetClientTokensPaginated() throws Exception {
+        final Set<String> expected = new HashSet<>();
+        for (int i = 0; i < 5; i++) {
+            expected.add(addOnlineAccessToken(CLIENT_ID, PRINCIPAL_ID, SCOPES).getId());
+        }
+        addOnlineAccessToken(OTHER_CLIENT_ID, PRINCIPAL_ID, SCOPES);
+        addRefreshToken(CLIENT_ID, PRINCIPAL_ID);
+
+        final Set<String> found = new HashSet<>();
+        String afterId = null;
+        int pages = 0;
+        Collection<AccessToken> page;
+        do {
+            page = tokenRegistry.getClientTokens(CLIENT_ID, afterId, 2, AccessToken.class);
+            for (final AccessToken token : page) {
+                if (afterId != null) {
+                    assertTrue(token.getId().compareTo(afterId) > 0);
+                }
+                afterId = token.getId();
+                assertTrue(found.add(afterId));
+            }
+            pages++;
+        } while (page.size() == 2);
+
+        assertEquals(expected, found);
+        assertEquals(3, pages);
+        assertEquals(1, tokenRegistry.getClientTokens(CLIENT_ID, null, 2, RefreshToken.class).size());
+    }
+
+    @Test
+    public void verifyGetClientPrincipalTokens() throws Exception {
+        final RefreshToken refreshToken = addRefreshToken(CLIENT_ID, PRINCIPAL_ID);
+        addOnlineAccessToken(CLIENT_ID, PRINCIPAL_ID, SCOPES);
+        addOfflineAccessToken(refreshToken);
+        addOnlineAccessToken(CLIENT_ID, OTHER_PRINCIPAL_ID, SCOPES);
+
+        assertEquals(2, tokenRegistry.getClientPrincipalTokens(CLIENT_ID, PRINCIPAL_ID, AccessToken.class).size());
+        assertEquals(
+                1,
+                tokenRegistry.getClientPrincipalTokens(CLIENT_ID, PRINCIPAL_ID, TokenType.ONLINE, AccessToken.class)
+                        .size()
+        );
+        assertEquals(
+                1,
+                tokenRegistry.getClientPrincipalTokens(CLIENT_ID, PRINCIPAL_ID, TokenType.OFFLINE, AccessToken.class)
+                        .size()
+        );
+        assertEquals(1, tokenRegistry.getClientPrincipalTokens(CLIENT_ID, PRINCIPAL_ID, RefreshToken.class).size());
+    }
+
+    @Test
+    public void verifyGetPrincipalTokens() throws Exception {
+        addOnlineAccessToken(CLIENT_ID, PRINCIPAL_ID, SCOPES);
+        addOnlineAccessToken(OTHER_CLIENT_ID, PRINCIPAL_ID, SCOPES);
+        addOnlineAccessToken(CLIENT_ID, OTHER_PRINCIPAL_ID, SCOPES);
+
+        assertEquals(2, tokenRegistry.getPrincipalTokens(PRINCIPAL_ID, AccessToken.class).size());
+        assertEquals(0, tokenRegistry.getPrincipalTokens(PRINCIPAL_ID, RefreshToken.class).size());
+    }
+
+    @Test
+    public void verifyIsToken() throws Exception {
+        addOnlineAccessToken(CLIENT_ID, PRINCIPAL_ID, SCOPES);
+        addRefreshToken(CLIENT_ID, PRINCIPAL_ID);
+
+        final Set<String> sameScopes = new HashSet<>(Arrays.asList("osf.full_write", "osf.full_read"));
+        assertTrue(tokenRegistry.isToken(TokenType.ONLINE, CLIENT_ID, PRINCIPAL_ID, sameScopes, AccessToken.class));
+        assertTrue(tokenRegistry.isToken(CLIENT_ID, PRINCIPAL_ID, sameScopes, AccessToken.class));
+        assertTrue(tokenRegistry.isToken(CLIENT_ID, PRINCIPAL_ID, SCOPES, RefreshToken.class));
+
+        assertFalse(tokenRegistry.isToken(TokenType.OFFLINE, CLIENT_ID, PRINCIPAL_ID, SCOPES, AccessToken.class));
+        assertFalse(tokenRegistry.isToken(
+                TokenType.ONLINE,
+                CLIENT_ID,
+                PRINCIPAL_ID,
+                Collections.singleton("osf.full_read"),
+                AccessToken.class
+        ));
+        assertFalse(tokenRegistry.isToken(TokenType.ONLINE, OTHER_CLIENT_ID, PRINCIPAL_ID, SCOPES, AccessToken.class));
+        assertFalse(tokenRegistry.isToken(TokenType.ONLINE, CLIENT_ID, OTHER_PRINCIPAL_ID, SCOPES, AccessToken.class));
+    }
+
+    @Test
+    public void verifyIsTokenIgnoresExpiredTokens() throws Exception {
+        final AccessTokenImpl accessToken = newOnlineAccessToken(CLIENT_ID, PRINCIPAL_ID, SCOPES);
+        accessToken.setExpirationDate(System.currentTimeMillis() - 1000);
+        tokenRegistry.addToken(accessToken);
+        flush();
+        assertFalse(tokenRegistry.isToken(TokenType.ONLINE, CLIENT_ID, PRINCIPAL_ID, SCOPES, AccessToken.class));
+
+        accessToken.setExpirationDate(System.currentTimeMillis() + 60000);
+        tokenRegistry.updateToken(accessToken);
+        flush();
+        assertTrue(tokenRegistry.isToken(TokenType.ONLINE, CLIENT_ID, PRINCIPAL_ID, SCOPES, AccessToken.class));
+    }
+
+    @Test
+    public void verifyGetExpiredTokens() throws Exception {
+        final long now = System.currentTimeMillis();
+        final AccessToken oldest = addOnlineAccessToken(CLIENT_ID, PRINCIPAL_ID, SCOPES, now - 3000);
+        final AccessToken expired = addOnlineAccessToken(CLIENT_ID, PRINCIPAL_ID, SCOPES, now - 2000);
+        final AccessToken otherExpired = addOnlineAccessToken(CLIENT_ID, OTHER_PRINCIPAL_ID, SCOPES, now - 2000);
+        addOnlineAccessToken(CLIENT_ID, PRINCIPAL_ID, SCOPES, now + 60000);
+        addOnlineAccessToken(CLIENT_ID, PRINCIPAL_ID, SCOPES);
+        addRefreshToken(CLIENT_ID, PRINCIPAL_ID);
+
+        final List<AccessToken> first
+                = new ArrayList<>(tokenRegistry.getExpiredTokens(now, null, 2, AccessToken.class));
+        assertEquals(2, first.size());
+        assertEquals(oldest.getId(), first.get(0).getId());
+
+        final Collection<AccessToken> second
+                = tokenRegistry.getExpiredTokens(now, first.get(1), 2, AccessToken.class);
+        assertEquals(1, second.size());
+
+        final Set<String> ids = new HashSet<>();
+        for (final AccessToken token : first) {
+            ids.add(token.getId());
+        }
+        ids.add(second.iterator().next().getId());
+        assertEquals(new HashSet<>(Arrays.asList(oldest.getId(), expired.getId(), otherExpired.getId())), ids);
+        assertEquals(0, tokenRegistry.getExpiredTokens(now, null, 2, RefreshToken.class).size());
+    }
+
+    @Test
+    public void verifyGetPrincipalClientScopes() throws Exception {
+        addOnlineAccessToken(CLIENT_ID, PRINCIPAL_ID, Collections.singleton("osf.users.email"));
+        addRefreshToken(CLIENT_ID, PRINCIPAL_ID);
+        addOnlineAccessToken(OTHER_CLIENT_ID, PRINCIPAL_ID, Collections.singleton("osf.full_read"));
+        addOnlineAccessToken(OTHER_CLIENT_ID, OTHER_PRINCIPAL_ID, SCOPES);
+        addOnlineAccessToken(null, PRINCIPAL_ID, SCOPES);
+        addAuthorizationCode(OTHER_CLIENT_ID, PRINCIPAL_ID);
+
+        final Map<String, Set<String>> clientScopes = tokenRegistry.getPrincipalClientScopes(PRINCIPAL_ID);
+        assertEquals(2, clientScopes.size());
+        assertEquals(
+                new HashSet<>(Arrays.asList("osf.full_read", "osf.full_write", "osf.users.email")),
+                clientScopes.get(CLIENT_ID)
+        );
+        assertEquals(Collections.singleton("osf.full_read"), clientScopes.get(OTHER_CLIENT_ID));
+        assertTrue(tokenRegistry.getPrincipalClientScopes("principal-unknown").isEmpty());
+    }
+
+    @Test
+    public void verifyGetPrincipalCount() throws Exception {
+        addOnlineAccessToken(CLIENT_ID, PRINCIPAL_ID, SCOPES);
+        addRefreshToken(CLIENT_ID, PRINCIPAL_ID);
+        addRefreshToken(CLIENT_ID, OTHER_PRINCIPAL_ID);
+        addAuthorizationCode(OTHER_CLIENT_ID, PRINCIPAL_ID);
+
+        assertEquals(Integer.valueOf(2), tokenRegistry.getPrincipalCount(CLIENT_ID));
+        assertEquals(Integer.valueOf(0), tokenRegistry.getPrincipalCount(OTHER_CLIENT_ID));
+    }
+
+    @Test
+    public void verifyDeleteTicketRemovesTokens() throws Exception {
+        final AccessToken accessToken = addOnlineAccessToken(CLIENT_ID, PRINCIPAL_ID, SCOPES);
+        final AccessToken otherAccessToken = addOnlineAccessToken(CLIENT_ID, OTHER_PRINCIPAL_ID, SCOPES);
+
+        deleteTicket(accessToken.getTicket().getId());
+
+        assertNull(tokenRegistry.getToken(accessToken.getId(), AccessToken.class));
+        assertNotNull(tokenRegistry.getToken(otherAccessToken.getId(), AccessToken.class));
+        assertFalse(tokenRegistry.isToken(TokenType.ONLINE, CLIENT_ID, PRINCIPAL_ID, SCOPES, AccessToken.class));
+        assertEquals(Integer.valueOf(1), tokenRegistry.getPrincipalCount(CLIENT_ID));
+    }
+
+    @Test
+    public void verifyDeleteGrantingTicketRemovesTokensOfServiceTickets() throws Exception {
+        final RefreshToken refreshToken = addRefreshToken(CLIENT_ID, PRINCIPAL_ID);
+        final AccessToken offlineAccessToken = addOfflineAccessToken(refreshToken);
+        final AuthorizationCode authorizationCode = addAuthorizationCode(CLIENT_ID, PRINCIPAL_ID);
+
+        deleteTicket(refreshToken.getTicketGrantingTicket().getId());
+
+        assertNull(tokenRegistry.getToken(refreshToken.getId(), RefreshToken.class));
+        assertNull(tokenRegistry.getToken(offlineAccessToken.getId(), AccessToken.class));
+        assertEquals(0, tokenRegistry.getClientPrincipalTokens(CLIENT_ID, PRINCIPAL_ID, AccessToken.class).size());
+        assertNotNull(tokenRegistry.getToken(authorizationCode.getId(), AuthorizationCode.class));
+
+        deleteTicket(authorizationCode.getServiceTicket().getGrantingTicket().getId());
+        assertNull(tokenRegistry.getToken(authorizationCode.getId(), AuthorizationCode.class));
+    }
+
+    @Test
+    public void verifyDeleteTicketsRemovesTokens() throws Exception {
+        final RefreshToken refreshToken = addRefreshToken(CLIENT_ID, PRINCIPAL_ID);
+        final AccessToken offlineAccessToken = addOfflineAccessToken(refreshToken);
+        final AccessToken onlineAccessToken = addOnlineAccessToken(CLIENT_ID, PRINCIPAL_ID, SCOPES);
+        final AccessToken otherAccessToken = addOnlineAccessToken(CLIENT_ID, OTHER_PRINCIPAL_ID, SCOPES);
+
+        tokenRegistry.deleteTickets(Arrays.asList(
+                refreshToken.getTicketGrantingTicket().getId(),
+                onlineAccessToken.getTicketGrantingTicket().getId()
+        ));
+        flush();
+
+        assertNull(tokenRegistry.getToken(refreshToken.getId(), RefreshToken.class));
+        assertNull(tokenRegistry.getToken(offlineAccessToken.getId(), AccessToken.class));
+        assertNull(tokenRegistry.getToken(onlineAccessToken.getId(), AccessToken.class));
+        assertNotNull(tokenRegistry.getToken(otherAccessToken.getId(), AccessToken.class));
+        assertEquals(0, tokenRegistry.getClientPrincipalTokens(CLIENT_ID, PRINCIPAL_ID, AccessToken.class).size());
+        assertEquals(Integer.valueOf(1), tokenRegistry.getPrincipalCount(CLIENT_ID));
+        assertEquals(Integer.valueOf(0), tokenRegistry.deleteTickets(Collections.<String>emptySet()));
+    }
+
+    private TicketGrantingTicket newTicketGrantingTicket(final String principalId) {
+        final AuthenticationHandler authenticationHandler = mock(AuthenticationHandler.class);
+        when(authenticationHandler.getName()).thenReturn("handler");
+        final CredentialMetaData credentialMetaData
+                = new BasicCredentialMetaData(new UsernamePasswordCredential(principalId, "password"));
+        final Authentication authentication = new DefaultAuthenticationBuilder(
+                new DefaultPrincipalFactory().createPrincipal(principalId)
+        )
+                .addCredential(credentialMetaData)
+                .addSuccess("handler", new DefaultHandlerResult(authenticationHandler, credentialMetaData))
+                .build();
+        final TicketGrantingTicket ticketGrantingTicket = new TicketGrantingTicketImpl(
+                "TGT-" + ++ticketCount,
+                authentication,
+                new NeverExpiresExpirationPolicy()
+        );
+        addTicket(ticketGrantingTicket);
+        return ticketGrantingTicket;
+    }
+
+    private ServiceTicket newServiceTicket(final TicketGrantingTicket ticketGrantingTicket) {
+        final ServiceTicket serviceTicket = ticketGrantingTicket.grantServiceTicket(
+                "ST-" + ++ticketCount,
+                SERVICE,
+                new NeverExpiresExpirationPolicy(),
+                false
+        );
+        addTicket(serviceTicket);
+        return serviceTicket;
+    }
+
+    private AccessTokenImpl newOnlineAccessToken(
+            final String clientId,
+            final String principalId,
+            final Set<String> scopes
+    ) {
+        return new AccessTokenImpl(
+                "AT-" + ++ticketCount,
+                TokenType.ONLINE,
+                clientId,
+                principalId,
+                newTicketGrantingTicket(principalId),
+                SERVICE,
+                null,
+                scopes
+        );
+    }
+
+    private AccessToken addOnlineAccessToken(final String clientId, final String principalId, final Set<String> scopes) {
+        return add(newOnlineAccessToken(clientId, principalId, scopes));
+    }
+
+    private AccessToken addOnlineAccessToken(
+            final String clientId,
+            final String principalId,
+            final Set<String> scopes,
+            final long expirationDate
+    ) {
+        final AccessTokenImpl accessToken = newOnlineAccessToken(clientId, principalId, scopes);
+        accessToken.setExpirationDate(expirationDate);
+        return add(accessToken);
+    }
+
+    private AccessToken addOfflineAccessToken(final RefreshToken refreshToken) {
+        return add(new AccessTokenImpl(
+                "AT-" + ++ticketCount,
+                TokenType.OFFLINE,
+                refreshToken.getClientId(),
+                refreshToken.getPrincipalId(),
+                null,
+                null,
+                newServiceTicket(refreshToken.getTicketGrantingTicket()),
+                refreshToken.getScopes()
+        ));
+    }
+
+    private RefreshToken addRefreshToken(final String clientId, final String principalId) {
+        return add(new RefreshTokenImpl(
+                "RT-" + ++ticketCount,
+                clientId,
+                principalId,
+                newTicketGrantingTicket(principalId),
+                SERVICE,
+                SCOPES
+        ));
+    }
+
+    private AuthorizationCode addAuthorizationCode(final String clientId, final String principalId) {
+        return add(new AuthorizationCodeImpl(
+                "AC-" + ++ticketCount,
+                TokenType.ONLINE,
+                clientId,
+                principalId,
+                newServiceTicket(newTicketGrantingTicket(principalId)),
+                SCOPES
+        ));
+    }
+
+    private <T extends Token> T add(final T token) {
+        tokenRegistry.addToken(token);
+        flush();
+        return token;
+    }
+}
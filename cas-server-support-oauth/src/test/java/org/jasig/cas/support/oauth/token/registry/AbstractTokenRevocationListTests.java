@@ -0,0 +1,72 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.cas.support.oauth.token.registry;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Contract tests of {@link TokenRevocationList} implementations.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public abstract class AbstractTokenRevocationListTests {
+
+    private static final long TIME_TO_LIVE = 60000;
+
+    private TokenRevocationList tokenRevocationList;
+
+    @Before
+    public void setUp() throws Exception {
+        tokenRevocationList = newTokenRevocationList();
+    }
+
+    /**
+     * Create the revocation list under test.
+     *
+     * @return the revocation list
+     * @throws Exception if the revocation list cannot be created
+     */
+    protected abstract TokenRevocationList newTokenRevocationList() throws Exception;
+
+    @Test
+    public void verifyRevoke() {
+        tokenRevocationList.revoke("AT-1", System.currentTimeMillis() + TIME_TO_LIVE);
+        assertTrue(tokenRevocationList.isRevoked("AT-1"));
+        assertFalse(tokenRevocationList.isRevoked("AT-2"));
+    }
+
+    @Test
+    public void verifyRevokeTwice() {
+        tokenRevocationList.revoke("AT-1", System.currentTimeMillis() + TIME_TO_LIVE);
+        tokenRevocationList.revoke("AT-1", System.currentTimeMillis() + TIME_TO_LIVE);
+        assertTrue(tokenRevocationList.isRevoked("AT-1"));
+    }
+
+    @Test
+    public void verifyExpiredTokenIsForgotten() {
+        tokenRevocationList.revoke("AT-1", System.currentTimeMillis() - 1);
+        tokenRevocationList.revoke("AT-2", System.currentTimeMillis() + TIME_TO_LIVE);
+        assertFalse(tokenRevocationList.isRevoked("AT-1"));
+        assertTrue(tokenRevocationList.isRevoked("AT-2"));
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.cas.support.oauth.token.registry;
+
+import org.jasig.cas.support.oauth.token.AccessToken;
+import org.jasig.cas.support.oauth.token.RefreshToken;
+import org.jasig.cas.ticket.ServiceTicket;
+import org.jasig.cas.ticket.TicketGrantingTicket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * This class tests the {@link CachingTokenRegistry} class.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public final class CachingTokenRegistryTests {
+
+    private static final String CLIENT_ID = "client";
+
+    private static final String TGT_ID = "TGT-1";
+
+    private static final String ST_ID = "ST-1";
+
+    private static final String ONLINE_TOKEN_ID = "AT-1";
+
+    private static final String OFFLINE_TOKEN_ID = "AT-2";
+
+    private TokenRegistry jpaTokenRegistry;
+
+    private CachingTokenRegistry cachingTokenRegistry;
+
+    private TicketGrantingTicket ticketGrantingTicket;
+
+    private AccessToken onlineAccessToken;
+
+    private AccessToken offlineAccessToken;
+
+    @Before
+    public void setUp() throws Exception {
+
+        ticketGrantingTicket = mock(TicketGrantingTicket.class);
+        when(ticketGrantingTicket.getId()).thenReturn(TGT_ID);
+
+        final ServiceTicket serviceTicket = mock(ServiceTicket.class);
+        when(serviceTicket.getId()).thenReturn(ST_ID);
+        when(serviceTicket.getGrantingTicket()).thenReturn(ticketGrantingTicket);
+
+        onlineAccessToken = mock(AccessToken.class);
+        when(onlineAccessToken.getId()).thenReturn(ONLINE_TOKEN_ID);
+        when(onlineAccessToken.getClientId()).thenReturn(CLIENT_ID);
+        when(onlineAccessToken.getTicket()).thenReturn(ticketGrantingTicket);
+
+        offlineAccessToken = mock(AccessToken.class);
+        when(offlineAccessToken.getId()).thenReturn(OFFLINE_TOKEN_ID);
+        when(offlineAccessToken.getTicket()).thenReturn(serviceTicket);
+
+        jpaTokenRegistry = mock(TokenRegistry.class);
+        when(jpaTokenRegistry.getToken(ONLINE_TOKEN_ID, AccessToken.class)).thenReturn(onlineAccessToken);
+        when(jpaTokenRegistry.getToken(OFFLINE_TOKEN_ID, AccessToken.class)).thenReturn(offlineAccessToken);
+
+        cachingTokenRegistry = new CachingTokenRegistry(jpaTokenRegistry, 60, 100);
+    }
+
+    @Test
+    public void verifyReadThrough() throws Exception {
+        assertSame(onlineAccessToken, cachingTokenRegistry.getToken(ONLINE_TOKEN_ID, AccessToken.class));
+        assertSame(onlineAccessToken, cachingTokenRegistry.getToken(ONLINE_TOKEN_ID, AccessToken.class));
+        verify(jpaTokenRegistry, times(1)).getToken(ONLINE_TOKEN_ID, AccessToken.class);
+    }
+
+    @Test
+    public void verifyUnknownTokenNotCached() throws Exception {
+        assertNull(cachingTokenRegistry.getToken("AT-0", AccessToken.class));
+        assertNull(cachingTokenRegistry.getToken("AT-0", AccessToken.class));
+        verify(jpaTokenRegistry, times(2)).getToken("AT-0", AccessToken.class);
+    }
+
+    @Test
+    public void verifyUnexpectedClassFallsThrough() throws Exception {
+        cachingTokenRegistry.getToken(ONLINE_TOKEN_ID, AccessToken.class);
+        assertNull(cachingTokenRegistry.getToken(ONLINE_TOKEN_ID, RefreshToken.class));
+        verify(jpaTokenRegistry, times(1)).getToken(ONLINE_TOKEN_ID, RefreshToken.class);
+    }
+
+    @Test
+    public void verifyExpiredTicketRevalidated() throws Exception {
+        cachingTokenRegistry.getToken(ONLINE_TOKEN_ID, AccessToken.class);
+        when(ticketGrantingTicket.isExpired()).thenReturn(true);
+        cachingTokenRegistry.getToken(ONLINE_TOKEN_ID, AccessToken.class);
+        verify(jpaTokenRegistry, times(2)).getToken(ONLINE_TOKEN_ID, AccessToken.class);
+    }
+
+    @Test
+    public void verifyDeleteTicketTokensEvictsGrantedTokens() throws Exception {
+        cachingTokenRegistry.getToken(ONLINE_TOKEN_ID, AccessToken.class);
+        cachingTokenRegistry.getToken(OFFLINE_TOKEN_ID, AccessToken.class);
+
+        cachingTokenRegistry.deleteTicketTokens(TGT_ID);
+        verify(jpaTokenRegistry).deleteTicketTokens(TGT_ID);
+
+        cachingTokenRegistry.getToken(ONLINE_TOKEN_ID, AccessToken.class);
+        cachingTokenRegistry.getToken(OFFLINE_TOKEN_ID, AccessToken.class);
+        verify(jpaTokenRegistry, times(2)).getToken(ONLINE_TOKEN_ID, AccessToken.class);
+        verify(jpaTokenRegistry, times(2)).getToken(OFFLINE_TOKEN_ID, AccessToken.class);
+    }
+
+    @Test
+    public void verifyDeleteTicketsEvictsGrantedTokens() throws Exception {
+        cachingTokenRegistry.getToken(ONLINE_TOKEN_ID, AccessToken.class);
+        cachingTokenRegistry.getToken(OFFLINE_TOKEN_ID, AccessToken.class);
+
+        cachingTokenRegistry.deleteTickets(Collections.singleton(TGT_ID));
+        verify(jpaTokenRegistry).deleteTickets(Collections.singleton(TGT_ID));
+
+        cachingTokenRegistry.getToken(ONLINE_TOKEN_ID, AccessToken.class);
+        cachingTokenRegistry.getToken(OFFLINE_TOKEN_ID, AccessToken.class);
+        verify(jpaTokenRegistry, times(2)).getToken(ONLINE_TOKEN_ID, AccessToken.class);
+        verify(jpaTokenRegistry, times(2)).getToken(OFFLINE_TOKEN_ID, AccessToken.class);
+    }
+
+    @Test
+    public void verifyPrincipalCountNotCachedByDefault() throws Exception {
+        when(jpaTokenRegistry.getPrincipalCount(CLIENT_ID)).thenReturn(3);
+        assertEquals(Integer.valueOf(3), cachingTokenRegistry.getPrincipalCount(CLIENT_ID));
+        assertEquals(Integer.valueOf(3), cachingTokenRegistry.getPrincipalCount(CLIENT_ID));
+        verify(jpaTokenRegistry, times(2)).getPrincipalCount(CLIENT_ID);
+    }
+
+    @Test
+    public void verifyPrincipalCountCachedAndEvictedOnRevocation() throws Exception {
+        cachingTokenRegistry = new CachingTokenRegistry(jpaTokenRegistry, 60, 100, 60);
+        when(jpaTokenRegistry.getPrincipalCount(CLIENT_ID)).thenReturn(3);
+        assertEquals(Integer.valueOf(3), cachingTokenRegistry.getPrincipalCount(CLIENT_ID));
+        assertEquals(Integer.valueOf(3), cachingTokenRegistry.getPrincipalCount(CLIENT_ID));
+        verify(jpaTokenRegistry, times(1)).getPrincipalCount(CLIENT_ID);
+
+        cachingTokenRegistry.getToken(ONLINE_TOKEN_ID, AccessToken.class);
+        cachingTokenRegistry.deleteTicketTokens(TGT_ID);
+        cachingTokenRegistry.getPrincipalCount(CLIENT_ID);
+        verify(jpaTokenRegistry, times(2)).getPrincipalCount(CLIENT_ID);
+    }
+
+    @Test
+    public void verifyPrincipalCountEvictedForUncachedToken() throws Exception {
+        cachingTokenRegistry = new CachingTokenRegistry(jpaTokenRegistry, 60, 100, 60);
+        when(jpaTokenRegistry.getPrincipalCount(CLIENT_ID)).thenReturn(3, 2);
+        assertEquals(Integer.valueOf(3), cachingTokenRegistry.getPrincipalCount(CLIENT_ID));
+
+        // The revoked token has never been read through the cache.
+        cachingTokenRegistry.deleteTickets(Collections.singleton(TGT_ID));
+        cachingTokenRegistry.clientTokensDeleted(CLIENT_ID);
+        assertEquals(Integer.valueOf(2), cachingTokenRegistry.getPrincipalCount(CLIENT_ID));
+        verify(jpaTokenRegistry, times(2)).getPrincipalCount(CLIENT_ID);
+        verify(jpaTokenRegistry).clientTokensDeleted(CLIENT_ID);
+    }
+}
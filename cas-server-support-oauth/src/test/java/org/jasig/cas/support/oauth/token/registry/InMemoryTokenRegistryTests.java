@@ -0,0 +1,235 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.cas.support.oauth.token.registry;
+
+import org.jasig.cas.support.oauth.token.AccessToken;
+import org.jasig.cas.support.oauth.token.AccessTokenImpl;
+import org.jasig.cas.support.oauth.token.TokenType;
+import org.jasig.cas.ticket.Ticket;
+import org.jasig.cas.ticket.TicketGrantingTicket;
+import org.jasig.cas.ticket.registry.DefaultTicketRegistry;
+import org.jasig.cas.ticket.registry.TicketRegistry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * This class tests the {@link InMemoryTokenRegistry} class.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public final class InMemoryTokenRegistryTests extends AbstractTokenRegistryTests {
+
+    private TicketRegistry ticketRegistry;
+
+    @Override
+    protected TokenRegistry newTokenRegistry() throws Exception {
+        ticketRegistry = new DefaultTicketRegistry();
+        final InMemoryTokenRegistry tokenRegistry = new InMemoryTokenRegistry();
+        tokenRegistry.setTicketRegistry(ticketRegistry);
+        return tokenRegistry;
+    }
+
+    @Override
+    protected void addTicket(final Ticket ticket) {
+        ticketRegistry.addTicket(ticket);
+    }
+
+    @Test
+    public void verifyDeleteTicketsDeletesTicketsFromTicketRegistry() throws Exception {
+        final InMemoryTokenRegistry tokenRegistry = new InMemoryTokenRegistry();
+        final TicketRegistry ticketRegistry = mock(TicketRegistry.class);
+        when(ticketRegistry.deleteTicket("TGT-1")).thenReturn(true);
+        tokenRegistry.setTicketRegistry(ticketRegistry);
+
+        final TicketGrantingTicket ticketGrantingTicket = mock(TicketGrantingTicket.class);
+        when(ticketGrantingTicket.getId()).thenReturn("TGT-1");
+        tokenRegistry.addToken(newAccessToken("AT-1", ticketGrantingTicket));
+
+        assertEquals(Integer.valueOf(1), tokenRegistry.deleteTickets(Arrays.asList("TGT-1", "TGT-2")));
+        verify(ticketRegistry).deleteTicket("TGT-1");
+        verify(ticketRegistry).deleteTicket("TGT-2");
+        assertNull(tokenRegistry.getToken("AT-1", AccessToken.class));
+    }
+
+    @Test
+    public void verifyCleanRemovesTokensOfExpiredTickets() throws Exception {
+        final InMemoryTokenRegistry tokenRegistry = new InMemoryTokenRegistry();
+
+        final TicketGrantingTicket expired = mock(TicketGrantingTicket.class);
+        when(expired.getId()).thenReturn("TGT-1");
+        when(expired.isExpired()).thenReturn(true);
+        final TicketGrantingTicket valid = mock(TicketGrantingTicket.class);
+        when(valid.getId()).thenReturn("TGT-2");
+
+        tokenRegistry.addToken(newAccessToken("AT-1", expired));
+        tokenRegistry.addToken(newAccessToken("AT-2", valid));
+
+        assertEquals(1, tokenRegistry.clean());
+        assertNull(tokenRegistry.getToken("AT-1", AccessToken.class));
+        assertNotNull(tokenRegistry.getToken("AT-2", AccessToken.class));
+        assertEquals(1, tokenRegistry.getClientTokens("client", AccessToken.class).size());
+        assertEquals(Integer.valueOf(1), tokenRegistry.getPrincipalCount("client"));
+    }
+
+    @Test
+    public void verifyGetExpiredTokensFollowsReplacedTokens() throws Exception {
+        final InMemoryTokenRegistry tokenRegistry = new InMemoryTokenRegistry();
+        final TicketGrantingTicket ticketGrantingTicket = mock(TicketGrantingTicket.class);
+        when(ticketGrantingTicket.getId()).thenReturn("TGT-1");
+        final long now = System.currentTimeMillis();
+
+        final AccessTokenImpl expired = (AccessTokenImpl) newAccessToken("AT-1", ticketGrantingTicket);
+        expired.setExpirationDate(now - 1000);
+        tokenRegistry.addToken(expired);
+        assertEquals(1, tokenRegistry.getExpiredTokens(now, null, 10, AccessToken.class).size());
+
+        final AccessTokenImpl renewed = (AccessTokenImpl) newAccessToken("AT-1", ticketGrantingTicket);
+        renewed.setExpirationDate(now + 60000);
+        tokenRegistry.updateToken(renewed);
+        assertEquals(0, tokenRegistry.getExpiredTokens(now, null, 10, AccessToken.class).size());
+        assertEquals(1, tokenRegistry.getExpiredTokens(now + 120000, null, 10, AccessToken.class).size());
+
+        tokenRegistry.deleteTicketTokens("TGT-1");
+        assertEquals(0, tokenRegistry.getExpiredTokens(now + 120000, null, 10, AccessToken.class).size());
+    }
+
+    @Test
+    public void verifyIndexesMatchTokensAfterConcurrentWrites() throws Exception {
+        final InMemoryTokenRegistry tokenRegistry = new InMemoryTokenRegistry();
+        final String[] clientIds = {"client-1", "client-2"};
+        final int tokenCount = 8;
+        // Each token id has its own ticket, so that deleting the ticket tokens removes a single token.
+        final TicketGrantingTicket[] ticketGrantingTickets = new TicketGrantingTicket[tokenCount];
+        for (int i = 0; i < tokenCount; i++) {
+            ticketGrantingTickets[i] = mock(TicketGrantingTicket.class);
+            when(ticketGrantingTickets[i].getId()).thenReturn("TGT-" + i);
+        }
+        final int threadCount = 8;
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            final long seed = t;
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    final Random random = new Random(seed);
+                    start.await();
+                    for (int i = 0; i < 20000; i++) {
+                        final int index = random.nextInt(tokenCount);
+                        final int operation = random.nextInt(3);
+                        if (operation == 2) {
+                            tokenRegistry.deleteTicketTokens("TGT-" + index);
+                            continue;
+                        }
+                        final AccessToken token = new AccessTokenImpl(
+                                "AT-" + index,
+                                TokenType.ONLINE,
+                                clientIds[random.nextInt(clientIds.length)],
+                                "principal-" + random.nextInt(4),
+                                ticketGrantingTickets[index],
+                                null,
+                                null,
+                                Collections.singleton("osf.full_read")
+                        );
+                        if (operation == 0) {
+                            tokenRegistry.addToken(token);
+                        } else {
+                            tokenRegistry.updateToken(token);
+                        }
+                    }
+                    return null;
+                }
+            }));
+        }
+        start.countDown();
+        for (final Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        final List<String> tokenIds = new ArrayList<>();
+        for (int i = 0; i < tokenCount; i++) {
+            tokenIds.add("AT-" + i);
+        }
+        final Collection<AccessToken> remaining = tokenRegistry.getTokens(tokenIds, AccessToken.class);
+        for (final String clientId : clientIds) {
+            final Set<String> expectedIds = new HashSet<>();
+            final Set<String> expectedPrincipals = new HashSet<>();
+            for (final AccessToken token : remaining) {
+                if (clientId.equals(token.getClientId())) {
+                    expectedIds.add(token.getId());
+                    expectedPrincipals.add(token.getPrincipalId());
+                }
+            }
+            final Set<String> indexedIds = new HashSet<>();
+            for (final AccessToken token : tokenRegistry.getClientTokens(clientId, AccessToken.class)) {
+                indexedIds.add(token.getId());
+            }
+            assertEquals(expectedIds, indexedIds);
+            assertEquals(Integer.valueOf(expectedPrincipals.size()), tokenRegistry.getPrincipalCount(clientId));
+        }
+
+        // Once every token is removed, nothing may be left in the indexes or in the counts.
+        for (int i = 0; i < tokenCount; i++) {
+            tokenRegistry.deleteTicketTokens("TGT-" + i);
+        }
+        for (final String clientId : clientIds) {
+            assertEquals(0, tokenRegistry.getClientTokens(clientId, AccessToken.class).size());
+            assertEquals(Integer.valueOf(0), tokenRegistry.getPrincipalCount(clientId));
+        }
+    }
+
+    private static AccessToken newAccessToken(final String id, final TicketGrantingTicket ticketGrantingTicket) {
+        return new AccessTokenImpl(
+                id,
+                TokenType.ONLINE,
+                "client",
+                "principal-" + id,
+                ticketGrantingTicket,
+                null,
+                null,
+                Collections.singleton("osf.full_read")
+        );
+    }
+}
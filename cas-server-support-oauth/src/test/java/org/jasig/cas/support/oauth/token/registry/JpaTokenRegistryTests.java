@@ -0,0 +1,145 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.cas.support.oauth.token.registry;
+
+import org.hibernate.dialect.HSQLDialect;
+
+import org.jasig.cas.ticket.Ticket;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import java.sql.Types;
+import java.util.Properties;
+
+/**
+ * This class tests the {@link JpaTokenRegistry} class against an in-memory HSQLDB database.
+ *
+ * Each test runs in a transaction which is rolled back afterwards.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public final class JpaTokenRegistryTests extends AbstractTokenRegistryTests {
+
+    private static EntityManagerFactory entityManagerFactory;
+
+    private EntityManager entityManager;
+
+    @BeforeClass
+    public static void setUpEntityManagerFactory() throws Exception {
+        entityManagerFactory = newEntityManagerFactory("oauth-tokens");
+    }
+
+    @AfterClass
+    public static void tearDownEntityManagerFactory() {
+        entityManagerFactory.close();
+    }
+
+    @Override
+    protected TokenRegistry newTokenRegistry() throws Exception {
+        entityManager = entityManagerFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+        final JpaTokenRegistry tokenRegistry = new JpaTokenRegistry();
+        ReflectionTestUtils.setField(tokenRegistry, "entityManager", entityManager);
+        return tokenRegistry;
+    }
+
+    @After
+    public void tearDown() {
+        entityManager.getTransaction().rollback();
+        entityManager.close();
+    }
+
+    @Override
+    protected void addTicket(final Ticket ticket) {
+        entityManager.persist(ticket);
+    }
+
+    @Override
+    protected void deleteTicket(final String ticketId) {
+        // As the JPA ticket registry does, delete the service tickets granted by the ticket before the ticket itself.
+        // The database then removes the tokens by CASCADE.
+        entityManager.flush();
+        entityManager
+                .createQuery("delete from ServiceTicketImpl s where s.id = :id or s.ticketGrantingTicket.id = :id")
+                .setParameter("id", ticketId)
+                .executeUpdate();
+        entityManager
+                .createQuery("delete from TicketGrantingTicketImpl t where t.id = :id")
+                .setParameter("id", ticketId)
+                .executeUpdate();
+        entityManager.clear();
+        super.deleteTicket(ticketId);
+    }
+
+    @Override
+    protected void flush() {
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    /**
+     * Create an entity manager factory of the ticket and token entities backed by a new in-memory HSQLDB database.
+     *
+     * @param databaseName the name of the in-memory database
+     * @return the entity manager factory
+     */
+    static EntityManagerFactory newEntityManagerFactory(final String databaseName) {
+        final DriverManagerDataSource dataSource
+                = new DriverManagerDataSource("jdbc:hsqldb:mem:" + databaseName, "sa", "");
+        dataSource.setDriverClassName("org.hsqldb.jdbcDriver");
+
+        final Properties properties = new Properties();
+        properties.put("hibernate.dialect", UnboundedLobHSQLDialect.class.getName());
+        properties.put("hibernate.hbm2ddl.auto", "create-drop");
+
+        final LocalContainerEntityManagerFactoryBean factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setPersistenceUnitName(databaseName);
+        factoryBean.setDataSource(dataSource);
+        factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factoryBean.setPackagesToScan("org.jasig.cas.ticket", "org.jasig.cas.support.oauth.token");
+        factoryBean.setJpaProperties(properties);
+        factoryBean.afterPropertiesSet();
+        return factoryBean.getObject();
+    }
+
+    /**
+     * HSQLDB dialect whose binary columns are not limited to the default length of 255, as the serialized tickets and
+     * services stored by CAS are larger. PostgreSQL {@code bytea} and large objects have no length limit either.
+     */
+    public static final class UnboundedLobHSQLDialect extends HSQLDialect {
+
+        /** Instantiate a new {@link UnboundedLobHSQLDialect}. */
+        public UnboundedLobHSQLDialect() {
+            super();
+            registerColumnType(Types.VARBINARY, "varbinary(1048576)");
+            registerColumnType(Types.BLOB, "blob");
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.cas.support.oauth.token.registry;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * This class tests the {@link JpaTokenRevocationList} class against an in-memory HSQLDB database.
+ *
+ * Each test runs in a transaction which is rolled back afterwards.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public final class JpaTokenRevocationListTests extends AbstractTokenRevocationListTests {
+
+    private static EntityManagerFactory entityManagerFactory;
+
+    private EntityManager entityManager;
+
+    @BeforeClass
+    public static void setUpEntityManagerFactory() throws Exception {
+        entityManagerFactory = JpaTokenRegistryTests.newEntityManagerFactory("oauth-revoked-tokens");
+    }
+
+    @AfterClass
+    public static void tearDownEntityManagerFactory() {
+        entityManagerFactory.close();
+    }
+
+    @Override
+    protected TokenRevocationList newTokenRevocationList() {
+        entityManager = entityManagerFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+        return newTokenRevocationList(entityManager);
+    }
+
+    @After
+    public void tearDown() {
+        entityManager.getTransaction().rollback();
+        entityManager.close();
+    }
+
+    @Test
+    public void verifyRevocationIsSeenByOtherNodes() {
+        final TokenRevocationList otherNode = newTokenRevocationList(entityManager);
+        assertFalse(otherNode.isRevoked("AT-1"));
+
+        newTokenRevocationList(entityManager).revoke("AT-1", System.currentTimeMillis() + 60000);
+        // The other node has just loaded its snapshot and only reloads it after the refresh interval.
+        assertFalse(otherNode.isRevoked("AT-1"));
+        ReflectionTestUtils.setField(otherNode, "snapshotTime", 0L);
+        assertTrue(otherNode.isRevoked("AT-1"));
+    }
+
+    private static TokenRevocationList newTokenRevocationList(final EntityManager entityManager) {
+        final JpaTokenRevocationList tokenRevocationList = new JpaTokenRevocationList();
+        ReflectionTestUtils.setField(tokenRevocationList, "entityManager", entityManager);
+        return tokenRevocationList;
+    }
+}
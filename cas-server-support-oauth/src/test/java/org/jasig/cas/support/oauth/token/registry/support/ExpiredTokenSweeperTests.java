@@ -0,0 +1,154 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.cas.support.oauth.token.registry.support;
+
+import com.codahale.metrics.MetricRegistry;
+
+import org.jasig.cas.support.oauth.token.AccessToken;
+import org.jasig.cas.support.oauth.token.Token;
+import org.jasig.cas.support.oauth.token.registry.TokenRegistry;
+import org.jasig.cas.ticket.TicketGrantingTicket;
+import org.jasig.cas.ticket.registry.support.LockingStrategy;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * This class tests the {@link ExpiredTokenSweeper} class.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public final class ExpiredTokenSweeperTests {
+
+    private TokenRegistry tokenRegistry;
+
+    private LockingStrategy lock;
+
+    private ExpiredTokenSweeper sweeper;
+
+    @Before
+    public void setUp() throws Exception {
+        tokenRegistry = mock(TokenRegistry.class);
+        lock = mock(LockingStrategy.class);
+        when(lock.acquire()).thenReturn(true);
+        sweeper = new ExpiredTokenSweeper(tokenRegistry);
+        sweeper.setLock(lock);
+        sweeper.setBatchSize(2);
+    }
+
+    @Test
+    public void verifySweepInBatches() throws Exception {
+        final AccessToken first = newAccessToken("AT-1", "TGT-1", true);
+        final AccessToken second = newAccessToken("AT-2", "TGT-2", false);
+        final AccessToken third = newAccessToken("AT-3", "TGT-3", true);
+        when(tokenRegistry.getExpiredTokens(anyLong(), (Token) isNull(), eq(2), eq(AccessToken.class)))
+                .thenReturn(Arrays.asList(first, second));
+        when(tokenRegistry.getExpiredTokens(anyLong(), eq(second), eq(2), eq(AccessToken.class)))
+                .thenReturn(Collections.singletonList(third));
+
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        sweeper.setMetricRegistry(metricRegistry);
+
+        assertEquals(2, sweeper.sweep());
+        verify(tokenRegistry).deleteTickets(Collections.singleton("TGT-1"));
+        verify(tokenRegistry).deleteTickets(Collections.singleton("TGT-3"));
+        verify(lock).release();
+        assertEquals(
+                2,
+                metricRegistry.meter(MetricRegistry.name(ExpiredTokenSweeper.class, "tokens")).getCount()
+        );
+    }
+
+    @Test
+    public void verifySweepBoundedByMaxBatchesPerRun() throws Exception {
+        final AccessToken first = newAccessToken("AT-1", "TGT-1", true);
+        final AccessToken second = newAccessToken("AT-2", "TGT-2", true);
+        when(tokenRegistry.getExpiredTokens(anyLong(), (Token) isNull(), eq(2), eq(AccessToken.class)))
+                .thenReturn(Arrays.asList(first, second));
+        sweeper.setMaxBatchesPerRun(1);
+
+        assertEquals(2, sweeper.sweep());
+        verify(tokenRegistry).deleteTickets(new HashSet<>(Arrays.asList("TGT-1", "TGT-2")));
+        verify(tokenRegistry, never()).getExpiredTokens(anyLong(), eq(second), eq(2), eq(AccessToken.class));
+    }
+
+    @Test
+    public void verifySweepResumesAfterLiveTokensBeyondRunBudget() throws Exception {
+        final AccessToken firstLive = newAccessToken("AT-1", "TGT-1", false);
+        final AccessToken secondLive = newAccessToken("AT-2", "TGT-2", false);
+        final AccessToken thirdLive = newAccessToken("AT-3", "TGT-3", false);
+        final AccessToken fourthLive = newAccessToken("AT-4", "TGT-4", false);
+        final AccessToken expired = newAccessToken("AT-5", "TGT-5", true);
+        when(tokenRegistry.getExpiredTokens(anyLong(), (Token) isNull(), eq(2), eq(AccessToken.class)))
+                .thenReturn(Arrays.asList(firstLive, secondLive));
+        when(tokenRegistry.getExpiredTokens(anyLong(), eq(secondLive), eq(2), eq(AccessToken.class)))
+                .thenReturn(Arrays.asList(thirdLive, fourthLive));
+        when(tokenRegistry.getExpiredTokens(anyLong(), eq(fourthLive), eq(2), eq(AccessToken.class)))
+                .thenReturn(Collections.singletonList(expired));
+        sweeper.setMaxBatchesPerRun(1);
+
+        // The live tokens exhaust the budget of the first two runs, the third one reaches the expired token.
+        assertEquals(0, sweeper.sweep());
+        assertEquals(0, sweeper.sweep());
+        assertEquals(1, sweeper.sweep());
+        verify(tokenRegistry).deleteTickets(Collections.singleton("TGT-5"));
+
+        // Having reached the end, the next run starts over from the beginning.
+        assertEquals(0, sweeper.sweep());
+        verify(tokenRegistry, times(2))
+                .getExpiredTokens(anyLong(), (Token) isNull(), eq(2), eq(AccessToken.class));
+    }
+
+    @Test
+    public void verifySweepAbortedWithoutLock() throws Exception {
+        when(lock.acquire()).thenReturn(false);
+
+        assertEquals(0, sweeper.sweep());
+        verify(tokenRegistry, never()).getExpiredTokens(anyLong(), any(Token.class), eq(2), eq(AccessToken.class));
+        verify(tokenRegistry, never()).deleteTickets(anyCollectionOf(String.class));
+        verify(lock, never()).release();
+    }
+
+    private static AccessToken newAccessToken(final String id, final String ticketId, final boolean expired) {
+        final TicketGrantingTicket ticketGrantingTicket = mock(TicketGrantingTicket.class);
+        when(ticketGrantingTicket.getId()).thenReturn(ticketId);
+        when(ticketGrantingTicket.isExpired()).thenReturn(expired);
+        final AccessToken accessToken = mock(AccessToken.class);
+        when(accessToken.getId()).thenReturn(id);
+        when(accessToken.getTicket()).thenReturn(ticketGrantingTicket);
+        return accessToken;
+    }
+}
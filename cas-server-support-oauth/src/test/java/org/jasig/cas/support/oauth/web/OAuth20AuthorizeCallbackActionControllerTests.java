@@ -210,6 +210,7 @@ public final class OAuth20AuthorizeCallbackActionControllerTests {
                 scopes
         )).thenReturn(authorizationCode);
         when(centralOAuthService.grantOnlineAccessToken(authorizationCode)).thenReturn(accessToken);
+        when(centralOAuthService.getAccessTokenValue(accessToken)).thenReturn(AT_ID);
 
         final MockHttpServletRequest mockRequest
                 = new MockHttpServletRequest("GET", CONTEXT + OAuthConstants.CALLBACK_AUTHORIZE_ACTION_URL);
@@ -278,6 +279,7 @@ public final class OAuth20AuthorizeCallbackActionControllerTests {
                 scopes
         )).thenReturn(authorizationCode);
         when(centralOAuthService.grantOnlineAccessToken(authorizationCode)).thenReturn(accessToken);
+        when(centralOAuthService.getAccessTokenValue(accessToken)).thenReturn(AT_ID);
 
         final MockHttpServletRequest mockRequest
                 = new MockHttpServletRequest("GET", CONTEXT + OAuthConstants.CALLBACK_AUTHORIZE_ACTION_URL);
@@ -29,20 +29,34 @@ import org.jasig.cas.support.oauth.OAuthConstants;
 import org.jasig.cas.support.oauth.services.OAuthRegisteredService;
 import org.jasig.cas.support.oauth.token.AccessToken;
 import org.jasig.cas.support.oauth.token.RefreshToken;
+import org.jasig.cas.support.oauth.token.Token;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import org.junit.Test;
 
+import org.mockito.ArgumentCaptor;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.web.servlet.ModelAndView;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedList;
+import java.util.List;
 
 /**
  * This class tests the {@link OAuth20RevokeClientTokensController} class.
@@ -201,8 +215,10 @@ public final class OAuth20RevokeClientTokensControllerTests {
         final CentralOAuthService centralOAuthService = mock(CentralOAuthService.class);
         final Collection<AccessToken> accessTokens = new LinkedList<>();
         final Collection<RefreshToken> refreshTokens = new LinkedList<>();
-        when(centralOAuthService.getClientAccessTokens(CLIENT_ID)).thenReturn(accessTokens);
-        when(centralOAuthService.getClientRefreshTokens(CLIENT_ID)).thenReturn(refreshTokens);
+        when(centralOAuthService.getClientAccessTokens(eq(CLIENT_ID), anyString(), anyInt()))
+                .thenReturn(accessTokens);
+        when(centralOAuthService.getClientRefreshTokens(eq(CLIENT_ID), anyString(), anyInt()))
+                .thenReturn(refreshTokens);
 
         final OAuthRegisteredService service = new OAuthRegisteredService();
         service.setClientId(CLIENT_ID);
@@ -226,4 +242,50 @@ public final class OAuth20RevokeClientTokensControllerTests {
         assertNull(mockResponse.getContentType());
         assertEquals("null", mockResponse.getContentAsString());
     }
+
+    /** Test that the tokens of the client are revoked page by page, each page continuing after the previous one. */
+    @Test
+    public void verifyOKPaginated() throws Exception {
+
+        final CentralOAuthService centralOAuthService = mock(CentralOAuthService.class);
+        final List<RefreshToken> firstPage = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            final RefreshToken token = mock(RefreshToken.class);
+            when(token.getId()).thenReturn(String.format("RT-%04d", i));
+            firstPage.add(token);
+        }
+        final RefreshToken last = mock(RefreshToken.class);
+        when(last.getId()).thenReturn("RT-0500");
+        when(centralOAuthService.getClientRefreshTokens(eq(CLIENT_ID), isNull(String.class), anyInt()))
+                .thenReturn(firstPage);
+        when(centralOAuthService.getClientRefreshTokens(eq(CLIENT_ID), eq("RT-0499"), anyInt()))
+                .thenReturn(Collections.singletonList(last));
+        when(centralOAuthService.getClientAccessTokens(eq(CLIENT_ID), anyString(), anyInt()))
+                .thenReturn(new LinkedList<AccessToken>());
+
+        final OAuthRegisteredService service = new OAuthRegisteredService();
+        service.setClientId(CLIENT_ID);
+        service.setClientSecret(CLIENT_SECRET);
+        when(centralOAuthService.getRegisteredService(CLIENT_ID)).thenReturn(service);
+
+        final MockHttpServletRequest mockRequest
+                = new MockHttpServletRequest("POST", CONTEXT + OAuthConstants.REVOKE_URL);
+        mockRequest.setParameter(OAuthConstants.CLIENT_ID, CLIENT_ID);
+        mockRequest.setParameter(OAuthConstants.CLIENT_SECRET, CLIENT_SECRET);
+
+        final MockHttpServletResponse mockResponse = new MockHttpServletResponse();
+
+        final OAuth20WrapperController oauth20WrapperController = new OAuth20WrapperController();
+        oauth20WrapperController.setCentralOAuthService(centralOAuthService);
+        oauth20WrapperController.afterPropertiesSet();
+
+        oauth20WrapperController.handleRequest(mockRequest, mockResponse);
+        assertEquals(HttpStatus.SC_NO_CONTENT, mockResponse.getStatus());
+
+        final ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(centralOAuthService, times(2)).revokeTokens(captor.capture());
+        assertEquals(500, captor.getAllValues().get(0).size());
+        assertEquals(Collections.singletonList("RT-0500"), captor.getAllValues().get(1));
+        verify(centralOAuthService, never()).revokeToken(any(Token.class));
+    }
 }
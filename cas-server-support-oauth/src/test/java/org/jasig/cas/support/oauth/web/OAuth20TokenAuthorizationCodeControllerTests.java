@@ -427,6 +427,7 @@ public final class OAuth20TokenAuthorizationCodeControllerTests {
         when(centralOAuthService.getRegisteredService(CLIENT_ID)).thenReturn(service);
         when(centralOAuthService.grantOfflineRefreshToken(authorizationCode, REDIRECT_URI)).thenReturn(refreshToken);
         when(centralOAuthService.grantOfflineAccessToken(refreshToken)).thenReturn(accessToken);
+        when(centralOAuthService.getAccessTokenValue(accessToken)).thenReturn(AT_ID);
 
         final MockHttpServletRequest mockRequest
                 = new MockHttpServletRequest("POST", CONTEXT + OAuthConstants.TOKEN_URL);
@@ -486,6 +487,7 @@ public final class OAuth20TokenAuthorizationCodeControllerTests {
         when(centralOAuthService.getToken(CODE, AuthorizationCode.class)).thenReturn(authorizationCode);
         when(centralOAuthService.getRegisteredService(CLIENT_ID)).thenReturn(service);
         when(centralOAuthService.grantOnlineAccessToken(authorizationCode)).thenReturn(accessToken);
+        when(centralOAuthService.getAccessTokenValue(accessToken)).thenReturn(AT_ID);
 
         final MockHttpServletRequest mockRequest
                 = new MockHttpServletRequest("POST", CONTEXT + OAuthConstants.TOKEN_URL);
@@ -587,6 +589,7 @@ public final class OAuth20TokenAuthorizationCodeControllerTests {
         when(centralOAuthService.getToken(CODE, AuthorizationCode.class)).thenReturn(authorizationCode);
         when(centralOAuthService.getRegisteredService(CLIENT_ID)).thenReturn(service);
         when(centralOAuthService.grantOnlineAccessToken(authorizationCode)).thenReturn(accessToken);
+        when(centralOAuthService.getAccessTokenValue(accessToken)).thenReturn(AT_ID);
 
         final MockHttpServletRequest mockRequest
                 = new MockHttpServletRequest("POST", CONTEXT + OAuthConstants.TOKEN_URL);
@@ -653,6 +656,7 @@ public final class OAuth20TokenAuthorizationCodeControllerTests {
         when(centralOAuthService.getRegisteredService(CLIENT_ID)).thenReturn(service);
         when(centralOAuthService.grantOfflineRefreshToken(authorizationCode, REGEX_REDIRECT_URI)).thenReturn(refreshToken);
         when(centralOAuthService.grantOfflineAccessToken(refreshToken)).thenReturn(accessToken);
+        when(centralOAuthService.getAccessTokenValue(accessToken)).thenReturn(AT_ID);
 
         final MockHttpServletRequest mockRequest
                 = new MockHttpServletRequest("POST", CONTEXT + OAuthConstants.TOKEN_URL);
@@ -217,6 +217,7 @@ public final class OAuth20TokenRefreshTokenControllerTests {
         when(centralOAuthService.getToken(RT_ID, RefreshToken.class)).thenReturn(refreshToken);
         when(centralOAuthService.getRegisteredService(CLIENT_ID)).thenReturn(service);
         when(centralOAuthService.grantOfflineAccessToken(refreshToken)).thenReturn(accessToken);
+        when(centralOAuthService.getAccessTokenValue(accessToken)).thenReturn(AT_ID);
 
         final MockHttpServletRequest mockRequest
                 = new MockHttpServletRequest("POST", CONTEXT + OAuthConstants.TOKEN_URL);
@@ -16,13 +16,10 @@
 package io.cos.cas.adaptors.postgres.daos;
 
 import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkApiOauth2Application;
-import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkApiOauth2PersonalAccessToken;
+import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkApiOauth2PersonalAccessTokenProjection;
 import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkApiOauth2Scope;
-import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkApiOauth2TokenScope;
-import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkGuid;
 import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkInstitution;
-import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkTimeBasedOneTimePassword;
-import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkUser;
+import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkLoginProjection;
 
 import java.util.List;
 
@@ -35,20 +32,13 @@ import java.util.List;
 public interface OpenScienceFrameworkDao {
 
     /**
-     * Find one user by user's emails, including username.
+     * Find the user by user's emails, including username, together with the user's TOTP settings and GUID in one
+     * query. The user of the username takes precedence over the one of an OSF email.
      *
      * @param email the user's email
-     * @return OpenScienceFrameworkUser or null
+     * @return OpenScienceFrameworkLoginProjection or null
      */
-    OpenScienceFrameworkUser findOneUserByEmail(final String email);
-
-    /**
-     * Find one "time based one-time password" by owner.
-     *
-     * @param ownerId the owner id
-     * @return OpenScienceFrameworkTimeBasedOneTimePassword or null
-     */
-    OpenScienceFrameworkTimeBasedOneTimePassword findOneTimeBasedOneTimePasswordByOwnerId(final Integer ownerId);
+    OpenScienceFrameworkLoginProjection findOneLoginProjectionByEmail(final String email);
 
     /**
      * Find one institution by institution id, a.k.a `objectId` @"_id".
@@ -66,28 +56,31 @@ public interface OpenScienceFrameworkDao {
     List<OpenScienceFrameworkInstitution> findAllInstitutions();
 
     /**
-     * Find one scope by scope name.
+     * Find all the institutions, regardless of their deletion status and delegation protocol.
      *
-     * @param name the scope name
-     * @return OpenScienceFrameworkApiOauth2Scope or null
+     * @return a list of institutions or null
      */
-    OpenScienceFrameworkApiOauth2Scope findOneScopeByName(final String name);
+    List<OpenScienceFrameworkInstitution> findAllInstitutionsIncludingDeleted();
 
     /**
-     * Find one scope by the scope's primary key id.
+     * Find one scope by scope name.
      *
-     * @param scopePk the scope's primary key
+     * @param name the scope name
      * @return OpenScienceFrameworkApiOauth2Scope or null
      */
-    OpenScienceFrameworkApiOauth2Scope findOneScopeByScopePk(final Integer scopePk);
+    OpenScienceFrameworkApiOauth2Scope findOneScopeByName(final String name);
 
     /**
-     * Find one personal access token by token id (i.e the column token_id, not the primary key id).
+     * Find one active personal access token by token id, together with the GUID of its owner and the names of its
+     * scopes, in one query.
      *
      * @param tokenId the token id
-     * @return OpenScienceFrameworkApiOauth2PersonalAccessToken or null
+     * @return OpenScienceFrameworkApiOauth2PersonalAccessTokenProjection or null if there is no such active token
+     * @throws javax.persistence.PersistenceException if the token could not be looked up
      */
-    OpenScienceFrameworkApiOauth2PersonalAccessToken findOnePersonalAccessTokenByTokenId(final String tokenId);
+    OpenScienceFrameworkApiOauth2PersonalAccessTokenProjection findOnePersonalAccessTokenProjectionByTokenId(
+            final String tokenId
+    );
 
     /**
      * Find a list of active oauth applications.
@@ -96,19 +89,4 @@ public interface OpenScienceFrameworkDao {
      */
     List<OpenScienceFrameworkApiOauth2Application> findOauthApplications();
 
-    /**
-     * Find the guid object associated with the user.
-     *
-     * @param user the user
-     * @return the GUID object
-     */
-    OpenScienceFrameworkGuid findGuidByUser(final OpenScienceFrameworkUser user);
-
-    /**
-     * Fine all the token-scope relationships by the token's primary key.
-     *
-     * @param tokenPk the token's primary key
-     * @return OpenScienceFrameworkApiOauth2TokenScope List or null
-     */
-    List<OpenScienceFrameworkApiOauth2TokenScope> findAllTokenScopesByTokenPk(final Integer tokenPk);
 }
@@ -16,21 +16,28 @@
 package io.cos.cas.adaptors.postgres.daos;
 
 import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkApiOauth2Application;
-import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkApiOauth2PersonalAccessToken;
+import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkApiOauth2PersonalAccessTokenProjection;
 import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkApiOauth2Scope;
-import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkApiOauth2TokenScope;
-import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkEmail;
-import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkGuid;
+import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkDjangoContentTypeId;
 import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkInstitution;
-import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkTimeBasedOneTimePassword;
+import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkLoginProjection;
 import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkUser;
 
+import org.hibernate.annotations.QueryHints;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.beans.factory.InitializingBean;
+
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.PersistenceException;
 import javax.persistence.TypedQuery;
 import javax.validation.constraints.NotNull;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * The Open Science Framework Data Access Object Implementation.
@@ -38,13 +45,24 @@ import java.util.List;
  * @author Longze Chen
  * @since 4.1.0
  */
-public class OpenScienceFrameworkDaoImpl implements OpenScienceFrameworkDao {
+public class OpenScienceFrameworkDaoImpl implements OpenScienceFrameworkDao, InitializingBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OpenScienceFrameworkDaoImpl.class);
+
+    /** The Django application label of the OSF user model. */
+    private static final String USER_APP_LABEL = "osf";
+
+    /** The Django model name of the OSF user model. */
+    private static final String USER_MODEL = "osfuser";
 
     /** The entity manager for persistenceUnitOsf. */
     @NotNull
     @PersistenceContext(unitName = "persistenceUnitOsf")
     private EntityManager entityManager;
 
+    /** The Django content type id of the OSF user model, which GUIDs of users refer to. */
+    private volatile Integer userContentTypeId;
+
     /** Default Constructor. */
     public OpenScienceFrameworkDaoImpl() {}
 
@@ -55,68 +73,89 @@ public class OpenScienceFrameworkDaoImpl implements OpenScienceFrameworkDao {
         this.entityManager = entityManager;
     }
 
-    /**
-     * Find one OSF User by username (primary email).
-     *
-     * @param username the username
-     * @return OpenScienceFrameworkUser or null
-     */
-    private OpenScienceFrameworkUser findOneUserByUsername(final String username) {
+    @Override
+    public void afterPropertiesSet() throws Exception {
         try {
-            final TypedQuery<OpenScienceFrameworkUser> query = entityManager.createQuery(
-                    "select u from OpenScienceFrameworkUser u where u.username = :username",
-                    OpenScienceFrameworkUser.class
-            );
-            query.setParameter("username", username);
-            return query.getSingleResult();
+            refreshUserContentTypeId();
         } catch (final PersistenceException e) {
-            return null;
+            // Not fatal, it is resolved again on first use.
+            LOGGER.warn("Could not resolve the content type id of OSF users: {}", e.getMessage());
         }
     }
 
     /**
-     * Find one OSF Email by email address.
-     *
-     * @param address the address
-     * @return OpenScienceFrameworkEmail or null
+     * Resolve again the Django content type id of the OSF user model, e.g. after the OSF database has been restored.
      */
-    private OpenScienceFrameworkEmail findOneEmailByAddress(final String address) {
-
-        try {
-            final TypedQuery<OpenScienceFrameworkEmail> query = entityManager.createQuery(
-                    "select e from OpenScienceFrameworkEmail e where e.address = :address",
-                    OpenScienceFrameworkEmail.class
-            );
-            query.setParameter("address", address);
-            return query.getSingleResult();
-        } catch (final PersistenceException e) {
-            return null;
-        }
+    public void refreshUserContentTypeId() {
+        final TypedQuery<OpenScienceFrameworkDjangoContentTypeId> query = entityManager.createQuery(
+                "select c from OpenScienceFrameworkDjangoContentTypeId c"
+                + " where c.appLabel = :appLabel and c.model = :model",
+                OpenScienceFrameworkDjangoContentTypeId.class
+        );
+        query.setParameter("appLabel", USER_APP_LABEL);
+        query.setParameter("model", USER_MODEL);
+        userContentTypeId = query.getSingleResult().getId();
+        LOGGER.info("Content type id of OSF users: {}", userContentTypeId);
     }
 
-    @Override
-    public OpenScienceFrameworkUser findOneUserByEmail(final String address) {
-
-        // check username (primary email) first
-        final OpenScienceFrameworkUser user = findOneUserByUsername(address);
-        if (user != null) {
-            return user;
+    /**
+     * Get the Django content type id of the OSF user model, which is resolved once and then kept.
+     *
+     * @return the content type id
+     * @throws PersistenceException if the content type cannot be resolved
+     */
+    private Integer getUserContentTypeId() {
+        if (userContentTypeId == null) {
+            refreshUserContentTypeId();
         }
-
-        // check osf email
-        final OpenScienceFrameworkEmail email = findOneEmailByAddress(address);
-        return email != null ? email.getUser() : null;
+        return userContentTypeId;
     }
 
     @Override
-    public OpenScienceFrameworkTimeBasedOneTimePassword findOneTimeBasedOneTimePasswordByOwnerId(final Integer ownerId) {
+    public OpenScienceFrameworkLoginProjection findOneLoginProjectionByEmail(final String address) {
+
+        // Check both the username (primary email) and the OSF emails in one round trip. JPQL has no UNION, thus use a
+        // native query. Each branch is a lookup on a unique index, whereas an OR across both tables would not be.
+        // The TOTP settings and GUID of the user are outer joined, see `OpenScienceFrameworkLoginProjection`.
+        final String query = "select u.*, "
+                + "p.totp_secret as login_totp_secret, "
+                + "p.is_confirmed as login_totp_is_confirmed, "
+                + "p.deleted as login_totp_deleted, "
+                + "g._id as login_guid "
+                + "from (select n.id from osf_osfuser n where n.username = :address "
+                + "union all "
+                + "select e.user_id from osf_email e where e.address = :address) m "
+                + "join osf_osfuser u on u.id = m.id "
+                + "left join addons_twofactor_usersettings p on p.owner_id = u.id "
+                + "left join osf_guid g on g.object_id = u.id and g.content_type_id = :contentTypeId";
         try {
-            final TypedQuery<OpenScienceFrameworkTimeBasedOneTimePassword> query = entityManager.createQuery(
-                    "select p from OpenScienceFrameworkTimeBasedOneTimePassword p where p.owner.id = :ownerId",
-                    OpenScienceFrameworkTimeBasedOneTimePassword.class
+            @SuppressWarnings("unchecked")
+            final List<Object[]> rows = entityManager
+                    .createNativeQuery(query, OpenScienceFrameworkLoginProjection.RESULT_SET_MAPPING)
+                    .setParameter("address", address)
+                    .setParameter("contentTypeId", getUserContentTypeId())
+                    .getResultList();
+            // The user of the username takes precedence over the one of an OSF email, as it used to.
+            Object[] loginRow = null;
+            for (final Object[] row : rows) {
+                if (address.equals(((OpenScienceFrameworkUser) row[0]).getUsername())) {
+                    loginRow = row;
+                    break;
+                }
+                if (loginRow == null) {
+                    loginRow = row;
+                }
+            }
+            if (loginRow == null) {
+                return null;
+            }
+            return new OpenScienceFrameworkLoginProjection(
+                    (OpenScienceFrameworkUser) loginRow[0],
+                    (String) loginRow[1],
+                    Boolean.TRUE.equals(loginRow[2]),
+                    loginRow[3] != null,
+                    (String) loginRow[4]
             );
-            query.setParameter("ownerId", ownerId);
-            return query.getSingleResult();
         } catch (final PersistenceException e) {
             return null;
         }
@@ -151,27 +190,28 @@ public class OpenScienceFrameworkDaoImpl implements OpenScienceFrameworkDao {
     }
 
     @Override
-    public OpenScienceFrameworkApiOauth2Scope findOneScopeByName(final String name) {
+    public List<OpenScienceFrameworkInstitution> findAllInstitutionsIncludingDeleted() {
         try {
-            final TypedQuery<OpenScienceFrameworkApiOauth2Scope> query = entityManager.createQuery(
-                    "select s from OpenScienceFrameworkApiOauth2Scope s where s.name = :name",
-                    OpenScienceFrameworkApiOauth2Scope.class
+            final TypedQuery<OpenScienceFrameworkInstitution> query = entityManager.createQuery(
+                    "select i from OpenScienceFrameworkInstitution i",
+                    OpenScienceFrameworkInstitution.class
             );
-            query.setParameter("name", name);
-            return query.getSingleResult();
+            return query.getResultList();
         } catch (final PersistenceException e) {
             return null;
         }
     }
 
     @Override
-    public OpenScienceFrameworkApiOauth2Scope findOneScopeByScopePk(final Integer scopePk) {
+    public OpenScienceFrameworkApiOauth2Scope findOneScopeByName(final String name) {
         try {
             final TypedQuery<OpenScienceFrameworkApiOauth2Scope> query = entityManager.createQuery(
-                    "select s from OpenScienceFrameworkApiOauth2Scope s where s.id = :id",
+                    "select s from OpenScienceFrameworkApiOauth2Scope s where s.name = :name",
                     OpenScienceFrameworkApiOauth2Scope.class
             );
-            query.setParameter("id", scopePk);
+            query.setParameter("name", name);
+            // The query cache keeps the id of the scope, which is then read from the `osf.scope` entity region.
+            query.setHint(QueryHints.CACHEABLE, true);
             return query.getSingleResult();
         } catch (final PersistenceException e) {
             return null;
@@ -179,17 +219,38 @@ public class OpenScienceFrameworkDaoImpl implements OpenScienceFrameworkDao {
     }
 
     @Override
-    public OpenScienceFrameworkApiOauth2PersonalAccessToken findOnePersonalAccessTokenByTokenId(final String tokenId) {
-        try {
-            final TypedQuery<OpenScienceFrameworkApiOauth2PersonalAccessToken> query = entityManager.createQuery(
-                    "select t from OpenScienceFrameworkApiOauth2PersonalAccessToken t where t.tokenId = :tokenId",
-                    OpenScienceFrameworkApiOauth2PersonalAccessToken.class
-            );
-            query.setParameter("tokenId", tokenId);
-            return query.getSingleResult();
-        } catch (final PersistenceException e) {
+    public OpenScienceFrameworkApiOauth2PersonalAccessTokenProjection findOnePersonalAccessTokenProjectionByTokenId(
+            final String tokenId
+    ) {
+        // The token-scope and scope tables are not mapped as associations and Hibernate 4 cannot outer join unrelated
+        // entities, thus use a native query. One row is returned per scope, or a single row with a null scope name.
+        final String query = "select t.token_id, g._id, s.name from osf_apioauth2personaltoken t "
+                + "join osf_guid g on g.object_id = t.owner_id and g.content_type_id = :contentTypeId "
+                + "left join osf_apioauth2personaltoken_scopes m on m.apioauth2personaltoken_id = t.id "
+                + "left join osf_apioauth2scope s on s.id = m.apioauth2scope_id "
+                + "where t.token_id = :tokenId and t.is_active = true";
+        // A failure of the query is not swallowed, null must only mean that there is no such token since CAS remembers
+        // the id as unknown.
+        @SuppressWarnings("unchecked")
+        final List<Object[]> rows = entityManager
+                .createNativeQuery(query)
+                .setParameter("tokenId", tokenId)
+                .setParameter("contentTypeId", getUserContentTypeId())
+                .getResultList();
+        if (rows.isEmpty()) {
             return null;
         }
+        final Set<String> scopeNames = new HashSet<>();
+        for (final Object[] row : rows) {
+            if (row[2] != null) {
+                scopeNames.add((String) row[2]);
+            }
+        }
+        return new OpenScienceFrameworkApiOauth2PersonalAccessTokenProjection(
+                (String) rows.get(0)[0],
+                (String) rows.get(0)[1],
+                scopeNames
+        );
     }
 
     @Override
@@ -206,36 +267,4 @@ public class OpenScienceFrameworkDaoImpl implements OpenScienceFrameworkDao {
         }
     }
 
-    @Override
-    public OpenScienceFrameworkGuid findGuidByUser(final OpenScienceFrameworkUser user) {
-        try {
-            final TypedQuery<OpenScienceFrameworkGuid> query = entityManager.createQuery(
-                    "select g from OpenScienceFrameworkGuid g where"
-                    + " g.objectId = :userId"
-                    + " and g.djangoContentType.appLabel = :appLable"
-                    + " and g.djangoContentType.model = :model",
-                    OpenScienceFrameworkGuid.class
-            );
-            query.setParameter("userId", user.getId());
-            query.setParameter("appLable", "osf");
-            query.setParameter("model", "osfuser");
-            return query.getSingleResult();
-        } catch (final PersistenceException e) {
-            return null;
-        }
-    }
-
-    @Override
-    public List<OpenScienceFrameworkApiOauth2TokenScope> findAllTokenScopesByTokenPk(final Integer tokenPk) {
-        try {
-            final TypedQuery<OpenScienceFrameworkApiOauth2TokenScope> query = entityManager.createQuery(
-                    "select m from OpenScienceFrameworkApiOauth2TokenScope m where m.tokenPk = :tokenPk",
-                    OpenScienceFrameworkApiOauth2TokenScope.class
-            );
-            query.setParameter("tokenPk", tokenPk);
-            return query.getResultList();
-        } catch (final PersistenceException e) {
-            return null;
-        }
-    }
 }
@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2021. Center for Open Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cos.cas.adaptors.postgres.datasource;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.util.Assert;
+
+import javax.sql.DataSource;
+import javax.validation.constraints.NotNull;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-replica routing data source.
+ *
+ * Connections are taken from the primary unless the current thread has asked to read from a replica, see
+ * {@link #setReadFromReplica(boolean)} and {@link ReplicaRoutingInterceptor}. Replica connections are handed out in
+ * round-robin among the replicas which passed the last health check. When there is no healthy replica, or when a
+ * replica fails to provide a connection, the primary is used instead.
+ *
+ * The health check ({@link #checkReplicas()}) runs the lag query on every replica. A replica is healthy if the query
+ * succeeds and the replication lag it returns, in seconds, does not exceed the maximum allowed. A replica that fails
+ * to provide a connection is marked unhealthy until the next check.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements InitializingBean {
+
+    /**
+     * The default lag query for Postgres 10 and later. A replica that has replayed everything it has received is not
+     * lagging even if the primary has been idle for a while. On the primary the query returns 0.
+     */
+    public static final String DEFAULT_LAG_QUERY = "select case"
+            + " when pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0"
+            + " else coalesce(extract(epoch from now() - pg_last_xact_replay_timestamp()), 0) end";
+
+    /** Log instance for logging events, info, warnings, errors, etc. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    /** Whether the current thread reads from a replica. */
+    private static final ThreadLocal<Boolean> READ_FROM_REPLICA = new ThreadLocal<>();
+
+    /** The primary data source. */
+    @NotNull
+    private final DataSource primary;
+
+    /** The replica data sources. */
+    @NotNull
+    private final List<DataSource> replicas;
+
+    /** The replicas which passed the last health check. */
+    private volatile List<DataSource> healthyReplicas = Collections.emptyList();
+
+    /** The round-robin counter. */
+    private final AtomicInteger next = new AtomicInteger();
+
+    /** The number of connections taken from a replica. */
+    private final AtomicLong replicaConnections = new AtomicLong();
+
+    /** The number of replica reads which fell back to the primary. */
+    private final AtomicLong primaryFallbacks = new AtomicLong();
+
+    /** The query which returns the replication lag in seconds. */
+    @NotNull
+    private String lagQuery = DEFAULT_LAG_QUERY;
+
+    /** The maximum replication lag in seconds for a replica to be used. */
+    private long maxLagInSeconds = 5;
+
+    /** The timeout in seconds of the lag query. */
+    private int queryTimeoutInSeconds = 2;
+
+    /** The optional metric registry where the routing statistics are published. */
+    private MetricRegistry metricRegistry;
+
+    /**
+     * Instantiate a new {@link ReplicaRoutingDataSource}.
+     *
+     * @param primary the primary data source
+     * @param replicas the replica data sources
+     */
+    public ReplicaRoutingDataSource(final DataSource primary, final List<DataSource> replicas) {
+        Assert.notNull(primary, "primary cannot be null");
+        Assert.notNull(replicas, "replicas cannot be null");
+        this.primary = primary;
+        this.replicas = new ArrayList<>(replicas);
+    }
+
+    /**
+     * Set whether the current thread reads from a replica.
+     *
+     * @param readFromReplica true to read from a replica, false to use the primary
+     */
+    public static void setReadFromReplica(final boolean readFromReplica) {
+        if (readFromReplica) {
+            READ_FROM_REPLICA.set(Boolean.TRUE);
+        } else {
+            READ_FROM_REPLICA.remove();
+        }
+    }
+
+    /**
+     * @return true if the current thread reads from a replica
+     */
+    public static boolean isReadFromReplica() {
+        return READ_FROM_REPLICA.get() != null;
+    }
+
+    public void setLagQuery(final String lagQuery) {
+        this.lagQuery = lagQuery;
+    }
+
+    public void setMaxLagInSeconds(final long maxLagInSeconds) {
+        this.maxLagInSeconds = maxLagInSeconds;
+    }
+
+    public void setQueryTimeoutInSeconds(final int queryTimeoutInSeconds) {
+        this.queryTimeoutInSeconds = queryTimeoutInSeconds;
+    }
+
+    public void setMetricRegistry(final MetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+    }
+
+    /**
+     * @return the number of replicas which passed the last health check
+     */
+    public int getHealthyReplicaCount() {
+        return healthyReplicas.size();
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        checkReplicas();
+        if (metricRegistry == null) {
+            return;
+        }
+        metricRegistry.register(MetricRegistry.name(getClass(), "healthyReplicas"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return healthyReplicas.size();
+            }
+        });
+        metricRegistry.register(MetricRegistry.name(getClass(), "replicaConnections"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return replicaConnections.get();
+            }
+        });
+        metricRegistry.register(MetricRegistry.name(getClass(), "primaryFallbacks"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return primaryFallbacks.get();
+            }
+        });
+    }
+
+    /**
+     * Check the health and the replication lag of every replica, and route replica reads to the healthy ones only.
+     */
+    public void checkReplicas() {
+        final List<DataSource> healthy = new ArrayList<>(replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            final DataSource replica = replicas.get(i);
+            try {
+                final double lag = getLagInSeconds(replica);
+                if (lag <= maxLagInSeconds) {
+                    healthy.add(replica);
+                } else {
+                    LOGGER.warn("OSF replica #{} is {} seconds behind the primary.", i, lag);
+                }
+            } catch (final SQLException e) {
+                LOGGER.warn("OSF replica #{} failed the health check: {}", i, e.getMessage());
+            }
+        }
+        if (healthy.size() != healthyReplicas.size()) {
+            LOGGER.info("{} of {} OSF replicas are healthy.", healthy.size(), replicas.size());
+        }
+        healthyReplicas = Collections.unmodifiableList(healthy);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return getConnection(null, null);
+    }
+
+    @Override
+    public Connection getConnection(final String username, final String password) throws SQLException {
+        if (isReadFromReplica()) {
+            final List<DataSource> candidates = healthyReplicas;
+            if (!candidates.isEmpty()) {
+                final DataSource replica = candidates.get((next.getAndIncrement() & Integer.MAX_VALUE)
+                        % candidates.size());
+                try {
+                    final Connection connection = getConnection(replica, username, password);
+                    replicaConnections.incrementAndGet();
+                    return connection;
+                } catch (final SQLException e) {
+                    LOGGER.warn("OSF replica failed to provide a connection, falling back to the primary: {}",
+                            e.getMessage());
+                    markUnhealthy(replica);
+                }
+            }
+            primaryFallbacks.incrementAndGet();
+        }
+        return getConnection(primary, username, password);
+    }
+
+    /**
+     * Run the lag query on a replica.
+     *
+     * @param replica the replica data source
+     * @return the replication lag in seconds
+     * @throws SQLException if the replica is not reachable or the query fails
+     */
+    private double getLagInSeconds(final DataSource replica) throws SQLException {
+        try (
+                Connection connection = replica.getConnection();
+                Statement statement = connection.createStatement()
+        ) {
+            statement.setQueryTimeout(queryTimeoutInSeconds);
+            try (ResultSet resultSet = statement.executeQuery(lagQuery)) {
+                if (!resultSet.next()) {
+                    throw new SQLException("The lag query returned no row");
+                }
+                return resultSet.getDouble(1);
+            }
+        }
+    }
+
+    /**
+     * Stop routing reads to a replica until the next health check.
+     *
+     * @param replica the replica data source
+     */
+    private synchronized void markUnhealthy(final DataSource replica) {
+        final List<DataSource> healthy = new ArrayList<>(healthyReplicas);
+        if (healthy.remove(replica)) {
+            healthyReplicas = Collections.unmodifiableList(healthy);
+        }
+    }
+
+    /**
+     * Get a connection from a data source, with the credentials if any.
+     *
+     * @param dataSource the data source
+     * @param username the username or null
+     * @param password the password or null
+     * @return the connection
+     * @throws SQLException if the connection cannot be obtained
+     */
+    private static Connection getConnection(
+            final DataSource dataSource,
+            final String username,
+            final String password
+    ) throws SQLException {
+        if (username == null) {
+            return dataSource.getConnection();
+        }
+        return dataSource.getConnection(username, password);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2021. Center for Open Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cos.cas.adaptors.postgres.datasource;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import org.springframework.util.PatternMatchUtils;
+import org.springframework.util.StringUtils;
+
+import javax.validation.constraints.NotNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Select the replica or the primary for the duration of a DAO method call.
+ *
+ * Methods whose name matches one of the replica method patterns (e.g. "find*", see
+ * {@link PatternMatchUtils#simpleMatch(String, String)}) read from a replica of the {@link ReplicaRoutingDataSource},
+ * unless they also match one of the primary method patterns. All the other methods use the primary. The previous
+ * selection of the thread is restored when the call returns.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public class ReplicaRoutingInterceptor implements MethodInterceptor {
+
+    /** The patterns of the methods which read from a replica. */
+    @NotNull
+    private List<String> replicaMethods = Collections.emptyList();
+
+    /** The patterns of the methods which always use the primary. */
+    @NotNull
+    private List<String> primaryMethods = Collections.emptyList();
+
+    public void setReplicaMethods(final String... replicaMethods) {
+        this.replicaMethods = Arrays.asList(StringUtils.trimArrayElements(replicaMethods));
+    }
+
+    public void setPrimaryMethods(final String... primaryMethods) {
+        this.primaryMethods = Arrays.asList(StringUtils.trimArrayElements(primaryMethods));
+    }
+
+    @Override
+    public Object invoke(final MethodInvocation invocation) throws Throwable {
+        final boolean previous = ReplicaRoutingDataSource.isReadFromReplica();
+        ReplicaRoutingDataSource.setReadFromReplica(isReplicaMethod(invocation.getMethod().getName()));
+        try {
+            return invocation.proceed();
+        } finally {
+            ReplicaRoutingDataSource.setReadFromReplica(previous);
+        }
+    }
+
+    /**
+     * @param methodName the name of the method
+     * @return true if the method reads from a replica
+     */
+    public boolean isReplicaMethod(final String methodName) {
+        for (final String pattern : primaryMethods) {
+            if (PatternMatchUtils.simpleMatch(pattern, methodName)) {
+                return false;
+            }
+        }
+        for (final String pattern : replicaMethods) {
+            if (PatternMatchUtils.simpleMatch(pattern, methodName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
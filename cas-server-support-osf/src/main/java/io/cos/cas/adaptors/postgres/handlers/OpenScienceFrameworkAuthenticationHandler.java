@@ -19,8 +19,7 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
 import io.cos.cas.adaptors.postgres.daos.OpenScienceFrameworkDaoImpl;
-import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkGuid;
-import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkTimeBasedOneTimePassword;
+import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkLoginProjection;
 import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkUser;
 import io.cos.cas.authentication.exceptions.AccountNotConfirmedIdPLoginException;
 import io.cos.cas.authentication.exceptions.AccountNotConfirmedOsfLoginException;
@@ -29,7 +28,8 @@ import io.cos.cas.authentication.exceptions.InvalidUserStatusException;
 import io.cos.cas.authentication.exceptions.OneTimePasswordFailedLoginException;
 import io.cos.cas.authentication.exceptions.OneTimePasswordRequiredException;
 import io.cos.cas.authentication.OpenScienceFrameworkCredential;
-import io.cos.cas.authentication.oath.TotpUtils;
+import io.cos.cas.authentication.handler.support.PasswordVerificationExecutor;
+import io.cos.cas.authentication.oath.TotpVerifier;
 
 import org.jasig.cas.authentication.AccountDisabledException;
 import org.jasig.cas.authentication.Credential;
@@ -47,6 +47,7 @@ import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import javax.security.auth.login.AccountNotFoundException;
 import javax.security.auth.login.FailedLoginException;
@@ -76,12 +77,18 @@ public class OpenScienceFrameworkAuthenticationHandler extends AbstractPreAndPos
     private static final String USER_DISABLED = "DISABLED";
     private static final String USER_STATUS_UNKNOWN = "UNKNOWN";
 
+    /** The verifier of the time-based one time passwords, which also rejects replayed ones. */
+    private final TotpVerifier totpVerifier = new TotpVerifier(TOTP_INTERVAL, TOTP_WINDOW);
+
     @NotNull
     private PrincipalNameTransformer principalNameTransformer = new NoOpPrincipalNameTransformer();
 
     @NotNull
     private OpenScienceFrameworkDaoImpl openScienceFrameworkDao;
 
+    /** The optional executor of the password hash checks, which otherwise run on the request thread. */
+    private PasswordVerificationExecutor passwordVerificationExecutor;
+
     /** Default Constructor. */
     public OpenScienceFrameworkAuthenticationHandler() {}
 
@@ -99,6 +106,13 @@ public class OpenScienceFrameworkAuthenticationHandler extends AbstractPreAndPos
         this.openScienceFrameworkDao = openScienceFrameworkDao;
     }
 
+    /**
+     * @param passwordVerificationExecutor the executor of the password hash checks
+     */
+    public void setPasswordVerificationExecutor(final PasswordVerificationExecutor passwordVerificationExecutor) {
+        this.passwordVerificationExecutor = passwordVerificationExecutor;
+    }
+
     @Override
     public void afterPropertiesSet() throws Exception {}
 
@@ -136,10 +150,14 @@ public class OpenScienceFrameworkAuthenticationHandler extends AbstractPreAndPos
         final String verificationKey = credential.getVerificationKey();
         final String oneTimePassword = credential.getOneTimePassword();
 
-        final OpenScienceFrameworkUser user = openScienceFrameworkDao.findOneUserByEmail(username);
-        if (user == null) {
+        // Load the user, the user's TOTP settings and GUID at once. There is no separate TOTP or GUID lookup left to
+        // overlap with the password check: everything the rest of the login needs arrives with this single row.
+        final OpenScienceFrameworkLoginProjection login
+                = openScienceFrameworkDao.findOneLoginProjectionByEmail(username);
+        if (login == null) {
             throw new AccountNotFoundException(username + " not found with query");
         }
+        final OpenScienceFrameworkUser user = login.getUser();
         final String userStatus = verifyUserStatus(user);
 
         // Verify the user's credential
@@ -164,27 +182,25 @@ public class OpenScienceFrameworkAuthenticationHandler extends AbstractPreAndPos
             }
         }
 
-        final OpenScienceFrameworkTimeBasedOneTimePassword timeBasedOneTimePassword
-                = openScienceFrameworkDao.findOneTimeBasedOneTimePasswordByOwnerId(user.getId());
-
+        // Used codes are remembered by user id, since the same account may sign in with any of its emails.
+        final String totpUser = String.valueOf(user.getId());
+        long totpTimeStep = -1;
         // if the user has set up two factors authentication
-        if (timeBasedOneTimePassword != null
-                && timeBasedOneTimePassword.getTotpSecret() != null
-                && timeBasedOneTimePassword.isConfirmed()
-                && !timeBasedOneTimePassword.isDeleted()) {
+        if (login.isTotpEnabled()) {
             // if no one time password is provided in credential, redirect to `casOtpLoginView`
             if (oneTimePassword == null) {
                 throw new OneTimePasswordRequiredException("Time-based One Time Password required");
             }
-            // verify one time password
+            // verify one time password, which is only marked as used once the login has succeeded
             try {
                 final Long longOneTimePassword = Long.valueOf(oneTimePassword);
-                if (!TotpUtils.checkCode(timeBasedOneTimePassword.getTotpSecretBase32(), longOneTimePassword, TOTP_INTERVAL, TOTP_WINDOW)) {
-                    throw new OneTimePasswordFailedLoginException(username + " invalid time-based one time password");
-                }
+                totpTimeStep = totpVerifier.checkHex(totpUser, login.getTotpSecret(), longOneTimePassword);
             } catch (final Exception e) {
                 throw new OneTimePasswordFailedLoginException(username + ": invalid time-based one time password");
             }
+            if (totpTimeStep < 0) {
+                throw new OneTimePasswordFailedLoginException(username + ": invalid time-based one time password");
+            }
         }
 
         // Check user's status, and only ACTIVE user can sign in
@@ -208,8 +224,13 @@ public class OpenScienceFrameworkAuthenticationHandler extends AbstractPreAndPos
 
         // CAS returns the user's GUID to OSF
         // Note: GUID is recommended. Do not use user's pimary key or username.
-        final OpenScienceFrameworkGuid guid = openScienceFrameworkDao.findGuidByUser(user);
-        return createHandlerResult(credential, this.principalFactory.createPrincipal(guid.getGuid(), attributes), null);
+        if (login.getGuid() == null) {
+            throw new AccountNotFoundException(username + " has no GUID");
+        }
+        if (totpTimeStep >= 0 && !totpVerifier.markUsed(totpUser, totpTimeStep)) {
+            throw new OneTimePasswordFailedLoginException(username + ": invalid time-based one time password");
+        }
+        return createHandlerResult(credential, this.principalFactory.createPrincipal(login.getGuid(), attributes), null);
     }
 
     /**
@@ -303,18 +324,24 @@ public class OpenScienceFrameworkAuthenticationHandler extends AbstractPreAndPos
      * @param plainTextPassword the plain text password provided by the user
      * @param userPasswordHash the password hash stored in database
      * @return True if verified, False otherwise
+     * @throws PreventedException if the password verification executor rejects the check
      */
-    private boolean verifyPassword(final String plainTextPassword, final String userPasswordHash) {
+    private boolean verifyPassword(final String plainTextPassword, final String userPasswordHash)
+            throws PreventedException {
 
-        String password, passwordHash;
+        final String scheme;
+        final String password;
+        String passwordHash;
 
         try {
             if (userPasswordHash.startsWith("bcrypt$")) {
                 // django.contrib.auth.hashers.BCryptPasswordHasher
+                scheme = "bcrypt";
                 passwordHash = userPasswordHash.split("bcrypt\\$")[1];
                 password = plainTextPassword;
             } else if(userPasswordHash.startsWith("bcrypt_sha256$")) {
                 // django.contrib.auth.hashers.BCryptSHA256PasswordHasher
+                scheme = "bcrypt_sha256";
                 passwordHash = userPasswordHash.split("bcrypt_sha256\\$")[1];
                 password = sha256HashPassword(plainTextPassword);
             } else {
@@ -322,12 +349,26 @@ public class OpenScienceFrameworkAuthenticationHandler extends AbstractPreAndPos
                 return false;
             }
             passwordHash = updateBCryptHashIdentifier(passwordHash);
-            return password != null && passwordHash != null && BCrypt.checkpw(password, passwordHash);
+            if (password == null || passwordHash == null) {
+                return false;
+            }
+            if (passwordVerificationExecutor == null) {
+                return BCrypt.checkpw(password, passwordHash);
+            }
         } catch (final Exception e) {
             // Do not log stack trace which may contain user's plaintext password
             logger.error(String.format("CAS has encountered a problem when verifying the password: %s.", e.toString()));
             return false;
         }
+
+        // Hand the CPU-bound hash check over to the bounded executor
+        final String finalPasswordHash = passwordHash;
+        return passwordVerificationExecutor.verify(scheme, new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return BCrypt.checkpw(password, finalPasswordHash);
+            }
+        });
     }
 
     /**
@@ -15,12 +15,17 @@
  */
 package io.cos.cas.adaptors.postgres.handlers;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
 import io.cos.cas.adaptors.postgres.daos.OpenScienceFrameworkDaoImpl;
 import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkInstitution;
 import io.cos.cas.adaptors.postgres.types.DelegationProtocol;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
@@ -29,14 +34,22 @@ import javax.validation.constraints.NotNull;
 /**
  * The Open Science Framework Institution Handler.
  *
+ * Institutions are served from an immutable in-memory catalog, which is loaded on first use and then replaced as a
+ * whole by {@link #refresh()}, either on a schedule or on demand. If a refresh fails, the previous catalog is kept.
+ *
  * @author Longze Chen
  * @since 19.3.0
  */
 public class OpenScienceFrameworkInstitutionHandler {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(OpenScienceFrameworkInstitutionHandler.class);
+
     @NotNull
     private OpenScienceFrameworkDaoImpl openScienceFrameworkDao;
 
+    /** The current institution catalog, or null until it has been loaded once. */
+    private volatile Catalog catalog;
+
     /** Default Constructor. */
     public OpenScienceFrameworkInstitutionHandler() {}
 
@@ -47,6 +60,23 @@ public class OpenScienceFrameworkInstitutionHandler {
         this.openScienceFrameworkDao = openScienceFrameworkDao;
     }
 
+    /**
+     * Reload the institution catalog from the database and swap it in.
+     *
+     * @return <code>true</code> if the catalog has been reloaded and <code>false</code> otherwise
+     */
+    public boolean refresh() {
+        final List<OpenScienceFrameworkInstitution> institutions
+                = openScienceFrameworkDao.findAllInstitutionsIncludingDeleted();
+        if (institutions == null) {
+            LOGGER.warn("Failed to load the institution catalog, the previous one is kept.");
+            return false;
+        }
+        catalog = new Catalog(institutions);
+        LOGGER.debug("Loaded the institution catalog of {} institutions.", institutions.size());
+        return true;
+    }
+
     /**
      * Check if an institution of a given ID exists and supports SSO.
      *
@@ -54,9 +84,7 @@ public class OpenScienceFrameworkInstitutionHandler {
      * @return <code>true</code> if exists and <code>false </code> otherwise
      */
     public boolean validateInstitutionForLogin(final String id) {
-
-        final OpenScienceFrameworkInstitution institution
-                = openScienceFrameworkDao.findOneInstitutionById(id);
+        final OpenScienceFrameworkInstitution institution = getCatalog().getInstitution(id);
         return institution != null && institution.getDelegationProtocol() != null;
     }
 
@@ -67,7 +95,7 @@ public class OpenScienceFrameworkInstitutionHandler {
      * @return String or null
      */
     public String findInstitutionLogoutUrlById(final String id) {
-        final OpenScienceFrameworkInstitution institution = openScienceFrameworkDao.findOneInstitutionById(id);
+        final OpenScienceFrameworkInstitution institution = getCatalog().getInstitution(id);
         return institution != null ? institution.getLogoutUrl() : null;
     }
 
@@ -88,33 +116,142 @@ public class OpenScienceFrameworkInstitutionHandler {
      */
     public Map<String, String> getInstitutionLoginUrlMap(final String target, final String id) {
 
-        List<OpenScienceFrameworkInstitution> institutionList = new LinkedList<>();
-        if (id == null || id.isEmpty()) {
-            institutionList = openScienceFrameworkDao.findAllInstitutions();
+        final Catalog current = getCatalog();
+        final Map<String, String> institutionLoginUrlMap = new HashMap<>();
+        if (id != null && !id.isEmpty() && current.getInstitution(id) != null) {
+            final LoginUrl loginUrl = current.loginUrlsById.get(id);
+            if (loginUrl != null) {
+                institutionLoginUrlMap.put(loginUrl.getUrl(target), loginUrl.name);
+            }
         } else {
-            final OpenScienceFrameworkInstitution institution
-                    = openScienceFrameworkDao.findOneInstitutionById(id);
-            if (institution != null) {
-                institutionList.add(institution);
-            } else {
-                institutionList = openScienceFrameworkDao.findAllInstitutions();
+            for (final LoginUrl loginUrl : current.loginUrls) {
+                institutionLoginUrlMap.put(loginUrl.getUrl(target), loginUrl.name);
             }
         }
+        return institutionLoginUrlMap;
+    }
 
-        final Map<String, String> institutionLoginUrlMap = new HashMap<>();
-        for (final OpenScienceFrameworkInstitution institution: institutionList) {
+    /**
+     * Get the current institution catalog, loading it on first use.
+     *
+     * @return the catalog, which is empty if it has never been loaded successfully
+     */
+    private Catalog getCatalog() {
+        Catalog current = catalog;
+        if (current == null) {
+            refresh();
+            current = catalog;
+        }
+        return current != null ? current : Catalog.EMPTY;
+    }
+
+    /**
+     * Immutable snapshot of the institutions and of their precomputed login URLs.
+     */
+    private static final class Catalog {
+
+        /** The empty catalog. */
+        private static final Catalog EMPTY
+                = new Catalog(ImmutableList.<OpenScienceFrameworkInstitution>of());
+
+        /** All the institutions by institution ID. */
+        private final Map<String, OpenScienceFrameworkInstitution> institutionsById;
+
+        /** The login URL of every institution that supports SSO, by institution ID. */
+        private final Map<String, LoginUrl> loginUrlsById;
+
+        /** The login URLs of the institutions listed on the institution login page. */
+        private final List<LoginUrl> loginUrls;
+
+        /**
+         * Build the catalog.
+         *
+         * @param institutions all the institutions
+         */
+        private Catalog(final List<OpenScienceFrameworkInstitution> institutions) {
+            final Map<String, OpenScienceFrameworkInstitution> byId = new HashMap<>();
+            final Map<String, LoginUrl> loginUrlsById = new HashMap<>();
+            final ImmutableList.Builder<LoginUrl> loginUrls = ImmutableList.builder();
+            for (final OpenScienceFrameworkInstitution institution : institutions) {
+                byId.put(institution.getId(), institution);
+                final LoginUrl loginUrl = LoginUrl.of(institution);
+                if (loginUrl == null) {
+                    continue;
+                }
+                loginUrlsById.put(institution.getId(), loginUrl);
+                if (Boolean.FALSE.equals(institution.isDeleted())) {
+                    loginUrls.add(loginUrl);
+                }
+            }
+            this.institutionsById = ImmutableMap.copyOf(byId);
+            this.loginUrlsById = ImmutableMap.copyOf(loginUrlsById);
+            this.loginUrls = loginUrls.build();
+        }
+
+        /**
+         * @param id the institution ID
+         * @return the institution or null
+         */
+        private OpenScienceFrameworkInstitution getInstitution(final String id) {
+            return id != null ? institutionsById.get(id) : null;
+        }
+    }
+
+    /**
+     * Precomputed login URL of an institution, only the service target is appended per request.
+     */
+    private static final class LoginUrl {
+
+        /** The part of the URL before the target, or the institution ID for cas-pac4j institutions. */
+        private final String prefix;
+
+        /** The part of the URL after the target, or null for cas-pac4j institutions which take no target. */
+        private final String suffix;
+
+        /** The institution's display name. */
+        private final String name;
+
+        /**
+         * Instantiate a new login URL.
+         *
+         * @param prefix the part of the URL before the target
+         * @param suffix the part of the URL after the target, or null
+         * @param name the institution's display name
+         */
+        private LoginUrl(final String prefix, final String suffix, final String name) {
+            this.prefix = prefix;
+            this.suffix = suffix;
+            this.name = name;
+        }
+
+        /**
+         * Precompute the login URL of an institution.
+         *
+         * @param institution the institution
+         * @return the login URL, or null if the institution does not support SSO
+         */
+        private static LoginUrl of(final OpenScienceFrameworkInstitution institution) {
             final DelegationProtocol delegationProtocol = institution.getDelegationProtocol();
             if (DelegationProtocol.SAML_SHIB.equals(delegationProtocol)) {
                 // With shared SSO between institutions such as Brown University and The Policy Lab, the login URL is
                 // the same for both. Must add "#" with institution ID to enforce key uniqueness.
-                institutionLoginUrlMap.put(
-                        institution.getLoginUrl() + "&target=" + target + '#' + institution.getId(),
+                return new LoginUrl(
+                        institution.getLoginUrl() + "&target=",
+                        "#" + institution.getId(),
                         institution.getName()
                 );
             } else if (DelegationProtocol.CAS_PAC4J.equals(delegationProtocol)) {
-                institutionLoginUrlMap.put(institution.getId(), institution.getName());
+                return new LoginUrl(institution.getId(), null, institution.getName());
             }
+            return null;
+        }
+
+        /**
+         * @param target the OSF service target after successful institution login
+         * @return the login URL
+         */
+        private String getUrl(final String target) {
+            return suffix == null ? prefix : prefix + target + suffix;
         }
-        return institutionLoginUrlMap;
     }
 }
@@ -16,10 +16,7 @@
 package io.cos.cas.adaptors.postgres.handlers;
 
 import io.cos.cas.adaptors.postgres.daos.OpenScienceFrameworkDaoImpl;
-import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkApiOauth2PersonalAccessToken;
-import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkApiOauth2Scope;
-import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkApiOauth2TokenScope;
-import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkGuid;
+import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkApiOauth2PersonalAccessTokenProjection;
 
 import org.jasig.cas.support.oauth.personal.PersonalAccessToken;
 import org.jasig.cas.support.oauth.personal.handler.support.AbstractPersonalAccessTokenHandler;
@@ -32,8 +29,6 @@ import org.springframework.beans.factory.InitializingBean;
 import javax.validation.constraints.NotNull;
 
 import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
 
 /**
  * The OSF API OAuth2 Personal Access Token Handler.
@@ -66,32 +61,14 @@ public class OpenScienceFrameworkPersonalAccessTokenHandler extends AbstractPers
     @Override
     public PersonalAccessToken getToken(final String tokenId) {
 
-        // Find the token by token id
-        final OpenScienceFrameworkApiOauth2PersonalAccessToken token
-                = openScienceFrameworkDao.findOnePersonalAccessTokenByTokenId(tokenId);
-        if (token == null || !token.isActive()) {
-            return null;
-        }
-
-        // Find the scopes associated with this token
-        final List<OpenScienceFrameworkApiOauth2TokenScope> tokenScopeList
-                = openScienceFrameworkDao.findAllTokenScopesByTokenPk(token.getId());
-        final Set<String> scopeSet = new HashSet<>();
-        for (final OpenScienceFrameworkApiOauth2TokenScope tokenScope : tokenScopeList) {
-            final OpenScienceFrameworkApiOauth2Scope scope
-                    = openScienceFrameworkDao.findOneScopeByScopePk(tokenScope.getScopePk());
-            if (scope != null) {
-                scopeSet.add(scope.getName());
-            }
-        }
-
-        // Find the owner of the token
-        final OpenScienceFrameworkGuid guid = openScienceFrameworkDao.findGuidByUser(token.getOwner());
-        if (guid == null) {
+        // Find the active token, the GUID of its owner and the names of its scopes at once.
+        final OpenScienceFrameworkApiOauth2PersonalAccessTokenProjection token
+                = openScienceFrameworkDao.findOnePersonalAccessTokenProjectionByTokenId(tokenId);
+        if (token == null) {
             return null;
         }
 
         // Return a PAT of the CAS model, which is created based on the token, scope and owner of the OSF model.
-        return new PersonalAccessToken(token.getTokenId(), guid.getGuid(), scopeSet);
+        return new PersonalAccessToken(token.getTokenId(), token.getOwnerGuid(), new HashSet<>(token.getScopeNames()));
     }
 }
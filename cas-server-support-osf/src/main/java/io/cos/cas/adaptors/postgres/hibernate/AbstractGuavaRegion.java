@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2021. Center for Open Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cos.cas.adaptors.postgres.hibernate;
+
+import com.google.common.cache.Cache;
+
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.spi.GeneralDataRegion;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Base class of the second-level cache regions backed by a Guava cache.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public abstract class AbstractGuavaRegion implements GeneralDataRegion {
+
+    /** The lock timeout of 60 seconds, in the unit of {@link GuavaRegionFactory#nextTimestamp()}. */
+    private static final int TIMEOUT = 60000 << GuavaRegionFactory.TIMESTAMP_SHIFT;
+
+    /** The name of the region. */
+    private final String name;
+
+    /** The cache which holds the entries of the region. */
+    private final Cache<Object, Object> cache;
+
+    /**
+     * Instantiate a new region.
+     *
+     * @param name the name of the region
+     * @param cache the cache which holds the entries of the region
+     */
+    protected AbstractGuavaRegion(final String name, final Cache<Object, Object> cache) {
+        this.name = name;
+        this.cache = cache;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object get(final Object key) throws CacheException {
+        return cache.getIfPresent(key);
+    }
+
+    @Override
+    public void put(final Object key, final Object value) throws CacheException {
+        cache.put(key, value);
+    }
+
+    @Override
+    public void evict(final Object key) throws CacheException {
+        cache.invalidate(key);
+    }
+
+    @Override
+    public void evictAll() throws CacheException {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public void destroy() throws CacheException {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public boolean contains(final Object key) {
+        return cache.getIfPresent(key) != null;
+    }
+
+    @Override
+    public long getSizeInMemory() {
+        return -1;
+    }
+
+    @Override
+    public long getElementCountInMemory() {
+        return cache.size();
+    }
+
+    @Override
+    public long getElementCountOnDisk() {
+        return 0;
+    }
+
+    @Override
+    public Map toMap() {
+        return new HashMap<>(cache.asMap());
+    }
+
+    @Override
+    public long nextTimestamp() {
+        return GuavaRegionFactory.currentTimestamp();
+    }
+
+    @Override
+    public int getTimeout() {
+        return TIMEOUT;
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2021. Center for Open Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cos.cas.adaptors.postgres.hibernate;
+
+import com.google.common.cache.Cache;
+
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.spi.CacheDataDescription;
+import org.hibernate.cache.spi.EntityRegion;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cache.spi.access.EntityRegionAccessStrategy;
+import org.hibernate.cache.spi.access.SoftLock;
+
+/**
+ * The entity region backed by a Guava cache.
+ *
+ * Only the read-only and the non-strict read-write access types are supported. CAS never writes the OSF entities, and
+ * changes made by OSF are picked up when the entries expire.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public class GuavaEntityRegion extends AbstractGuavaRegion implements EntityRegion {
+
+    /** The description of the cached entity. */
+    private final CacheDataDescription metadata;
+
+    /**
+     * Instantiate a new {@link GuavaEntityRegion}.
+     *
+     * @param name the name of the region
+     * @param cache the cache which holds the entries of the region
+     * @param metadata the description of the cached entity
+     */
+    public GuavaEntityRegion(
+            final String name,
+            final Cache<Object, Object> cache,
+            final CacheDataDescription metadata
+    ) {
+        super(name, cache);
+        this.metadata = metadata;
+    }
+
+    @Override
+    public boolean isTransactionAware() {
+        return false;
+    }
+
+    @Override
+    public CacheDataDescription getCacheDataDescription() {
+        return metadata;
+    }
+
+    @Override
+    public EntityRegionAccessStrategy buildAccessStrategy(final AccessType accessType) throws CacheException {
+        if (accessType != AccessType.READ_ONLY && accessType != AccessType.NONSTRICT_READ_WRITE) {
+            throw new CacheException("Unsupported access type [" + accessType.getExternalName() + "] for region ["
+                    + getName() + ']');
+        }
+        return new AccessStrategy(accessType);
+    }
+
+    /**
+     * Access strategy which never locks and evicts the entries which are updated or removed.
+     */
+    private final class AccessStrategy implements EntityRegionAccessStrategy {
+
+        /** The access type. */
+        private final AccessType accessType;
+
+        /**
+         * Instantiate a new access strategy.
+         *
+         * @param accessType the access type
+         */
+        private AccessStrategy(final AccessType accessType) {
+            this.accessType = accessType;
+        }
+
+        @Override
+        public EntityRegion getRegion() {
+            return GuavaEntityRegion.this;
+        }
+
+        @Override
+        public Object get(final Object key, final long txTimestamp) throws CacheException {
+            return GuavaEntityRegion.this.get(key);
+        }
+
+        @Override
+        public boolean putFromLoad(
+                final Object key,
+                final Object value,
+                final long txTimestamp,
+                final Object version
+        ) throws CacheException {
+            return putFromLoad(key, value, txTimestamp, version, false);
+        }
+
+        @Override
+        public boolean putFromLoad(
+                final Object key,
+                final Object value,
+                final long txTimestamp,
+                final Object version,
+                final boolean minimalPutOverride
+        ) throws CacheException {
+            if (minimalPutOverride && contains(key)) {
+                return false;
+            }
+            put(key, value);
+            return true;
+        }
+
+        @Override
+        public SoftLock lockItem(final Object key, final Object version) throws CacheException {
+            return null;
+        }
+
+        @Override
+        public SoftLock lockRegion() throws CacheException {
+            return null;
+        }
+
+        @Override
+        public void unlockItem(final Object key, final SoftLock lock) throws CacheException {
+            evict(key);
+        }
+
+        @Override
+        public void unlockRegion(final SoftLock lock) throws CacheException {
+            evictAll();
+        }
+
+        @Override
+        public boolean insert(final Object key, final Object value, final Object version) throws CacheException {
+            return false;
+        }
+
+        @Override
+        public boolean afterInsert(final Object key, final Object value, final Object version) throws CacheException {
+            return false;
+        }
+
+        @Override
+        public boolean update(
+                final Object key,
+                final Object value,
+                final Object currentVersion,
+                final Object previousVersion
+        ) throws CacheException {
+            if (accessType == AccessType.READ_ONLY) {
+                throw new UnsupportedOperationException("Cannot update a read-only entity in region [" + getName()
+                        + ']');
+            }
+            evict(key);
+            return false;
+        }
+
+        @Override
+        public boolean afterUpdate(
+                final Object key,
+                final Object value,
+                final Object currentVersion,
+                final Object previousVersion,
+                final SoftLock lock
+        ) throws CacheException {
+            evict(key);
+            return false;
+        }
+
+        @Override
+        public void remove(final Object key) throws CacheException {
+            evict(key);
+        }
+
+        @Override
+        public void removeAll() throws CacheException {
+            evictAll();
+        }
+
+        @Override
+        public void evict(final Object key) throws CacheException {
+            GuavaEntityRegion.this.evict(key);
+        }
+
+        @Override
+        public void evictAll() throws CacheException {
+            GuavaEntityRegion.this.evictAll();
+        }
+    }
+}
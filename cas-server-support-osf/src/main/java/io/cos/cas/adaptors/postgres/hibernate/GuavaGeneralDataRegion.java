@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2021. Center for Open Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cos.cas.adaptors.postgres.hibernate;
+
+import com.google.common.cache.Cache;
+
+import org.hibernate.cache.spi.QueryResultsRegion;
+import org.hibernate.cache.spi.TimestampsRegion;
+
+/**
+ * The query results region and the update timestamps region backed by a Guava cache.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public class GuavaGeneralDataRegion extends AbstractGuavaRegion implements QueryResultsRegion, TimestampsRegion {
+
+    /**
+     * Instantiate a new {@link GuavaGeneralDataRegion}.
+     *
+     * @param name the name of the region
+     * @param cache the cache which holds the entries of the region
+     */
+    public GuavaGeneralDataRegion(final String name, final Cache<Object, Object> cache) {
+        super(name, cache);
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2021. Center for Open Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cos.cas.adaptors.postgres.hibernate;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.spi.CacheDataDescription;
+import org.hibernate.cache.spi.CollectionRegion;
+import org.hibernate.cache.spi.EntityRegion;
+import org.hibernate.cache.spi.NaturalIdRegion;
+import org.hibernate.cache.spi.QueryResultsRegion;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cache.spi.TimestampsRegion;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cfg.Settings;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process second-level cache region factory backed by Guava caches.
+ *
+ * The time-to-live and the maximum size of each region are read from the Hibernate properties, e.g.
+ * {@literal hibernate.cache.guava.osf.scope.timeToLiveInSeconds} and
+ * {@literal hibernate.cache.guava.osf.scope.maximumSize}. Regions which are not configured use the values of
+ * the {@literal default} region, except the update timestamps region which is not bounded by default. A value of 0
+ * disables the limit.
+ *
+ * Cached query results only hold the ids of the entities, thus the time-to-live of the query results region should
+ * not exceed the one of the entity regions.
+ *
+ * Only entity, query results and update timestamps regions are supported.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public class GuavaRegionFactory implements RegionFactory {
+
+    /** The prefix of the region properties. */
+    public static final String PROPERTY_PREFIX = "hibernate.cache.guava.";
+
+    /** The suffix of the time-to-live properties. */
+    public static final String TIME_TO_LIVE_SUFFIX = ".timeToLiveInSeconds";
+
+    /** The suffix of the maximum size properties. */
+    public static final String MAXIMUM_SIZE_SUFFIX = ".maximumSize";
+
+    /** The name of the region whose settings apply to the regions which are not configured. */
+    public static final String DEFAULT_REGION = "default";
+
+    /**
+     * Timestamps are in milliseconds shifted by 12 bits, which leaves room to keep them strictly increasing within the
+     * same millisecond so that a query cached right after an update is not mistaken for a stale one.
+     */
+    static final int TIMESTAMP_SHIFT = 12;
+
+    private static final long serialVersionUID = 2609337446427045837L;
+
+    /** Log instance for logging events, info, warnings, errors, etc. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(GuavaRegionFactory.class);
+
+    /** The default time-to-live in seconds. */
+    private static final long DEFAULT_TIME_TO_LIVE = 300;
+
+    /** The default maximum size. */
+    private static final long DEFAULT_MAXIMUM_SIZE = 1000;
+
+    /** The last timestamp handed out. */
+    private static final AtomicLong LAST_TIMESTAMP = new AtomicLong();
+
+    /** The Hibernate properties. */
+    private Properties properties = new Properties();
+
+    /**
+     * @return the next timestamp, strictly greater than the previous one
+     */
+    static long currentTimestamp() {
+        while (true) {
+            final long now = System.currentTimeMillis() << TIMESTAMP_SHIFT;
+            final long last = LAST_TIMESTAMP.get();
+            final long next = now > last ? now : last + 1;
+            if (LAST_TIMESTAMP.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+
+    @Override
+    public void start(final Settings settings, final Properties properties) throws CacheException {
+        this.properties = properties;
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    @Override
+    public boolean isMinimalPutsEnabledByDefault() {
+        return false;
+    }
+
+    @Override
+    public AccessType getDefaultAccessType() {
+        return AccessType.READ_ONLY;
+    }
+
+    @Override
+    public long nextTimestamp() {
+        return currentTimestamp();
+    }
+
+    @Override
+    public EntityRegion buildEntityRegion(
+            final String regionName,
+            final Properties properties,
+            final CacheDataDescription metadata
+    ) throws CacheException {
+        return new GuavaEntityRegion(regionName, buildCache(regionName, true), metadata);
+    }
+
+    @Override
+    public NaturalIdRegion buildNaturalIdRegion(
+            final String regionName,
+            final Properties properties,
+            final CacheDataDescription metadata
+    ) throws CacheException {
+        throw new CacheException("Natural id caching is not supported, region [" + regionName + ']');
+    }
+
+    @Override
+    public CollectionRegion buildCollectionRegion(
+            final String regionName,
+            final Properties properties,
+            final CacheDataDescription metadata
+    ) throws CacheException {
+        throw new CacheException("Collection caching is not supported, region [" + regionName + ']');
+    }
+
+    @Override
+    public QueryResultsRegion buildQueryResultsRegion(
+            final String regionName,
+            final Properties properties
+    ) throws CacheException {
+        return new GuavaGeneralDataRegion(regionName, buildCache(regionName, true));
+    }
+
+    @Override
+    public TimestampsRegion buildTimestampsRegion(
+            final String regionName,
+            final Properties properties
+    ) throws CacheException {
+        return new GuavaGeneralDataRegion(regionName, buildCache(regionName, false));
+    }
+
+    /**
+     * Build the cache of a region.
+     *
+     * @param regionName the name of the region
+     * @param bounded whether the default settings apply if the region is not configured
+     * @return the cache
+     */
+    private Cache<Object, Object> buildCache(final String regionName, final boolean bounded) {
+        final long timeToLive = getRegionProperty(regionName, TIME_TO_LIVE_SUFFIX, bounded ? DEFAULT_TIME_TO_LIVE : 0);
+        final long maximumSize = getRegionProperty(regionName, MAXIMUM_SIZE_SUFFIX, bounded ? DEFAULT_MAXIMUM_SIZE : 0);
+        LOGGER.info("Second-level cache region [{}]: time-to-live {} seconds, maximum size {}.",
+                regionName, timeToLive, maximumSize);
+
+        final CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+        if (timeToLive > 0) {
+            builder.expireAfterWrite(timeToLive, TimeUnit.SECONDS);
+        }
+        if (maximumSize > 0) {
+            builder.maximumSize(maximumSize);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Read a setting of a region, falling back to the default region and then to the default value.
+     *
+     * @param regionName the name of the region
+     * @param suffix the suffix of the property
+     * @param defaultValue the default value
+     * @return the value of the setting
+     */
+    private long getRegionProperty(final String regionName, final String suffix, final long defaultValue) {
+        String value = properties.getProperty(PROPERTY_PREFIX + regionName + suffix);
+        if (value == null && defaultValue > 0) {
+            value = properties.getProperty(PROPERTY_PREFIX + DEFAULT_REGION + suffix);
+        }
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (final NumberFormatException e) {
+            throw new CacheException("Invalid value [" + value + "] of " + PROPERTY_PREFIX + regionName + suffix, e);
+        }
+    }
+}
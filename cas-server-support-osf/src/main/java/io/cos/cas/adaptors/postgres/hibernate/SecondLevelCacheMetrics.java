@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2021. Center for Open Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cos.cas.adaptors.postgres.hibernate;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+
+import org.springframework.beans.factory.InitializingBean;
+
+import javax.persistence.EntityManagerFactory;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Publish the statistics of the second-level cache regions of a persistence unit to the metric registry.
+ *
+ * Requires {@literal hibernate.generate_statistics} to be enabled on the persistence unit. Each region gets the
+ * {@literal hits}, {@literal misses}, {@literal puts} and {@literal size} gauges, named after the region.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public class SecondLevelCacheMetrics implements InitializingBean {
+
+    /** The entity manager factory of the persistence unit. */
+    @NotNull
+    private final EntityManagerFactory entityManagerFactory;
+
+    /** The metric registry where the statistics are published. */
+    @NotNull
+    private final MetricRegistry metricRegistry;
+
+    /**
+     * Instantiate a new {@link SecondLevelCacheMetrics}.
+     *
+     * @param entityManagerFactory the entity manager factory of the persistence unit
+     * @param metricRegistry the metric registry where the statistics are published
+     */
+    public SecondLevelCacheMetrics(
+            final EntityManagerFactory entityManagerFactory,
+            final MetricRegistry metricRegistry
+    ) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.metricRegistry = metricRegistry;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        final Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        for (final String regionName : statistics.getSecondLevelCacheRegionNames()) {
+            metricRegistry.register(MetricRegistry.name(getClass(), regionName, "hits"), new RegionGauge(
+                    statistics, regionName) {
+                @Override
+                protected long getValue(final SecondLevelCacheStatistics region) {
+                    return region.getHitCount();
+                }
+            });
+            metricRegistry.register(MetricRegistry.name(getClass(), regionName, "misses"), new RegionGauge(
+                    statistics, regionName) {
+                @Override
+                protected long getValue(final SecondLevelCacheStatistics region) {
+                    return region.getMissCount();
+                }
+            });
+            metricRegistry.register(MetricRegistry.name(getClass(), regionName, "puts"), new RegionGauge(
+                    statistics, regionName) {
+                @Override
+                protected long getValue(final SecondLevelCacheStatistics region) {
+                    return region.getPutCount();
+                }
+            });
+            metricRegistry.register(MetricRegistry.name(getClass(), regionName, "size"), new RegionGauge(
+                    statistics, regionName) {
+                @Override
+                protected long getValue(final SecondLevelCacheStatistics region) {
+                    return region.getElementCountInMemory();
+                }
+            });
+        }
+    }
+
+    /**
+     * Gauge of a statistic of a second-level cache region.
+     */
+    private abstract static class RegionGauge implements Gauge<Long> {
+
+        /** The statistics of the persistence unit. */
+        private final Statistics statistics;
+
+        /** The name of the region. */
+        private final String regionName;
+
+        /**
+         * Instantiate a new gauge.
+         *
+         * @param statistics the statistics of the persistence unit
+         * @param regionName the name of the region
+         */
+        RegionGauge(final Statistics statistics, final String regionName) {
+            this.statistics = statistics;
+            this.regionName = regionName;
+        }
+
+        @Override
+        public Long getValue() {
+            final SecondLevelCacheStatistics region = statistics.getSecondLevelCacheStatistics(regionName);
+            return region == null ? 0L : getValue(region);
+        }
+
+        /**
+         * @param region the statistics of the region
+         * @return the value of the gauge
+         */
+        protected abstract long getValue(SecondLevelCacheStatistics region);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.cos.cas.adaptors.postgres.models;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * The Open Science Framework API OAuth2 Personal Access Token Projection.
+ *
+ * A read-only view of an active personal access token with the GUID of its owner and the names of its scopes, which
+ * are loaded together in one query. See {@link io.cos.cas.adaptors.postgres.daos.OpenScienceFrameworkDao
+ * #findOnePersonalAccessTokenProjectionByTokenId(String)}.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public final class OpenScienceFrameworkApiOauth2PersonalAccessTokenProjection {
+
+    /** The token id (i.e the column token_id, not the primary key id). */
+    private final String tokenId;
+
+    /** The GUID of the owner. */
+    private final String ownerGuid;
+
+    /** The names of the scopes. */
+    private final Set<String> scopeNames;
+
+    /**
+     * Instantiate a new {@link OpenScienceFrameworkApiOauth2PersonalAccessTokenProjection}.
+     *
+     * @param tokenId the token id
+     * @param ownerGuid the GUID of the owner
+     * @param scopeNames the names of the scopes
+     */
+    public OpenScienceFrameworkApiOauth2PersonalAccessTokenProjection(
+            final String tokenId,
+            final String ownerGuid,
+            final Set<String> scopeNames
+    ) {
+        this.tokenId = tokenId;
+        this.ownerGuid = ownerGuid;
+        this.scopeNames = Collections.unmodifiableSet(scopeNames);
+    }
+
+    public String getTokenId() {
+        return tokenId;
+    }
+
+    public String getOwnerGuid() {
+        return ownerGuid;
+    }
+
+    public Set<String> getScopeNames() {
+        return scopeNames;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PersonalAccessTokenProjection [ownerGuid=%s, scopeNames=%s]", ownerGuid, scopeNames);
+    }
+}
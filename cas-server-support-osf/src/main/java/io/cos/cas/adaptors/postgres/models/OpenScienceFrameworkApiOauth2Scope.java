@@ -15,6 +15,10 @@
  */
 package io.cos.cas.adaptors.postgres.models;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
@@ -28,6 +32,8 @@ import javax.persistence.Table;
  * @since 4.1.5
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = "osf.scope")
 @Table(name = "osf_apioauth2scope")
 public class OpenScienceFrameworkApiOauth2Scope {
 
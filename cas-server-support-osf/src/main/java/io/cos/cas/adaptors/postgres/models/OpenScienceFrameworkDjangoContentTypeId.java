@@ -15,6 +15,10 @@
  */
 package io.cos.cas.adaptors.postgres.models;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
@@ -27,6 +31,8 @@ import javax.persistence.Table;
  * @since 4.1.0
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = "osf.contentType")
 @Table(name = "django_content_type")
 public class OpenScienceFrameworkDjangoContentTypeId {
 
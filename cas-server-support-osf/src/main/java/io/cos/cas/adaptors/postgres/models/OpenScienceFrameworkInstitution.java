@@ -82,6 +82,10 @@ public class OpenScienceFrameworkInstitution {
         return logoutUrl;
     }
 
+    public Boolean isDeleted() {
+        return deleted;
+    }
+
     /**
      * @return the delegation protocol of an institution.
      */
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2021. Center for Open Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cos.cas.adaptors.postgres.models;
+
+/**
+ * The Open Science Framework Login Projection.
+ *
+ * A read-only view of everything the login needs: the user, its time-based one-time password settings and its GUID,
+ * which are loaded together in one query. See {@link io.cos.cas.adaptors.postgres.daos.OpenScienceFrameworkDao
+ * #findOneLoginProjectionByEmail(String)}.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public final class OpenScienceFrameworkLoginProjection {
+
+    /** The name of the result set mapping of the login query, see {@link OpenScienceFrameworkUser}. */
+    public static final String RESULT_SET_MAPPING = "OpenScienceFrameworkLoginProjection";
+
+    /** The user. */
+    private final OpenScienceFrameworkUser user;
+
+    /** The TOTP secret in hexadecimal, or null if the user has no TOTP settings. */
+    private final String totpSecret;
+
+    /** Whether the TOTP settings have been confirmed. */
+    private final boolean totpConfirmed;
+
+    /** Whether the TOTP settings have been deleted. */
+    private final boolean totpDeleted;
+
+    /** The GUID of the user, or null if not found. */
+    private final String guid;
+
+    /**
+     * Instantiate a new {@link OpenScienceFrameworkLoginProjection}.
+     *
+     * @param user the user
+     * @param totpSecret the TOTP secret in hexadecimal, or null
+     * @param totpConfirmed whether the TOTP settings have been confirmed
+     * @param totpDeleted whether the TOTP settings have been deleted
+     * @param guid the GUID of the user, or null
+     */
+    public OpenScienceFrameworkLoginProjection(
+            final OpenScienceFrameworkUser user,
+            final String totpSecret,
+            final boolean totpConfirmed,
+            final boolean totpDeleted,
+            final String guid
+    ) {
+        this.user = user;
+        this.totpSecret = totpSecret;
+        this.totpConfirmed = totpConfirmed;
+        this.totpDeleted = totpDeleted;
+        this.guid = guid;
+    }
+
+    public OpenScienceFrameworkUser getUser() {
+        return user;
+    }
+
+    public String getGuid() {
+        return guid;
+    }
+
+    /**
+     * Check if the user has set up two factor authentication, i.e. has confirmed and not deleted TOTP settings.
+     *
+     * @return true if a time-based one-time password is required
+     */
+    public boolean isTotpEnabled() {
+        return totpSecret != null && totpConfirmed && !totpDeleted;
+    }
+
+    /**
+     * @return the TOTP secret in hexadecimal, or null if the user has no TOTP settings
+     */
+    public String getTotpSecret() {
+        return totpSecret;
+    }
+
+    /**
+     * Returns the TOTP secret encoded as Base32.
+     *
+     * @return the encoded secret
+     */
+    public String getTotpSecretBase32() {
+        return OpenScienceFrameworkTimeBasedOneTimePassword.encodeTotpSecretBase32(totpSecret);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LoginProjection [user=%s, guid=%s]", user.getUsername(), guid);
+    }
+}
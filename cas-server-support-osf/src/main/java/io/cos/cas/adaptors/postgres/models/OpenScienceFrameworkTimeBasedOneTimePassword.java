@@ -84,6 +84,16 @@ public class OpenScienceFrameworkTimeBasedOneTimePassword {
      * @return the encoded secret
      */
     public String getTotpSecretBase32() {
+        return encodeTotpSecretBase32(totpSecret);
+    }
+
+    /**
+     * Encodes a TOTP secret stored in hexadecimal as Base32.
+     *
+     * @param totpSecret the secret in hexadecimal
+     * @return the encoded secret
+     */
+    public static String encodeTotpSecretBase32(final String totpSecret) {
         final byte[] bytes = DatatypeConverter.parseHexBinary(totpSecret);
         return new Base32().encodeAsString(bytes);
     }
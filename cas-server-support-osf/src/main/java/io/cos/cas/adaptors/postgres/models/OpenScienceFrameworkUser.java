@@ -25,10 +25,13 @@ import org.hibernate.annotations.TypeDef;
 import java.util.Date;
 
 import javax.persistence.Column;
+import javax.persistence.ColumnResult;
 import javax.persistence.Entity;
+import javax.persistence.EntityResult;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.OneToOne;
+import javax.persistence.SqlResultSetMapping;
 import javax.persistence.Table;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
@@ -42,6 +45,16 @@ import javax.persistence.TemporalType;
  */
 @Entity
 @Table(name = "osf_osfuser")
+@SqlResultSetMapping(
+        name = OpenScienceFrameworkLoginProjection.RESULT_SET_MAPPING,
+        entities = @EntityResult(entityClass = OpenScienceFrameworkUser.class),
+        columns = {
+                @ColumnResult(name = "login_totp_secret"),
+                @ColumnResult(name = "login_totp_is_confirmed"),
+                @ColumnResult(name = "login_totp_deleted"),
+                @ColumnResult(name = "login_guid"),
+        }
+)
 @TypeDef(name = "PostgresJsonb", typeClass = PostgresJsonbUserType.class)
 public final class OpenScienceFrameworkUser {
 
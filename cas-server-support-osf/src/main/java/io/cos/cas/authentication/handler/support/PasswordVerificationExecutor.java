@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2021. Center for Open Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cos.cas.authentication.handler.support;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+import org.jasig.cas.authentication.PreventedException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded executor for the CPU-bound password hash checks.
+ *
+ * Password checks run on a fixed number of dedicated threads instead of the request threads, so that a login flood
+ * cannot use up more than those threads' worth of CPU. Checks wait in a bounded queue. When the queue is full, or
+ * when a check does not complete in time, the login is rejected right away with a {@link PreventedException}, which
+ * is not held against the user by the login rate limiting.
+ *
+ * The time spent checking the hash is recorded in a histogram per hash scheme.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public class PasswordVerificationExecutor implements InitializingBean, DisposableBean {
+
+    /** Log instance for logging events, info, warnings, errors, etc. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(PasswordVerificationExecutor.class);
+
+    /** The executor which runs the checks. */
+    private final ThreadPoolExecutor executor;
+
+    /** The maximum time in milliseconds a request waits for its check, including the time spent in the queue. */
+    private final long timeoutInMillis;
+
+    /** The number of checks rejected because the executor was saturated or the check timed out. */
+    private final AtomicLong rejected = new AtomicLong();
+
+    /** The metric registry where the histograms are kept, a private one unless set. */
+    private MetricRegistry metricRegistry = new MetricRegistry();
+
+    /**
+     * Instantiate a new {@link PasswordVerificationExecutor}.
+     *
+     * @param threads the number of threads, or 0 for the number of available processors
+     * @param queueCapacity the maximum number of checks waiting for a thread
+     * @param timeoutInMillis the maximum time in milliseconds a request waits for its check
+     */
+    public PasswordVerificationExecutor(final int threads, final int queueCapacity, final long timeoutInMillis) {
+        final int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(
+                poolSize,
+                poolSize,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity),
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        final Thread thread = new Thread(runnable, "password-verification-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+        this.timeoutInMillis = timeoutInMillis;
+    }
+
+    public void setMetricRegistry(final MetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        metricRegistry.register(MetricRegistry.name(getClass(), "queued"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return executor.getQueue().size();
+            }
+        });
+        metricRegistry.register(MetricRegistry.name(getClass(), "active"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return executor.getActiveCount();
+            }
+        });
+        metricRegistry.register(MetricRegistry.name(getClass(), "rejected"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return rejected.get();
+            }
+        });
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Run a password check on the executor and wait for its result.
+     *
+     * @param scheme the hash scheme, e.g. "bcrypt" or "bcrypt_sha256", which names the latency histogram
+     * @param check the password check
+     * @return the result of the check, false if the check failed with an exception
+     * @throws PreventedException if the executor is saturated, or the check does not complete in time
+     */
+    public boolean verify(final String scheme, final Callable<Boolean> check) throws PreventedException {
+        final Future<Boolean> future;
+        try {
+            future = executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    final long start = System.nanoTime();
+                    try {
+                        return check.call();
+                    } finally {
+                        metricRegistry.histogram(MetricRegistry.name(PasswordVerificationExecutor.class, scheme))
+                                .update(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw new PreventedException("Password verification rejected, the executor is saturated", e);
+        }
+        try {
+            return Boolean.TRUE.equals(future.get(timeoutInMillis, TimeUnit.MILLISECONDS));
+        } catch (final TimeoutException e) {
+            future.cancel(true);
+            rejected.incrementAndGet();
+            throw new PreventedException("Password verification timed out", e);
+        } catch (final InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new PreventedException("Password verification interrupted", e);
+        } catch (final ExecutionException e) {
+            // Do not log the stack trace which may contain the user's plain text password
+            LOGGER.error("Password verification failed: {}", e.getCause().toString());
+            return false;
+        }
+    }
+}
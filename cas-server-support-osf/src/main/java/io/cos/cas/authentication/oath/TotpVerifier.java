@@ -0,0 +1,371 @@
+/*
+ * Copyright (c) 2021. Center for Open Science
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cos.cas.authentication.oath;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import org.springframework.util.Assert;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time-based One Time Password (RFC 6238, HMAC-SHA1) verifier for the login hot path.
+ *
+ * Unlike {@link TotpUtils#checkCode(String, long, int, int)}, the secret is not round-tripped through Base32 and no
+ * {@link javax.crypto.Mac} is created per time step. Each thread keeps its own SHA-1 digest and buffers: the HMAC
+ * inner and outer pads are computed once per check from the key and then reused for every time step of the window,
+ * which is checked without allocating.
+ *
+ * An accepted code cannot be used again: the verifier remembers, per user, the last time step it accepted and only
+ * accepts later ones. The user must be a stable identifier of the account, e.g. its primary key, rather than the email
+ * typed at login, which may be any of the emails of the account. A caller which has further checks to make before it
+ * accepts the login uses {@link #checkHex(String, CharSequence, long)} and then {@link #markUsed(String, long)} once
+ * they have passed, so that a login rejected for another reason does not use up the code. The replay cache lives in
+ * memory and is not shared between CAS nodes.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public class TotpVerifier {
+
+    /** The number of digits of a code. */
+    private static final int DIGITS = 6;
+
+    /** The modulus which truncates the dynamic binary code to {@link #DIGITS} digits. */
+    private static final int DIGITS_POWER = 1000000;
+
+    /** The block size of SHA-1 in bytes. */
+    private static final int BLOCK_SIZE = 64;
+
+    /** The output size of SHA-1 in bytes. */
+    private static final int HASH_SIZE = 20;
+
+    /** The size of the time step counter in bytes. */
+    private static final int COUNTER_SIZE = 8;
+
+    private static final byte IPAD = 0x36;
+
+    private static final byte OPAD = 0x5c;
+
+    /** The per-thread digest and buffers. */
+    private static final ThreadLocal<HmacSha1> HMAC = new ThreadLocal<HmacSha1>() {
+        @Override
+        protected HmacSha1 initialValue() {
+            return new HmacSha1();
+        }
+    };
+
+    /** The time step in seconds. */
+    private final int interval;
+
+    /** The number of time steps accepted before and after the current one. */
+    private final int window;
+
+    /** The last accepted time step by user. */
+    private final ConcurrentMap<String, Long> lastTimeSteps;
+
+    /**
+     * Instantiate a new {@link TotpVerifier} which remembers the used codes of up to 100,000 users.
+     *
+     * @param interval the time step in seconds
+     * @param window the number of time steps accepted before and after the current one
+     */
+    public TotpVerifier(final int interval, final int window) {
+        this(interval, window, 100000);
+    }
+
+    /**
+     * Instantiate a new {@link TotpVerifier}.
+     *
+     * @param interval the time step in seconds
+     * @param window the number of time steps accepted before and after the current one
+     * @param replayCacheSize the maximum number of users whose last used code is remembered
+     */
+    public TotpVerifier(final int interval, final int window, final long replayCacheSize) {
+        Assert.isTrue(interval > 0, "interval must be positive");
+        Assert.isTrue(window >= 0, "window cannot be negative");
+        this.interval = interval;
+        this.window = window;
+        // A code is accepted during at most (2 * window + 1) time steps, after which it need not be remembered.
+        final Cache<String, Long> cache = CacheBuilder.newBuilder()
+                .expireAfterWrite((long) interval * (2 * window + 2), TimeUnit.SECONDS)
+                .maximumSize(replayCacheSize)
+                .build();
+        this.lastTimeSteps = cache.asMap();
+    }
+
+    /**
+     * Check a code against a secret stored in hexadecimal, as OSF stores it, without marking it as used.
+     *
+     * @param user the user, which scopes the replay protection
+     * @param hexSecret the secret in hexadecimal
+     * @param code the code to check
+     * @return the time step of the code, or -1 if the code is not valid for the current time or has already been used
+     */
+    public long checkHex(final String user, final CharSequence hexSecret, final long code) {
+        return checkHex(user, hexSecret, code, System.currentTimeMillis());
+    }
+
+    /**
+     * Mark the time step of a checked code as used by the user.
+     *
+     * @param user the user, which scopes the replay protection
+     * @param timeStep the time step returned by {@link #checkHex(String, CharSequence, long)}
+     * @return true if the code is accepted, false if the user has used it or a later one meanwhile
+     */
+    public boolean markUsed(final String user, final long timeStep) {
+        return accept(user, timeStep);
+    }
+
+    /**
+     * Verify a code against a secret stored in hexadecimal, as OSF stores it, and mark it as used.
+     *
+     * @param user the user, which scopes the replay protection
+     * @param hexSecret the secret in hexadecimal
+     * @param code the code to verify
+     * @return true if the code is valid for the current time and has not been used yet
+     */
+    public boolean verifyHex(final String user, final CharSequence hexSecret, final long code) {
+        return verifyHex(user, hexSecret, code, System.currentTimeMillis());
+    }
+
+    /**
+     * Verify a code against a secret and mark it as used.
+     *
+     * @param user the user, which scopes the replay protection
+     * @param secret the secret
+     * @param code the code to verify
+     * @return true if the code is valid for the current time and has not been used yet
+     */
+    public boolean verify(final String user, final byte[] secret, final long code) {
+        return verify(user, secret, code, System.currentTimeMillis());
+    }
+
+    /**
+     * @param user the user
+     * @param hexSecret the secret in hexadecimal
+     * @param code the code to verify
+     * @param timeInMillis the time of the verification
+     * @return true if the code is valid at the given time and has not been used yet
+     */
+    boolean verifyHex(final String user, final CharSequence hexSecret, final long code, final long timeInMillis) {
+        return accept(user, checkHex(user, hexSecret, code, timeInMillis));
+    }
+
+    /**
+     * @param user the user
+     * @param hexSecret the secret in hexadecimal
+     * @param code the code to check
+     * @param timeInMillis the time of the check
+     * @return the time step of the code, or -1 if the code is not valid at the given time or has already been used
+     */
+    long checkHex(final String user, final CharSequence hexSecret, final long code, final long timeInMillis) {
+        final HmacSha1 hmac = HMAC.get();
+        hmac.initHex(hexSecret);
+        final long timeStep = findTimeStep(hmac, code, timeInMillis);
+        final Long last = lastTimeSteps.get(user);
+        return last != null && last >= timeStep ? -1 : timeStep;
+    }
+
+    /**
+     * @param user the user
+     * @param secret the secret
+     * @param code the code to verify
+     * @param timeInMillis the time of the verification
+     * @return true if the code is valid at the given time and has not been used yet
+     */
+    boolean verify(final String user, final byte[] secret, final long code, final long timeInMillis) {
+        final HmacSha1 hmac = HMAC.get();
+        hmac.init(secret, secret.length);
+        return accept(user, findTimeStep(hmac, code, timeInMillis));
+    }
+
+    /**
+     * Find the time step of the window which generates the code.
+     *
+     * @param hmac the keyed HMAC of the current thread
+     * @param code the code
+     * @param timeInMillis the time of the verification
+     * @return the time step, or -1 if the code is not valid
+     */
+    private long findTimeStep(final HmacSha1 hmac, final long code, final long timeInMillis) {
+        if (code < 0 || code >= DIGITS_POWER) {
+            return -1;
+        }
+        final long current = timeInMillis / 1000 / interval;
+        // Try the current time step first since it is where a valid code is most likely from.
+        if (hmac.generate(current) == code) {
+            return current;
+        }
+        for (int i = 1; i <= window; i++) {
+            if (hmac.generate(current - i) == code) {
+                return current - i;
+            }
+            if (hmac.generate(current + i) == code) {
+                return current + i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Record the time step as used by the user, unless the user has already used it or a later one.
+     *
+     * @param user the user
+     * @param timeStep the time step, or -1 if the code is not valid
+     * @return true if the code is accepted
+     */
+    private boolean accept(final String user, final long timeStep) {
+        if (timeStep < 0) {
+            return false;
+        }
+        final Long accepted = timeStep;
+        while (true) {
+            final Long last = lastTimeSteps.putIfAbsent(user, accepted);
+            if (last == null) {
+                return true;
+            }
+            if (last >= timeStep) {
+                return false;
+            }
+            if (lastTimeSteps.replace(user, last, accepted)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * HMAC-SHA1 (RFC 2104) over a reusable SHA-1 digest and preallocated buffers. Re-keying only overwrites the pads.
+     */
+    private static final class HmacSha1 {
+
+        private final MessageDigest sha1;
+
+        private final byte[] key = new byte[BLOCK_SIZE];
+
+        private final byte[] innerPad = new byte[BLOCK_SIZE];
+
+        private final byte[] outerPad = new byte[BLOCK_SIZE];
+
+        private final byte[] counter = new byte[COUNTER_SIZE];
+
+        private final byte[] hash = new byte[HASH_SIZE];
+
+        /** A secret longer than a block is decoded here before it is hashed into {@link #key}. */
+        private byte[] longKey = new byte[0];
+
+        private HmacSha1() {
+            try {
+                sha1 = MessageDigest.getInstance("SHA-1");
+            } catch (final NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * @param secret the secret, of which the first length bytes are used
+         * @param length the length of the secret
+         */
+        private void init(final byte[] secret, final int length) {
+            final int keyLength;
+            if (length > BLOCK_SIZE) {
+                sha1.update(secret, 0, length);
+                keyLength = digest(key);
+            } else {
+                System.arraycopy(secret, 0, key, 0, length);
+                keyLength = length;
+            }
+            for (int i = 0; i < BLOCK_SIZE; i++) {
+                final byte b = i < keyLength ? key[i] : 0;
+                innerPad[i] = (byte) (b ^ IPAD);
+                outerPad[i] = (byte) (b ^ OPAD);
+            }
+        }
+
+        /**
+         * @param hexSecret the secret in hexadecimal
+         */
+        private void initHex(final CharSequence hexSecret) {
+            final int length = hexSecret.length() / 2;
+            Assert.isTrue(length * 2 == hexSecret.length(), "hexSecret must have an even length");
+            final byte[] target;
+            if (length > BLOCK_SIZE) {
+                if (longKey.length < length) {
+                    longKey = new byte[length];
+                }
+                target = longKey;
+            } else {
+                target = key;
+            }
+            for (int i = 0; i < length; i++) {
+                target[i] = (byte) ((hexDigit(hexSecret.charAt(2 * i)) << 4) | hexDigit(hexSecret.charAt(2 * i + 1)));
+            }
+            init(target, length);
+        }
+
+        /**
+         * Generate the code of a time step, see {@link Totp#generateTotp(byte[], long, int, String)}.
+         *
+         * @param timeStep the time step
+         * @return the code
+         */
+        private int generate(final long timeStep) {
+            for (int i = COUNTER_SIZE - 1, shift = 0; i >= 0; i--, shift += 8) {
+                counter[i] = (byte) (timeStep >>> shift);
+            }
+            sha1.update(innerPad, 0, BLOCK_SIZE);
+            sha1.update(counter, 0, COUNTER_SIZE);
+            digest(hash);
+            sha1.update(outerPad, 0, BLOCK_SIZE);
+            sha1.update(hash, 0, HASH_SIZE);
+            digest(hash);
+
+            final int offset = hash[HASH_SIZE - 1] & 0xf;
+            final int binary = ((hash[offset] & 0x7f) << 24)
+                    | ((hash[offset + 1] & 0xff) << 16)
+                    | ((hash[offset + 2] & 0xff) << 8)
+                    | (hash[offset + 3] & 0xff);
+            return binary % DIGITS_POWER;
+        }
+
+        /**
+         * @param output the buffer, at least {@link #HASH_SIZE} long, where the digest is written
+         * @return the length of the digest
+         */
+        private int digest(final byte[] output) {
+            try {
+                return sha1.digest(output, 0, HASH_SIZE);
+            } catch (final DigestException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * @param c a hexadecimal digit
+         * @return its value
+         */
+        private static int hexDigit(final char c) {
+            final int digit = Character.digit(c, 16);
+            Assert.isTrue(digit >= 0, "hexSecret is not hexadecimal");
+            return digit;
+        }
+    }
+}
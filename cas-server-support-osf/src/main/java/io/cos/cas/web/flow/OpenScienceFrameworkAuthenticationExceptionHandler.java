@@ -141,12 +141,13 @@ public class OpenScienceFrameworkAuthenticationExceptionHandler extends Authenti
             final MessageContext messageContext
     ) {
         final String handleErrorName = super.handle(e, messageContext);
-        final String loginContext = (String) context.getFlowScope().get("jsonLoginContext");
         final OpenScienceFrameworkLoginHandler.OpenScienceFrameworkLoginContext osfLoginContext
-                = OpenScienceFrameworkLoginHandler.OpenScienceFrameworkLoginContext.fromJson(loginContext);
+                = context.getFlowScope().get(
+                        OpenScienceFrameworkLoginHandler.LOGIN_CONTEXT,
+                        OpenScienceFrameworkLoginHandler.OpenScienceFrameworkLoginContext.class
+                );
         if (osfLoginContext != null) {
             osfLoginContext.setHandleErrorName(handleErrorName);
-            context.getFlowScope().put("jsonLoginContext", osfLoginContext.toJson());
         }
         return new Event(this, handleErrorName);
     }
@@ -71,15 +71,16 @@ public class OpenScienceFrameworkInstitutionLoginHandler {
 
         // Retrieve institution ID from flow context instead of URL params
         String institutionId = null;
-        final String loginContext = (String) context.getFlowScope().get("jsonLoginContext");
         final OpenScienceFrameworkLoginHandler.OpenScienceFrameworkLoginContext osfLoginContext
-                = OpenScienceFrameworkLoginHandler.OpenScienceFrameworkLoginContext.fromJson(loginContext);
+                = context.getFlowScope().get(
+                        OpenScienceFrameworkLoginHandler.LOGIN_CONTEXT,
+                        OpenScienceFrameworkLoginHandler.OpenScienceFrameworkLoginContext.class
+                );
         if (osfLoginContext != null) {
             institutionId = osfLoginContext.getInstitutionId();
             // Set institution ID to null if not found
             if (!this.institutionHandler.validateInstitutionForLogin(institutionId)) {
                 osfLoginContext.setInstitutionId(null);
-                context.getFlowScope().put("jsonLoginContext", osfLoginContext.toJson());
                 institutionId = null;
             }
         }
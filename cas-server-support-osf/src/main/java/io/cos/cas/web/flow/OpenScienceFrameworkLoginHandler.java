@@ -15,11 +15,13 @@
  */
 package io.cos.cas.web.flow;
 
-import com.google.gson.Gson;
-
 import org.springframework.webflow.execution.Event;
 import org.springframework.webflow.execution.RequestContext;
 
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 
@@ -32,13 +34,30 @@ import java.net.URLEncoder;
  */
 public class OpenScienceFrameworkLoginHandler {
 
+    /** The name of the flow scope attribute which holds the {@link OpenScienceFrameworkLoginContext}. */
+    public static final String LOGIN_CONTEXT = "osfLoginContext";
+
     /**
      * Open Science Framework Login Context.
      *
+     * The context is kept in flow scope as it is and is exposed to the JSP pages under {@link #LOGIN_CONTEXT}. It is
+     * {@link Externalizable} so that it takes little room in the serialized, encrypted flow state.
+     *
      * @author Longze chen
      * @since  4.1.5
      */
-    public static final class OpenScienceFrameworkLoginContext {
+    public static final class OpenScienceFrameworkLoginContext implements Externalizable {
+
+        private static final long serialVersionUID = 5218341427960915377L;
+
+        /** The version of the serialized form. */
+        private static final int VERSION = 1;
+
+        private static final int INSTITUTION_LOGIN = 1;
+
+        private static final int UNSUPPORTED_INSTITUTION_LOGIN = 1 << 1;
+
+        private static final int ORCID_REDIRECT = 1 << 2;
 
         /** The service URL in the context. */
         private String serviceUrl;
@@ -58,6 +77,9 @@ public class OpenScienceFrameworkLoginHandler {
         /** The flag for redirect to ORCiD login instead of normal OSF login. */
         private boolean orcidRedirect;
 
+        /** Construct an empty instance, for deserialization only. */
+        public OpenScienceFrameworkLoginContext() {}
+
         /**
          * Construct an instance with the service URL, the institution login and ORCiD redirect flags.
          *
@@ -142,25 +164,38 @@ public class OpenScienceFrameworkLoginHandler {
             return serviceUrl != null;
         }
 
-        /**
-         * Convert the class instance to a JSON string, which will be passed to the flow context.
-         *
-         * @return JSON string
-         */
-        public String toJson() {
-            final Gson gson = new Gson();
-            return gson.toJson(this);
+        @Override
+        public void writeExternal(final ObjectOutput out) throws IOException {
+            int flags = 0;
+            if (institutionLogin) {
+                flags |= INSTITUTION_LOGIN;
+            }
+            if (unsupportedInstitutionLogin) {
+                flags |= UNSUPPORTED_INSTITUTION_LOGIN;
+            }
+            if (orcidRedirect) {
+                flags |= ORCID_REDIRECT;
+            }
+            out.writeByte(VERSION);
+            out.writeByte(flags);
+            out.writeObject(serviceUrl);
+            out.writeObject(handleErrorName);
+            out.writeObject(institutionId);
         }
 
-        /**
-         * Convert the JSON string to a class instance.
-         *
-         * @param jsonString a JSON string previously generated by the method .toJson()
-         * @return an reconstructed instance of OpenScienceFrameworkLoginContext
-         */
-        public static OpenScienceFrameworkLoginContext fromJson(final String jsonString) {
-            final Gson gson = new Gson();
-            return gson.fromJson(jsonString, OpenScienceFrameworkLoginContext.class);
+        @Override
+        public void readExternal(final ObjectInput in) throws IOException, ClassNotFoundException {
+            final int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported login context version " + version);
+            }
+            final int flags = in.readUnsignedByte();
+            institutionLogin = (flags & INSTITUTION_LOGIN) != 0;
+            unsupportedInstitutionLogin = (flags & UNSUPPORTED_INSTITUTION_LOGIN) != 0;
+            orcidRedirect = (flags & ORCID_REDIRECT) != 0;
+            serviceUrl = (String) in.readObject();
+            handleErrorName = (String) in.readObject();
+            institutionId = (String) in.readObject();
         }
     }
 
@@ -172,15 +207,15 @@ public class OpenScienceFrameworkLoginHandler {
      */
     public Event beforeLogin(final RequestContext context) {
 
-        final OpenScienceFrameworkLoginContext osfLoginContext;
         final String serviceUrl = getEncodedServiceUrlFromRequestContext(context);
         final boolean institutionLogin = isInstitutionLogin(context);
         final String institutionId = getInstitutionIdFromRequestContext(context);
         final boolean unsupportedInstitutionLogin = isUnsupportedInstitutionLogin(context);
         final boolean orcidRedirect = checkOrcidRedirectFromRequestContext(context);
 
-        String jsonLoginContext = (String) context.getFlowScope().get("jsonLoginContext");
-        if (jsonLoginContext == null) {
+        OpenScienceFrameworkLoginContext osfLoginContext
+                = context.getFlowScope().get(LOGIN_CONTEXT, OpenScienceFrameworkLoginContext.class);
+        if (osfLoginContext == null) {
             // Create a new login context with service URL, institution login and ORCiD redirect flags
             osfLoginContext = new OpenScienceFrameworkLoginContext(
                     serviceUrl,
@@ -192,7 +227,6 @@ public class OpenScienceFrameworkLoginHandler {
         } else {
             // If the login context already exists, update the service URL and the institution login flag while keeping
             // the errors and disabling ORCiD login redirect
-            osfLoginContext = OpenScienceFrameworkLoginContext.fromJson(jsonLoginContext);
             osfLoginContext.setServiceUrl(serviceUrl);
             osfLoginContext.setInstitutionLogin(institutionLogin);
             osfLoginContext.setInstitutionId(institutionId);
@@ -200,8 +234,7 @@ public class OpenScienceFrameworkLoginHandler {
             // Only allow ORCiD login redirect from a brand new login flow
             osfLoginContext.setOrcidRedirect(false);
         }
-        jsonLoginContext = osfLoginContext.toJson();
-        context.getFlowScope().put("jsonLoginContext", jsonLoginContext);
+        context.getFlowScope().put(LOGIN_CONTEXT, osfLoginContext);
         context.getFlowScope().put("casViewErrorCode", "0000");
 
         // Go to the institution login page. Note: the institution login flag rules over the ORCiD redirect flag
@@ -129,17 +129,18 @@ public abstract class AbstractThrottledSubmissionHandlerInterceptorAdapter
         }
 
         // Retrieve the login context. Use `try ... catch ...` due to `.getFlowScope()` may not be available.
-        final String loginContext;
+        final OpenScienceFrameworkLoginHandler.OpenScienceFrameworkLoginContext osfLoginContext;
         try {
-            loginContext = (String) context.getFlowScope().get("jsonLoginContext");
+            osfLoginContext = context.getFlowScope().get(
+                    OpenScienceFrameworkLoginHandler.LOGIN_CONTEXT,
+                    OpenScienceFrameworkLoginHandler.OpenScienceFrameworkLoginContext.class
+            );
         } catch (final IllegalStateException e) {
             logger.warn(e.getMessage());
             return;
         }
 
-        // Retrieve the login context. Only continue if exists.
-        final OpenScienceFrameworkLoginHandler.OpenScienceFrameworkLoginContext osfLoginContext
-                = OpenScienceFrameworkLoginHandler.OpenScienceFrameworkLoginContext.fromJson(loginContext);
+        // Only continue if the login context exists.
         if (osfLoginContext == null) {
             logger.debug("Login context not found");
             return;
@@ -155,9 +156,8 @@ public abstract class AbstractThrottledSubmissionHandlerInterceptorAdapter
             recordSubmissionFailure(request);
         }
 
-        // Clear the exception, update login context and flow request context
+        // Clear the exception in the login context
         osfLoginContext.setHandleErrorName(null);
-        context.getFlowScope().put("jsonLoginContext", osfLoginContext.toJson());
     }
 
     protected double getThresholdRate() {
@@ -0,0 +1,201 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.cos.cas.adaptors.postgres.datasource;
+
+import org.hsqldb.jdbc.JDBCDataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.aop.framework.ProxyFactory;
+
+import javax.sql.DataSource;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class tests the {@link ReplicaRoutingDataSource} and the {@link ReplicaRoutingInterceptor} classes against two
+ * embedded databases, one acting as the primary and the other as the replica.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public class ReplicaRoutingDataSourceTests {
+
+    private static final String LAG_QUERY = "select lag from replica_lag";
+
+    private DataSource primary;
+
+    private DataSource replica;
+
+    private ReplicaRoutingDataSource routingDataSource;
+
+    @Before
+    public void setUp() throws Exception {
+        primary = createDatabase("primary");
+        replica = createDatabase("replica");
+        routingDataSource = new ReplicaRoutingDataSource(primary, Collections.singletonList(replica));
+        routingDataSource.setLagQuery(LAG_QUERY);
+        routingDataSource.setMaxLagInSeconds(5);
+        routingDataSource.afterPropertiesSet();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ReplicaRoutingDataSource.setReadFromReplica(false);
+        execute(primary, "shutdown");
+        execute(replica, "shutdown");
+    }
+
+    @Test
+    public void verifyPrimaryByDefault() throws Exception {
+        assertEquals(1, routingDataSource.getHealthyReplicaCount());
+        assertEquals("primary", getServer());
+    }
+
+    @Test
+    public void verifyReadFromReplica() throws Exception {
+        ReplicaRoutingDataSource.setReadFromReplica(true);
+        assertEquals("replica", getServer());
+        ReplicaRoutingDataSource.setReadFromReplica(false);
+        assertEquals("primary", getServer());
+    }
+
+    @Test
+    public void verifyLaggingReplicaSkipped() throws Exception {
+        execute(replica, "update replica_lag set lag = 60");
+        routingDataSource.checkReplicas();
+        assertEquals(0, routingDataSource.getHealthyReplicaCount());
+
+        ReplicaRoutingDataSource.setReadFromReplica(true);
+        assertEquals("primary", getServer());
+
+        execute(replica, "update replica_lag set lag = 1");
+        routingDataSource.checkReplicas();
+        assertEquals(1, routingDataSource.getHealthyReplicaCount());
+        assertEquals("replica", getServer());
+    }
+
+    @Test
+    public void verifyUnreachableReplicaSkipped() throws Exception {
+        final JDBCDataSource unreachable = new JDBCDataSource();
+        unreachable.setUrl("jdbc:hsqldb:mem:unreachable;ifexists=true");
+        unreachable.setUser("sa");
+        unreachable.setPassword("");
+
+        final ReplicaRoutingDataSource dataSource
+                = new ReplicaRoutingDataSource(primary, Arrays.<DataSource>asList(unreachable, replica));
+        dataSource.setLagQuery(LAG_QUERY);
+        dataSource.afterPropertiesSet();
+        assertEquals(1, dataSource.getHealthyReplicaCount());
+
+        ReplicaRoutingDataSource.setReadFromReplica(true);
+        assertEquals("replica", getServer(dataSource));
+        assertEquals("replica", getServer(dataSource));
+    }
+
+    @Test
+    public void verifyReplicaFailureFallsBackToPrimary() throws Exception {
+        ReplicaRoutingDataSource.setReadFromReplica(true);
+        execute(replica, "shutdown");
+
+        assertEquals("primary", getServer());
+        assertEquals(0, routingDataSource.getHealthyReplicaCount());
+
+        replica = createDatabase("replica");
+        routingDataSource.checkReplicas();
+        assertEquals(1, routingDataSource.getHealthyReplicaCount());
+        assertEquals("replica", getServer());
+    }
+
+    @Test
+    public void verifyInterceptor() throws Exception {
+        final ReplicaRoutingInterceptor interceptor = new ReplicaRoutingInterceptor();
+        interceptor.setReplicaMethods("find*", " call");
+        interceptor.setPrimaryMethods("findOneLoginProjectionByEmail");
+
+        assertTrue(interceptor.isReplicaMethod("findAllInstitutions"));
+        assertTrue(interceptor.isReplicaMethod("call"));
+        assertFalse(interceptor.isReplicaMethod("findOneLoginProjectionByEmail"));
+        assertFalse(interceptor.isReplicaMethod("refreshUserContentTypeId"));
+
+        final ProxyFactory proxyFactory = new ProxyFactory(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return getServer();
+            }
+        });
+        proxyFactory.addAdvice(interceptor);
+        @SuppressWarnings("unchecked")
+        final Callable<String> proxy = (Callable<String>) proxyFactory.getProxy();
+
+        assertEquals("replica", proxy.call());
+        assertFalse(ReplicaRoutingDataSource.isReadFromReplica());
+        assertEquals("primary", getServer());
+    }
+
+    private String getServer() throws SQLException {
+        return getServer(routingDataSource);
+    }
+
+    private static String getServer(final DataSource dataSource) throws SQLException {
+        try (
+                Connection connection = dataSource.getConnection();
+                Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("select name from server")
+        ) {
+            assertTrue(resultSet.next());
+            return resultSet.getString(1);
+        }
+    }
+
+    private static JDBCDataSource createDatabase(final String name) throws SQLException {
+        final JDBCDataSource dataSource = new JDBCDataSource();
+        dataSource.setUrl("jdbc:hsqldb:mem:" + name);
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+        execute(dataSource, "create table server (name varchar(16))");
+        execute(dataSource, "insert into server values ('" + name + "')");
+        execute(dataSource, "create table replica_lag (lag double)");
+        execute(dataSource, "insert into replica_lag values (0)");
+        // Once shut down, the database becomes unreachable instead of being created again empty.
+        dataSource.setUrl("jdbc:hsqldb:mem:" + name + ";ifexists=true");
+        return dataSource;
+    }
+
+    private static void execute(final DataSource dataSource, final String sql) throws SQLException {
+        try (
+                Connection connection = dataSource.getConnection();
+                Statement statement = connection.createStatement()
+        ) {
+            statement.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.cos.cas.adaptors.postgres.handlers;
+
+import io.cos.cas.adaptors.postgres.daos.OpenScienceFrameworkDaoImpl;
+import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkLoginProjection;
+import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkUser;
+import io.cos.cas.authentication.OpenScienceFrameworkCredential;
+import io.cos.cas.authentication.exceptions.OneTimePasswordFailedLoginException;
+import io.cos.cas.authentication.oath.Totp;
+
+import org.jasig.cas.authentication.HandlerResult;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.security.auth.login.AccountNotFoundException;
+import javax.xml.bind.DatatypeConverter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * This class tests the {@link OpenScienceFrameworkAuthenticationHandler} class.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public class OpenScienceFrameworkAuthenticationHandlerTests {
+
+    private static final byte[] TOTP_SECRET = "12345678901234567890".getBytes(StandardCharsets.US_ASCII);
+
+    private static final String PRIMARY_EMAIL = "primary@osf.io";
+
+    private static final String SECONDARY_EMAIL = "secondary@osf.io";
+
+    private static final String GUID = "abcde";
+
+    private OpenScienceFrameworkDaoImpl openScienceFrameworkDao;
+
+    private OpenScienceFrameworkAuthenticationHandler authenticationHandler;
+
+    private OpenScienceFrameworkUser user;
+
+    @Before
+    public void setUp() throws Exception {
+        user = new OpenScienceFrameworkUser();
+        ReflectionTestUtils.setField(user, "id", 1);
+        ReflectionTestUtils.setField(user, "username", PRIMARY_EMAIL);
+        ReflectionTestUtils.setField(user, "registered", Boolean.TRUE);
+        ReflectionTestUtils.setField(user, "dateConfirmed", new Date());
+        openScienceFrameworkDao = mock(OpenScienceFrameworkDaoImpl.class);
+        authenticationHandler = new OpenScienceFrameworkAuthenticationHandler();
+        authenticationHandler.setOpenScienceFrameworkDao(openScienceFrameworkDao);
+    }
+
+    @Test
+    public void verifyCodeCannotBeReplayedThroughAnotherEmail() throws Exception {
+        final OpenScienceFrameworkLoginProjection login = newLogin(GUID);
+        when(openScienceFrameworkDao.findOneLoginProjectionByEmail(PRIMARY_EMAIL)).thenReturn(login);
+        when(openScienceFrameworkDao.findOneLoginProjectionByEmail(SECONDARY_EMAIL)).thenReturn(login);
+        final String code = currentCode();
+
+        final HandlerResult result = authenticationHandler.authenticateInternal(newCredential(PRIMARY_EMAIL, code));
+        assertEquals(GUID, result.getPrincipal().getId());
+        try {
+            authenticationHandler.authenticateInternal(newCredential(SECONDARY_EMAIL, code));
+            fail("The code must not be accepted twice for the same user");
+        } catch (final OneTimePasswordFailedLoginException e) {
+            // The replay cache is keyed by user, not by the email typed at login.
+        }
+    }
+
+    @Test
+    public void verifyCodeIsNotUsedByRejectedLogin() throws Exception {
+        when(openScienceFrameworkDao.findOneLoginProjectionByEmail(PRIMARY_EMAIL))
+                .thenReturn(newLogin(null))
+                .thenReturn(newLogin(GUID));
+        final String code = currentCode();
+
+        try {
+            authenticationHandler.authenticateInternal(newCredential(PRIMARY_EMAIL, code));
+            fail("A user without GUID must be rejected");
+        } catch (final AccountNotFoundException e) {
+            // The code has been checked but the login has failed, thus the code can still be used.
+        }
+        final HandlerResult result = authenticationHandler.authenticateInternal(newCredential(PRIMARY_EMAIL, code));
+        assertEquals(GUID, result.getPrincipal().getId());
+    }
+
+    private OpenScienceFrameworkLoginProjection newLogin(final String guid) {
+        return new OpenScienceFrameworkLoginProjection(
+                user,
+                DatatypeConverter.printHexBinary(TOTP_SECRET).toLowerCase(),
+                true,
+                false,
+                guid
+        );
+    }
+
+    private static OpenScienceFrameworkCredential newCredential(final String username, final String code) {
+        final OpenScienceFrameworkCredential credential
+                = new OpenScienceFrameworkCredential(username, null, Boolean.FALSE, null, code);
+        credential.setRemotePrincipal(Boolean.TRUE);
+        return credential;
+    }
+
+    private static String currentCode() {
+        final long timeStep = System.currentTimeMillis() / 30000L;
+        return String.valueOf(Totp.generateTotp(TOTP_SECRET, timeStep, 6, "HmacSHA1"));
+    }
+}
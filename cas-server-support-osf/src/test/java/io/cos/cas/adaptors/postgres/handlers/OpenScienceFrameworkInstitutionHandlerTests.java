@@ -0,0 +1,152 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.cos.cas.adaptors.postgres.handlers;
+
+import io.cos.cas.adaptors.postgres.daos.OpenScienceFrameworkDaoImpl;
+import io.cos.cas.adaptors.postgres.models.OpenScienceFrameworkInstitution;
+import io.cos.cas.adaptors.postgres.types.DelegationProtocol;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * This class tests the {@link OpenScienceFrameworkInstitutionHandler} class.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public class OpenScienceFrameworkInstitutionHandlerTests {
+
+    private static final String TARGET = "%2Flogin";
+
+    private OpenScienceFrameworkDaoImpl openScienceFrameworkDao;
+
+    private OpenScienceFrameworkInstitutionHandler institutionHandler;
+
+    @Before
+    public void setUp() throws Exception {
+        openScienceFrameworkDao = mock(OpenScienceFrameworkDaoImpl.class);
+        final List<OpenScienceFrameworkInstitution> institutions = Arrays.asList(
+                mockInstitution("brown", "Brown University", DelegationProtocol.SAML_SHIB, false),
+                mockInstitution("tpl", "The Policy Lab", DelegationProtocol.SAML_SHIB, false),
+                mockInstitution("okstate", "Oklahoma State University", DelegationProtocol.CAS_PAC4J, false),
+                mockInstitution("cos", "Center For Open Science", null, false),
+                mockInstitution("closed", "Closed University", DelegationProtocol.CAS_PAC4J, true)
+        );
+        when(openScienceFrameworkDao.findAllInstitutionsIncludingDeleted()).thenReturn(institutions);
+        institutionHandler = new OpenScienceFrameworkInstitutionHandler();
+        institutionHandler.setOpenScienceFrameworkDao(openScienceFrameworkDao);
+    }
+
+    @Test
+    public void verifyLoginUrlMap() throws Exception {
+        final Map<String, String> loginUrlMap = institutionHandler.getInstitutionLoginUrlMap(TARGET, null);
+        assertEquals(3, loginUrlMap.size());
+        assertEquals("Brown University", loginUrlMap.get(
+                "https://idp/login?entityId=brown&target=" + TARGET + "#brown"));
+        assertEquals("The Policy Lab", loginUrlMap.get("https://idp/login?entityId=tpl&target=" + TARGET + "#tpl"));
+        assertEquals("Oklahoma State University", loginUrlMap.get("okstate"));
+
+        // The map is mutable and a new one is returned on every call.
+        loginUrlMap.put("", " -- select an institution -- ");
+        assertEquals(3, institutionHandler.getInstitutionLoginUrlMap(TARGET, "").size());
+    }
+
+    @Test
+    public void verifyLoginUrlMapAutoSelection() throws Exception {
+        final Map<String, String> loginUrlMap = institutionHandler.getInstitutionLoginUrlMap(TARGET, "okstate");
+        assertEquals(Collections.singletonMap("okstate", "Oklahoma State University"), loginUrlMap);
+
+        assertTrue(institutionHandler.getInstitutionLoginUrlMap(TARGET, "cos").isEmpty());
+        assertEquals(3, institutionHandler.getInstitutionLoginUrlMap(TARGET, "unknown").size());
+    }
+
+    @Test
+    public void verifyValidateAndLogoutUrl() throws Exception {
+        assertTrue(institutionHandler.validateInstitutionForLogin("brown"));
+        assertTrue(institutionHandler.validateInstitutionForLogin("closed"));
+        assertFalse(institutionHandler.validateInstitutionForLogin("cos"));
+        assertFalse(institutionHandler.validateInstitutionForLogin("unknown"));
+        assertFalse(institutionHandler.validateInstitutionForLogin(null));
+
+        assertEquals("https://okstate/logout", institutionHandler.findInstitutionLogoutUrlById("okstate"));
+        assertNull(institutionHandler.findInstitutionLogoutUrlById("unknown"));
+
+        // The catalog is loaded once for all the lookups.
+        verify(openScienceFrameworkDao, times(1)).findAllInstitutionsIncludingDeleted();
+    }
+
+    @Test
+    public void verifyRefresh() throws Exception {
+        assertTrue(institutionHandler.validateInstitutionForLogin("brown"));
+
+        when(openScienceFrameworkDao.findAllInstitutionsIncludingDeleted()).thenReturn(null);
+        assertFalse(institutionHandler.refresh());
+        assertTrue(institutionHandler.validateInstitutionForLogin("brown"));
+
+        final OpenScienceFrameworkInstitution institution
+                = mockInstitution("tpl", "The Policy Lab", DelegationProtocol.SAML_SHIB, false);
+        final List<OpenScienceFrameworkInstitution> institutions = Collections.singletonList(institution);
+        when(openScienceFrameworkDao.findAllInstitutionsIncludingDeleted()).thenReturn(institutions);
+        assertTrue(institutionHandler.refresh());
+        assertFalse(institutionHandler.validateInstitutionForLogin("brown"));
+        assertEquals(1, institutionHandler.getInstitutionLoginUrlMap(TARGET, null).size());
+    }
+
+    @Test
+    public void verifyLoadFailure() throws Exception {
+        when(openScienceFrameworkDao.findAllInstitutionsIncludingDeleted()).thenReturn(null);
+        assertTrue(institutionHandler.getInstitutionLoginUrlMap(TARGET, null).isEmpty());
+        assertFalse(institutionHandler.validateInstitutionForLogin("brown"));
+        verify(openScienceFrameworkDao, times(2)).findAllInstitutionsIncludingDeleted();
+    }
+
+    private static OpenScienceFrameworkInstitution mockInstitution(
+            final String id,
+            final String name,
+            final DelegationProtocol delegationProtocol,
+            final boolean deleted
+    ) {
+        final OpenScienceFrameworkInstitution institution = mock(OpenScienceFrameworkInstitution.class);
+        when(institution.getId()).thenReturn(id);
+        when(institution.getName()).thenReturn(name);
+        when(institution.getDelegationProtocol()).thenReturn(delegationProtocol);
+        when(institution.isDeleted()).thenReturn(deleted);
+        if (DelegationProtocol.SAML_SHIB.equals(delegationProtocol)) {
+            when(institution.getLoginUrl()).thenReturn("https://idp/login?entityId=" + id);
+        }
+        when(institution.getLogoutUrl()).thenReturn("https://" + id + "/logout");
+        return institution;
+    }
+}
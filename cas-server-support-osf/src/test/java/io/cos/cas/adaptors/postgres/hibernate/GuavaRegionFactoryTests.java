@@ -0,0 +1,121 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.cos.cas.adaptors.postgres.hibernate;
+
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.spi.CacheDataDescription;
+import org.hibernate.cache.spi.EntityRegion;
+import org.hibernate.cache.spi.TimestampsRegion;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cache.spi.access.EntityRegionAccessStrategy;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * This class tests the {@link GuavaRegionFactory} class and the regions it builds.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public class GuavaRegionFactoryTests {
+
+    private GuavaRegionFactory regionFactory;
+
+    private CacheDataDescription metadata;
+
+    @Before
+    public void setUp() throws Exception {
+        final Properties properties = new Properties();
+        properties.setProperty("hibernate.cache.guava.default.maximumSize", "2");
+        properties.setProperty("hibernate.cache.guava.osf.scope.maximumSize", "100");
+        regionFactory = new GuavaRegionFactory();
+        regionFactory.start(null, properties);
+        metadata = mock(CacheDataDescription.class);
+    }
+
+    @Test
+    public void verifyRegionSettings() throws Exception {
+        final EntityRegion scopes = regionFactory.buildEntityRegion("osf.scope", new Properties(), metadata);
+        final EntityRegion unconfigured
+                = regionFactory.buildEntityRegion("osf.unconfigured", new Properties(), metadata);
+        final TimestampsRegion timestamps = regionFactory.buildTimestampsRegion("timestamps", new Properties());
+
+        for (int i = 0; i < 10; i++) {
+            ((AbstractGuavaRegion) scopes).put(i, i);
+            ((AbstractGuavaRegion) unconfigured).put(i, i);
+            timestamps.put(i, i);
+        }
+
+        assertEquals(10, scopes.getElementCountInMemory());
+        assertTrue(unconfigured.getElementCountInMemory() <= 2);
+        assertEquals(10, timestamps.getElementCountInMemory());
+    }
+
+    @Test
+    public void verifyReadOnlyAccessStrategy() throws Exception {
+        final EntityRegion region = regionFactory.buildEntityRegion("osf.scope", new Properties(), metadata);
+        final EntityRegionAccessStrategy strategy = region.buildAccessStrategy(AccessType.READ_ONLY);
+
+        assertNull(strategy.get(1, 0));
+        assertTrue(strategy.putFromLoad(1, "scope", 0, null));
+        assertEquals("scope", strategy.get(1, 0));
+        assertFalse(strategy.putFromLoad(1, "other", 0, null, true));
+        assertEquals("scope", strategy.get(1, 0));
+
+        strategy.evict(1);
+        assertNull(strategy.get(1, 0));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void verifyReadOnlyUpdate() throws Exception {
+        final EntityRegion region = regionFactory.buildEntityRegion("osf.scope", new Properties(), metadata);
+        region.buildAccessStrategy(AccessType.READ_ONLY).update(1, "scope", null, null);
+    }
+
+    @Test
+    public void verifyNonStrictReadWriteUpdate() throws Exception {
+        final EntityRegion region = regionFactory.buildEntityRegion("osf.scope", new Properties(), metadata);
+        final EntityRegionAccessStrategy strategy = region.buildAccessStrategy(AccessType.NONSTRICT_READ_WRITE);
+
+        strategy.putFromLoad(1, "scope", 0, null);
+        assertFalse(strategy.update(1, "updated", null, null));
+        assertNull(strategy.get(1, 0));
+    }
+
+    @Test(expected = CacheException.class)
+    public void verifyUnsupportedAccessType() throws Exception {
+        final EntityRegion region = regionFactory.buildEntityRegion("osf.scope", new Properties(), metadata);
+        region.buildAccessStrategy(AccessType.READ_WRITE);
+    }
+
+    @Test(expected = CacheException.class)
+    public void verifyCollectionRegionUnsupported() throws Exception {
+        regionFactory.buildCollectionRegion("osf.collection", new Properties(), metadata);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.cos.cas.authentication.handler.support;
+
+import com.codahale.metrics.MetricRegistry;
+
+import org.jasig.cas.authentication.PreventedException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * This class tests the {@link PasswordVerificationExecutor} class.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public class PasswordVerificationExecutorTests {
+
+    private MetricRegistry metricRegistry;
+
+    private PasswordVerificationExecutor verificationExecutor;
+
+    private ExecutorService requestThreads;
+
+    private CountDownLatch release;
+
+    @Before
+    public void setUp() throws Exception {
+        metricRegistry = new MetricRegistry();
+        verificationExecutor = new PasswordVerificationExecutor(1, 1, 5000);
+        verificationExecutor.setMetricRegistry(metricRegistry);
+        verificationExecutor.afterPropertiesSet();
+        requestThreads = Executors.newCachedThreadPool();
+        release = new CountDownLatch(1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        release.countDown();
+        requestThreads.shutdownNow();
+        verificationExecutor.destroy();
+    }
+
+    @Test
+    public void verifyResultAndHistogram() throws Exception {
+        assertTrue(verificationExecutor.verify("bcrypt", result(true)));
+        assertFalse(verificationExecutor.verify("bcrypt", result(false)));
+        assertFalse(verificationExecutor.verify("bcrypt_sha256", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                throw new IllegalArgumentException("Invalid salt");
+            }
+        }));
+
+        assertEquals(2, histogramCount("bcrypt"));
+        assertEquals(1, histogramCount("bcrypt_sha256"));
+    }
+
+    @Test
+    public void verifyRejectedWhenSaturated() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        // One check runs and one waits in the queue
+        final Future<Boolean> running = submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                started.countDown();
+                release.await();
+                return true;
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        final Future<Boolean> queued = submit(result(true));
+        while (metricRegistry.getGauges().get(metricName("queued")).getValue().equals(0)) {
+            Thread.sleep(10);
+        }
+
+        try {
+            verificationExecutor.verify("bcrypt", result(true));
+            fail("PreventedException expected");
+        } catch (final PreventedException e) {
+            assertEquals(1L, metricRegistry.getGauges().get(metricName("rejected")).getValue());
+        }
+
+        release.countDown();
+        assertTrue(running.get(5, TimeUnit.SECONDS));
+        assertTrue(queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = PreventedException.class)
+    public void verifyTimeout() throws Exception {
+        final PasswordVerificationExecutor executor = new PasswordVerificationExecutor(1, 1, 50);
+        try {
+            executor.verify("bcrypt", new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    release.await();
+                    return true;
+                }
+            });
+        } finally {
+            executor.destroy();
+        }
+    }
+
+    private Future<Boolean> submit(final Callable<Boolean> check) {
+        return requestThreads.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return verificationExecutor.verify("bcrypt", check);
+            }
+        });
+    }
+
+    private long histogramCount(final String scheme) {
+        return metricRegistry.getHistograms().get(metricName(scheme)).getCount();
+    }
+
+    private static String metricName(final String name) {
+        return MetricRegistry.name(PasswordVerificationExecutor.class, name);
+    }
+
+    private static Callable<Boolean> result(final boolean result) {
+        return new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return result;
+            }
+        };
+    }
+}
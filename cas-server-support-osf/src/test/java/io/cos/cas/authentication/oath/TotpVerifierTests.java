@@ -0,0 +1,108 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.cos.cas.authentication.oath;
+
+import org.junit.Test;
+
+import javax.xml.bind.DatatypeConverter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class tests the {@link TotpVerifier} class.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public class TotpVerifierTests {
+
+    /** The HMAC-SHA1 secret of the RFC 6238 test vectors. */
+    private static final byte[] RFC_SECRET = "12345678901234567890".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    public void verifyRfc6238TestVectors() {
+        final TotpVerifier verifier = new TotpVerifier(30, 0);
+        assertTrue(verifier.verify("a", RFC_SECRET, 287082, 59000L));
+        assertTrue(verifier.verify("b", RFC_SECRET, 81804, 1111111109000L));
+        assertTrue(verifier.verify("c", RFC_SECRET, 50471, 1111111111000L));
+        assertTrue(verifier.verify("d", RFC_SECRET, 5924, 1234567890000L));
+        assertTrue(verifier.verify("e", RFC_SECRET, 279037, 2000000000000L));
+        assertFalse(verifier.verify("f", RFC_SECRET, 287083, 59000L));
+    }
+
+    @Test
+    public void verifyHexMatchesTotp() {
+        final Random random = new Random(42);
+        final TotpVerifier verifier = new TotpVerifier(30, 1);
+        for (final int length : new int[] {10, 20, 64, 65, 100}) {
+            final byte[] secret = new byte[length];
+            random.nextBytes(secret);
+            final String hexSecret = DatatypeConverter.printHexBinary(secret).toLowerCase();
+            final long timeInMillis = 1600000000000L + length * 30000L;
+            final long timeStep = timeInMillis / 30000L;
+            final String user = "user" + length;
+            assertTrue(verifier.verifyHex(
+                    user, hexSecret, Totp.generateTotp(secret, timeStep - 1, 6, "HmacSHA1"), timeInMillis));
+            assertTrue(verifier.verifyHex(
+                    user, hexSecret, Totp.generateTotp(secret, timeStep + 1, 6, "HmacSHA1"), timeInMillis));
+            assertFalse(verifier.verify(
+                    "other" + length, secret, Totp.generateTotp(secret, timeStep + 2, 6, "HmacSHA1"), timeInMillis));
+        }
+    }
+
+    @Test
+    public void verifyRejectsReplayedCode() {
+        final TotpVerifier verifier = new TotpVerifier(30, 1);
+        assertTrue(verifier.verify("user", RFC_SECRET, 287082, 59000L));
+        assertFalse(verifier.verify("user", RFC_SECRET, 287082, 59000L));
+        // Codes of earlier time steps are rejected once a later one has been used.
+        final int previous = Totp.generateTotp(RFC_SECRET, 0, 6, "HmacSHA1");
+        assertFalse(verifier.verify("user", RFC_SECRET, previous, 59000L));
+        // The replay cache is scoped by user.
+        assertTrue(verifier.verify("another", RFC_SECRET, 287082, 59000L));
+        // A later time step is still accepted.
+        final int next = Totp.generateTotp(RFC_SECRET, 2, 6, "HmacSHA1");
+        assertTrue(verifier.verify("user", RFC_SECRET, next, 59000L));
+    }
+
+    @Test
+    public void verifyCheckedCodeIsOnlyUsedOnceMarked() {
+        final TotpVerifier verifier = new TotpVerifier(30, 1);
+        final String hexSecret = DatatypeConverter.printHexBinary(RFC_SECRET);
+        assertEquals(1L, verifier.checkHex("user", hexSecret, 287082, 59000L));
+        assertEquals(1L, verifier.checkHex("user", hexSecret, 287082, 59000L));
+        assertTrue(verifier.markUsed("user", 1L));
+        assertEquals(-1L, verifier.checkHex("user", hexSecret, 287082, 59000L));
+        // A concurrent login which has checked the same code cannot mark it as used again.
+        assertFalse(verifier.markUsed("user", 1L));
+        assertFalse(verifier.markUsed("another", -1L));
+    }
+
+    @Test
+    public void verifyRejectsOutOfRangeCode() {
+        final TotpVerifier verifier = new TotpVerifier(30, 1);
+        assertFalse(verifier.verify("user", RFC_SECRET, -287082, 59000L));
+        assertFalse(verifier.verify("user", RFC_SECRET, 94287082, 59000L));
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.cos.cas.web.flow;
+
+import io.cos.cas.web.flow.OpenScienceFrameworkLoginHandler.OpenScienceFrameworkLoginContext;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class tests the serialized form of {@link OpenScienceFrameworkLoginContext}.
+ *
+ * @author Longze Chen
+ * @since 21.2.0
+ */
+public class OpenScienceFrameworkLoginContextTests {
+
+    @Test
+    public void verifySerializationRoundTrip() throws Exception {
+        final OpenScienceFrameworkLoginContext loginContext = new OpenScienceFrameworkLoginContext();
+        loginContext.setServiceUrl("https%3A%2F%2Fosf.io%2Fdashboard%2F");
+        loginContext.setHandleErrorName("FailedLoginException");
+        loginContext.setInstitutionLogin(true);
+        loginContext.setInstitutionId("cos");
+        loginContext.setOrcidRedirect(true);
+
+        final OpenScienceFrameworkLoginContext copy = (OpenScienceFrameworkLoginContext) deserialize(
+                serialize(loginContext));
+        assertEquals("https%3A%2F%2Fosf.io%2Fdashboard%2F", copy.getServiceUrl());
+        assertEquals("FailedLoginException", copy.getHandleErrorName());
+        assertTrue(copy.isInstitutionLogin());
+        assertEquals("cos", copy.getInstitutionId());
+        assertFalse(copy.isUnsupportedInstitutionLogin());
+        assertTrue(copy.isOrcidRedirect());
+    }
+
+    @Test
+    public void verifySerializationOfEmptyContext() throws Exception {
+        final OpenScienceFrameworkLoginContext copy = (OpenScienceFrameworkLoginContext) deserialize(
+                serialize(new OpenScienceFrameworkLoginContext()));
+        assertNull(copy.getServiceUrl());
+        assertFalse(copy.isServiceUrl());
+        assertNull(copy.getHandleErrorName());
+        assertNull(copy.getInstitutionId());
+        assertFalse(copy.isInstitutionLogin());
+        assertFalse(copy.isOrcidRedirect());
+    }
+
+    @Test
+    public void verifySerializedFormIsCompact() throws Exception {
+        final OpenScienceFrameworkLoginContext loginContext = new OpenScienceFrameworkLoginContext();
+        loginContext.setServiceUrl("https%3A%2F%2Fosf.io%2Fdashboard%2F");
+        final DefaultSerializedLoginContext defaultForm = new DefaultSerializedLoginContext();
+        defaultForm.serviceUrl = "https%3A%2F%2Fosf.io%2Fdashboard%2F";
+        assertTrue(serialize(loginContext).length < serialize(defaultForm).length);
+    }
+
+    private static byte[] serialize(final Object object) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(final byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+
+    /** The same fields with the default serialized form. */
+    private static final class DefaultSerializedLoginContext implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private String serviceUrl;
+
+        private String handleErrorName;
+
+        private boolean institutionLogin;
+
+        private boolean unsupportedInstitutionLogin;
+
+        private String institutionId;
+
+        private boolean orcidRedirect;
+    }
+}
@@ -30,14 +30,6 @@
 <%@ taglib prefix="spring" uri="http://www.springframework.org/tags" %>
 <%@ taglib prefix="form" uri="http://www.springframework.org/tags/form" %>
 
-<%@ page import="io.cos.cas.web.flow.OpenScienceFrameworkLoginHandler.OpenScienceFrameworkLoginContext" %>
-<c:set var="pageLoginContext" value="${jsonLoginContext}" />
-<%
-    String loginContext = (String) pageContext.getAttribute("pageLoginContext");
-    OpenScienceFrameworkLoginContext osfLoginContext = OpenScienceFrameworkLoginContext.fromJson(loginContext);
-    pageContext.setAttribute("osfLoginContext", osfLoginContext);
-%>
-
 <html lang="en">
     <head>
         <meta charset="UTF-8" />
@@ -0,0 +1,40 @@
+--
+-- Copyright (c) 2015. Center for Open Science
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+--
+-- CAS OAuth token tables: indexes for the paginated client token listings (Postgres 9.5+).
+--
+-- `JpaTokenRegistry.getClientTokens` walks the tokens of a client in pages ordered by id, each page starting right
+-- after the last token of the previous one. These indexes let every page read only the rows it returns, however many
+-- tokens the client has.
+--
+-- Run this file with `psql` in its default auto-commit mode since the indexes are built `CONCURRENTLY`:
+--
+--     psql -v ON_ERROR_STOP=1 -d cas -f etc/sql/cas/21.2.0-oauth-client-token-pagination.sql
+--
+-- If a concurrent build fails, it leaves an INVALID index behind. Drop it and run this file again.
+--
+
+-- getClientTokens(clientId, afterId, maxResults, AccessToken.class)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_accesstoken_client
+    ON accesstoken (client_id, id);
+
+-- getClientTokens(clientId, afterId, maxResults, RefreshToken.class)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_refreshtoken_client
+    ON refreshtoken (client_id, id);
+
+ANALYZE accesstoken;
+ANALYZE refreshtoken;
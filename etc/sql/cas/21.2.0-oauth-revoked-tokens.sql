@@ -0,0 +1,35 @@
+--
+-- Copyright (c) 2015. Center for Open Science
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+--
+-- CAS OAuth token tables: revocation list of self-contained access tokens (Postgres 9.5+).
+--
+-- Self-contained access tokens are validated without any lookup of the token tables, thus revoking them only takes
+-- effect through this list. Entries are pruned once the token has expired, which keeps the table small.
+--
+-- Run this file in a single transaction:
+--
+--     psql -v ON_ERROR_STOP=1 -1 -d cas -f etc/sql/cas/21.2.0-oauth-revoked-tokens.sql
+--
+
+CREATE TABLE IF NOT EXISTS revokedtoken (
+    id              VARCHAR(255) NOT NULL PRIMARY KEY,
+    expiration_date BIGINT       NOT NULL
+);
+
+-- JpaTokenRevocationList: snapshot and pruning
+CREATE INDEX IF NOT EXISTS idx_revokedtoken_expiration
+    ON revokedtoken (expiration_date);
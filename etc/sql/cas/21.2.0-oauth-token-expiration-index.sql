@@ -0,0 +1,36 @@
+--
+-- Copyright (c) 2015. Center for Open Science
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+--
+-- CAS OAuth token tables: index for the expired token sweeper (Postgres 9.5+).
+--
+-- `ExpiredTokenSweeper` walks the expired ONLINE and OFFLINE access tokens in batches ordered by expiration date and
+-- id, each batch starting right after the last token of the previous one. This index lets every batch read only the
+-- rows it returns, however large the table is.
+--
+-- Run this file after `21.2.0-oauth-token-expiration.sql`, with `psql` in its default auto-commit mode since the index
+-- is built `CONCURRENTLY`:
+--
+--     psql -v ON_ERROR_STOP=1 -d cas -f etc/sql/cas/21.2.0-oauth-token-expiration-index.sql
+--
+-- If the concurrent build fails, it leaves an INVALID index behind. Drop it and run this file again.
+--
+
+-- getExpiredTokens
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_accesstoken_expiration
+    ON accesstoken (expiration_date, id);
+
+ANALYZE accesstoken;
@@ -0,0 +1,58 @@
+--
+-- Copyright (c) 2015. Center for Open Science
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+--
+-- CAS OAuth token tables: persisted expiration date of ONLINE and OFFLINE access tokens (Postgres 9.5+).
+--
+-- `JpaTokenRegistry.isToken` filters out expired tokens with `expiration_date`, in milliseconds since the epoch. The
+-- column is null for tokens that do not expire by time or whose lifetime follows their CAS ticket. Existing ONLINE
+-- (type 1) and OFFLINE (type 0) access tokens are given the expiration date their ticket currently has under the
+-- OAuth access token policy, i.e. the last time the ticket was used plus `oauth.accessTokenDuration`.
+--
+-- Run this file after `21.2.0-oauth-token-scopes.sql`, in a single transaction, passing the access token duration in
+-- seconds (`oauth.accessTokenDuration`, 3600 by default). The variable is required:
+--
+--     psql -v ON_ERROR_STOP=1 -v access_token_duration=3600 -1 -d cas -f etc/sql/cas/21.2.0-oauth-token-expiration.sql
+--
+
+DO $$
+DECLARE
+    t text;
+BEGIN
+    FOREACH t IN ARRAY ARRAY['accesstoken', 'refreshtoken', 'authorizationcode'] LOOP
+        IF NOT EXISTS (
+            SELECT 1 FROM information_schema.columns
+            WHERE table_schema = current_schema() AND table_name = t AND column_name = 'expiration_date'
+        ) THEN
+            EXECUTE format('ALTER TABLE %I ADD COLUMN expiration_date bigint', t);
+        END IF;
+    END LOOP;
+END;
+$$;
+
+-- ONLINE access tokens are backed by a ticket granting ticket
+UPDATE accesstoken t
+SET expiration_date = g.last_time_used + :access_token_duration * 1000
+FROM ticketgrantingticket g
+WHERE t.type = 1 AND t.ticketgrantingticket_id = g.id AND t.expiration_date IS NULL;
+
+-- OFFLINE access tokens are backed by a service ticket
+UPDATE accesstoken t
+SET expiration_date = s.last_time_used + :access_token_duration * 1000
+FROM serviceticket s
+WHERE t.type = 0 AND t.serviceticket_id = s.id AND t.expiration_date IS NULL;
+
+ANALYZE accesstoken;
@@ -0,0 +1,64 @@
+--
+-- Copyright (c) 2015. Center for Open Science
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+--
+-- CAS OAuth token tables: composite indexes for `JpaTokenRegistry` queries (Postgres 9.5+).
+--
+-- The indexes are built with `CONCURRENTLY` so that the tables remain writable during the migration. Such statements
+-- cannot run inside a transaction block, thus run this file with `psql` in its default auto-commit mode:
+--
+--     psql -v ON_ERROR_STOP=1 -d cas -f etc/sql/cas/21.2.0-oauth-token-indexes.sql
+--
+-- Apply this migration before deploying with `database.hibernate.hbm2ddl.auto=validate`. With the default `update`,
+-- Hibernate creates any missing index at startup with a blocking `CREATE INDEX`, which is only acceptable for small
+-- tables.
+--
+-- If a concurrent build fails, it leaves an INVALID index behind. Drop it and run this file again.
+--
+
+-- getClientTokens, getClientPrincipalTokens, isToken (ONLINE / OFFLINE / CAS) and getPrincipalCount
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_accesstoken_client_principal
+    ON accesstoken (client_id, principal_id, type, scopes_hash);
+
+-- getPrincipalTokens
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_accesstoken_principal
+    ON accesstoken (principal_id, client_id);
+
+-- ON DELETE CASCADE from ticketgrantingticket and serviceticket
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_accesstoken_tgt
+    ON accesstoken (ticketgrantingticket_id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_accesstoken_st
+    ON accesstoken (serviceticket_id);
+
+-- getClientTokens, getClientPrincipalTokens, isToken and getPrincipalCount
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_refreshtoken_client_principal
+    ON refreshtoken (client_id, principal_id, scopes_hash);
+
+-- getPrincipalTokens
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_refreshtoken_principal
+    ON refreshtoken (principal_id, client_id);
+
+-- ON DELETE CASCADE from ticketgrantingticket
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_refreshtoken_tgt
+    ON refreshtoken (ticketgrantingticket_id);
+
+-- ON DELETE CASCADE from serviceticket
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_authorizationcode_st
+    ON authorizationcode (serviceticket_id);
+
+ANALYZE accesstoken;
+ANALYZE refreshtoken;
+ANALYZE authorizationcode;
@@ -0,0 +1,113 @@
+--
+-- Copyright (c) 2015. Center for Open Science
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+--
+-- CAS OAuth token tables: replace the serialized scopes with their canonical encoding (Postgres 9.5+).
+--
+-- The `scopes` column held a Java-serialized `java.util.HashSet<String>`, stored by Hibernate either as a large object
+-- (`oid`) or as `bytea`, and `scopes_hash` held its `hashCode()`. Both are replaced by `scope_set`, the scope names
+-- sorted and separated by a single space (see `org.jasig.cas.support.oauth.token.TokenScopes`), which is part of the
+-- client / principal indexes.
+--
+-- Run this file after `21.2.0-oauth-token-indexes.sql`, with CAS stopped, in a single transaction:
+--
+--     psql -v ON_ERROR_STOP=1 -1 -d cas -f etc/sql/cas/21.2.0-oauth-token-scopes.sql
+--
+-- Any row that cannot be decoded aborts the migration and leaves the tables untouched.
+--
+
+-- Decode a serialized `java.util.HashSet<String>` into the canonical encoding. The stream layout is:
+--
+--     AC ED 00 05 | 73 72 <u2 length> "java.util.HashSet" <u8 serialVersionUID> <u1 flags> <u2 field count = 0>
+--     78 70 | 77 0C <i4 capacity> <f4 load factor> <i4 size> | size * (74 <u2 length> <modified UTF-8 bytes>) | 78
+--
+CREATE FUNCTION pg_temp.decode_scopes(data bytea) RETURNS text AS $$
+DECLARE
+    pos integer;
+    len integer;
+    size integer;
+    scopes text[] := '{}';
+BEGIN
+    IF get_byte(data, 0) <> 172 OR get_byte(data, 1) <> 237 OR get_byte(data, 4) <> 115 OR get_byte(data, 5) <> 114 THEN
+        RAISE EXCEPTION 'scopes are not a serialized object';
+    END IF;
+    len := get_byte(data, 6) * 256 + get_byte(data, 7);
+    IF convert_from(substring(data FROM 9 FOR len), 'UTF8') <> 'java.util.HashSet' THEN
+        RAISE EXCEPTION 'scopes are not a serialized java.util.HashSet';
+    END IF;
+    -- class name, serialVersionUID, flags, field count, end of class description, no super class, block header
+    pos := 8 + len + 8 + 1 + 2 + 1 + 1 + 2;
+    -- capacity and load factor
+    pos := pos + 8;
+    size := (get_byte(data, pos) << 24) | (get_byte(data, pos + 1) << 16) | (get_byte(data, pos + 2) << 8)
+            | get_byte(data, pos + 3);
+    pos := pos + 4;
+    FOR i IN 1..size LOOP
+        IF get_byte(data, pos) <> 116 THEN
+            RAISE EXCEPTION 'unexpected element tag % at offset %', get_byte(data, pos), pos;
+        END IF;
+        len := get_byte(data, pos + 1) * 256 + get_byte(data, pos + 2);
+        scopes := scopes || convert_from(substring(data FROM pos + 4 FOR len), 'UTF8');
+        pos := pos + 3 + len;
+    END LOOP;
+    RETURN array_to_string(ARRAY(SELECT s FROM unnest(scopes) AS s ORDER BY s COLLATE "C"), ' ');
+END;
+$$ LANGUAGE plpgsql IMMUTABLE STRICT;
+
+DO $$
+DECLARE
+    t text;
+    scopes_type text;
+BEGIN
+    FOREACH t IN ARRAY ARRAY['accesstoken', 'refreshtoken', 'authorizationcode'] LOOP
+        SELECT data_type INTO scopes_type FROM information_schema.columns
+        WHERE table_schema = current_schema() AND table_name = t AND column_name = 'scopes';
+        IF scopes_type IS NULL THEN
+            RAISE NOTICE 'table % is already migrated', t;
+            CONTINUE;
+        END IF;
+
+        -- Hibernate may already have added the column at startup with `hbm2ddl.auto=update`
+        IF NOT EXISTS (
+            SELECT 1 FROM information_schema.columns
+            WHERE table_schema = current_schema() AND table_name = t AND column_name = 'scope_set'
+        ) THEN
+            EXECUTE format('ALTER TABLE %I ADD COLUMN scope_set varchar(1024)', t);
+        END IF;
+        IF scopes_type = 'oid' THEN
+            EXECUTE format('UPDATE %I SET scope_set = pg_temp.decode_scopes(lo_get(scopes))', t);
+            EXECUTE format('SELECT lo_unlink(scopes) FROM %I', t);
+        ELSE
+            EXECUTE format('UPDATE %I SET scope_set = pg_temp.decode_scopes(scopes)', t);
+        END IF;
+        EXECUTE format('ALTER TABLE %I ALTER COLUMN scope_set SET NOT NULL', t);
+        EXECUTE format('ALTER TABLE %I DROP COLUMN scopes, DROP COLUMN IF EXISTS scopes_hash', t);
+    END LOOP;
+END;
+$$;
+
+-- isToken now matches the scopes exactly
+DROP INDEX IF EXISTS idx_accesstoken_client_principal;
+CREATE INDEX idx_accesstoken_client_principal
+    ON accesstoken (client_id, principal_id, type, scope_set);
+
+DROP INDEX IF EXISTS idx_refreshtoken_client_principal;
+CREATE INDEX idx_refreshtoken_client_principal
+    ON refreshtoken (client_id, principal_id, scope_set);
+
+ANALYZE accesstoken;
+ANALYZE refreshtoken;
+ANALYZE authorizationcode;
@@ -0,0 +1,55 @@
+--
+-- Copyright (c) 2015. Center for Open Science
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+--
+-- The SQL generated by Hibernate for each `JpaTokenRegistry` query, included by `oauth-token-query-plans.sql`.
+--
+
+\echo '--- getClientTokens(AccessToken)'
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+SELECT * FROM accesstoken t WHERE t.client_id = 'client-42';
+
+\echo '--- getClientPrincipalTokens(RefreshToken)'
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+SELECT * FROM refreshtoken t WHERE t.client_id = 'client-42' AND t.principal_id = 'principal-5042';
+
+\echo '--- getClientPrincipalTokens(ONLINE, AccessToken)'
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+SELECT * FROM accesstoken t WHERE t.client_id = 'client-42' AND t.principal_id = 'principal-5042' AND t.type = 1;
+
+\echo '--- getPrincipalTokens(AccessToken)'
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+SELECT * FROM accesstoken t WHERE t.principal_id = 'principal-5042';
+
+\echo '--- isToken(ONLINE, AccessToken)'
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+SELECT * FROM accesstoken t
+WHERE t.type = 1 AND t.client_id = 'client-42' AND t.principal_id = 'principal-5042' AND t.scope_set = 'osf.full_read';
+
+\echo '--- isToken(RefreshToken)'
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+SELECT * FROM refreshtoken t
+WHERE t.client_id = 'client-42' AND t.principal_id = 'principal-5042' AND t.scope_set = 'osf.full_read';
+
+\echo '--- getPrincipalCount'
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+SELECT DISTINCT t.principal_id FROM refreshtoken t WHERE t.client_id = 'client-42';
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+SELECT DISTINCT t.principal_id FROM accesstoken t WHERE t.client_id = 'client-42';
+
+\echo '--- ON DELETE CASCADE lookup'
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+SELECT 1 FROM accesstoken t WHERE t.ticketgrantingticket_id = 'TGT-4242';
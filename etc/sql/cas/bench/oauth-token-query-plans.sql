@@ -0,0 +1,96 @@
+--
+-- Copyright (c) 2015. Center for Open Science
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+--
+-- Query plans of the `JpaTokenRegistry` queries before and after the token indexes.
+--
+-- The script works on a scratch schema `oauth_bench` seeded with synthetic rows, it does not touch the CAS tables.
+-- Run it against a disposable database and compare the two sets of plans in the output:
+--
+--     psql -d cas_bench -v rows=2000000 -f etc/sql/cas/bench/oauth-token-query-plans.sql > plans.txt
+--
+-- The seed spreads `rows` tokens over 5,000 clients and 200,000 principals.
+--
+
+\set ON_ERROR_STOP 1
+\if :{?rows}
+\else
+    \set rows 1000000
+\endif
+
+DROP SCHEMA IF EXISTS oauth_bench CASCADE;
+CREATE SCHEMA oauth_bench;
+SET search_path TO oauth_bench;
+
+CREATE TABLE accesstoken (
+    id varchar(255) PRIMARY KEY,
+    client_id varchar(255),
+    principal_id varchar(255) NOT NULL,
+    type integer NOT NULL,
+    scope_set varchar(1024) NOT NULL,
+    ticketgrantingticket_id varchar(255),
+    serviceticket_id varchar(255)
+);
+
+CREATE TABLE refreshtoken (
+    id varchar(255) PRIMARY KEY,
+    client_id varchar(255),
+    principal_id varchar(255) NOT NULL,
+    type integer NOT NULL,
+    scope_set varchar(1024) NOT NULL,
+    ticketgrantingticket_id varchar(255)
+);
+
+INSERT INTO accesstoken
+SELECT 'AT-' || g,
+       'client-' || (g % 5000),
+       'principal-' || (g % 200000),
+       g % 4,
+       (ARRAY['osf.full_read', 'osf.full_read osf.full_write', 'osf.users.profile_read'])[g % 3 + 1],
+       'TGT-' || g,
+       CASE WHEN g % 4 = 0 THEN 'ST-' || g END
+FROM generate_series(1, :rows) AS g;
+
+INSERT INTO refreshtoken
+SELECT 'RT-' || g,
+       'client-' || (g % 5000),
+       'principal-' || (g % 200000),
+       0,
+       (ARRAY['osf.full_read', 'osf.full_read osf.full_write', 'osf.users.profile_read'])[g % 3 + 1],
+       'TGT-R-' || g
+FROM generate_series(1, :rows / 4) AS g;
+
+VACUUM ANALYZE accesstoken;
+VACUUM ANALYZE refreshtoken;
+
+\echo '==================== BEFORE ===================='
+\ir oauth-token-queries.sql
+
+CREATE INDEX idx_accesstoken_client_principal ON accesstoken (client_id, principal_id, type, scope_set);
+CREATE INDEX idx_accesstoken_principal ON accesstoken (principal_id, client_id);
+CREATE INDEX idx_accesstoken_tgt ON accesstoken (ticketgrantingticket_id);
+CREATE INDEX idx_accesstoken_st ON accesstoken (serviceticket_id);
+CREATE INDEX idx_refreshtoken_client_principal ON refreshtoken (client_id, principal_id, scope_set);
+CREATE INDEX idx_refreshtoken_principal ON refreshtoken (principal_id, client_id);
+CREATE INDEX idx_refreshtoken_tgt ON refreshtoken (ticketgrantingticket_id);
+
+VACUUM ANALYZE accesstoken;
+VACUUM ANALYZE refreshtoken;
+
+\echo '==================== AFTER ===================='
+\ir oauth-token-queries.sql
+
+DROP SCHEMA oauth_bench CASCADE;